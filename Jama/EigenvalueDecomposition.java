@@ -15,6 +15,14 @@ import Jama.util.*;
     i.e. A.times(V) equals V.times(D).  The matrix V may be badly
     conditioned, or even singular, so the validity of the equation
     A = V*D*inverse(V) depends upon V.cond().
+<P>
+    If only the eigenvalues are needed, the eigenvectors can be skipped
+    (see EigenvalueDecomposition(Matrix, boolean)). In the nonsymmetric
+    case, the QR iteration then only updates the active block of the
+    Hessenberg matrix, as in EISPACK's hqr, which takes about half the time.
+    Since fewer entries are updated, the rounding errors differ, and the
+    eigenvalues agree with those of the full decomposition only up to
+    rounding, not bit for bit.
 **/
 
 public class EigenvalueDecomposition implements java.io.Serializable {
@@ -53,6 +61,11 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    */
    private double[] ort;
 
+   /** Flag for eigenvectors.
+   @serial true iff eigenvectors are computed.
+   */
+   private boolean wantv = true;
+
 /* ------------------------
    Private Methods
  * ------------------------ */
@@ -143,6 +156,14 @@ public class EigenvalueDecomposition implements java.io.Serializable {
       }
    
       // Accumulate transformations.
+
+      if (!wantv) {
+         for (int j = 0; j < n; j++) {
+            d[j] = V[j][j];
+         }
+         e[0] = 0.0;
+         return;
+      }
    
       for (int i = 0; i < n-1; i++) {
          V[n-1][i] = V[i][i];
@@ -253,7 +274,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                   // Accumulate transformation.
    
-                  for (int k = 0; k < n; k++) {
+                  for (int k = 0; wantv && k < n; k++) {
                      h = V[k][i+1];
                      V[k][i+1] = s * V[k][i] + c * h;
                      V[k][i] = c * V[k][i] - s * h;
@@ -285,7 +306,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
          if (k != i) {
             d[k] = d[i];
             d[i] = p;
-            for (int j = 0; j < n; j++) {
+            for (int j = 0; wantv && j < n; j++) {
                p = V[j][i];
                V[j][i] = V[j][k];
                V[j][k] = p;
@@ -361,6 +382,10 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
       // Accumulate transformations (Algol's ortran).
 
+      if (!wantv) {
+         return;
+      }
+
       for (int i = 0; i < n; i++) {
          for (int j = 0; j < n; j++) {
             V[i][j] = (i == j ? 1.0 : 0.0);
@@ -504,7 +529,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                // Row modification
    
-               for (int j = n-1; j < nn; j++) {
+               for (int j = n-1; wantv && j < nn; j++) {
                   z = H[n-1][j];
                   H[n-1][j] = q * z + p * H[n][j];
                   H[n][j] = q * H[n][j] - p * z;
@@ -512,7 +537,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                // Column modification
    
-               for (int i = 0; i <= n; i++) {
+               for (int i = 0; wantv && i <= n; i++) {
                   z = H[i][n-1];
                   H[i][n-1] = q * z + p * H[i][n];
                   H[i][n] = q * H[i][n] - p * z;
@@ -520,7 +545,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                // Accumulate transformations
    
-               for (int i = low; i <= high; i++) {
+               for (int i = low; wantv && i <= high; i++) {
                   z = V[i][n-1];
                   V[i][n-1] = q * z + p * V[i][n];
                   V[i][n] = q * V[i][n] - p * z;
@@ -651,9 +676,10 @@ public class EigenvalueDecomposition implements java.io.Serializable {
                   q = q / p;
                   r = r / p;
    
-                  // Row modification
+                  // Row modification (only the active block for
+                  // eigenvalues)
    
-                  for (int j = k; j < nn; j++) {
+                  for (int j = k; j < (wantv ? nn : n+1); j++) {
                      p = H[k][j] + q * H[k+1][j];
                      if (notlast) {
                         p = p + r * H[k+2][j];
@@ -665,7 +691,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                   // Column modification
    
-                  for (int i = 0; i <= Math.min(n,k+3); i++) {
+                  for (int i = (wantv ? 0 : l); i <= Math.min(n,k+3); i++) {
                      p = x * H[i][k] + y * H[i][k+1];
                      if (notlast) {
                         p = p + z * H[i][k+2];
@@ -677,7 +703,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    
                   // Accumulate transformations
    
-                  for (int i = low; i <= high; i++) {
+                  for (int i = low; wantv && i <= high; i++) {
                      p = x * V[i][k] + y * V[i][k+1];
                      if (notlast) {
                         p = p + z * V[i][k+2];
@@ -693,7 +719,7 @@ public class EigenvalueDecomposition implements java.io.Serializable {
       
       // Backsubstitute to find vectors of upper triangular form
 
-      if (norm == 0.0) {
+      if (norm == 0.0 || !wantv) {
          return;
       }
    
@@ -860,9 +886,20 @@ public class EigenvalueDecomposition implements java.io.Serializable {
    */
 
    public EigenvalueDecomposition (Matrix Arg) {
+      this(Arg,true);
+   }
+
+   /** Check for symmetry, then construct the eigenvalue decomposition,
+       with or without eigenvectors.
+   @param Arg    Square matrix
+   @param vectors  If false, only the eigenvalues are computed, and getV()
+                   must not be called.
+   */
+
+   public EigenvalueDecomposition (Matrix Arg, boolean vectors) {
       double[][] A = Arg.getArray();
       n = Arg.getColumnDimension();
-      V = new double[n][n];
+      wantv = vectors;
       d = new double[n];
       e = new double[n];
 
@@ -873,6 +910,10 @@ public class EigenvalueDecomposition implements java.io.Serializable {
          }
       }
 
+      if (issymmetric || wantv) {
+         V = new double[n][n];  // workspace in the symmetric case
+      }
+
       if (issymmetric) {
          for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
@@ -910,9 +951,13 @@ public class EigenvalueDecomposition implements java.io.Serializable {
 
    /** Return the eigenvector matrix
    @return     V
+   @exception  IllegalStateException Eigenvectors were not computed.
    */
 
    public Matrix getV () {
+      if (!wantv) {
+         throw new IllegalStateException("Eigenvectors were not computed.");
+      }
       return new Matrix(V,n,n);
    }
 
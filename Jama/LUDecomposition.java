@@ -47,9 +47,13 @@ public class LUDecomposition implements java.io.Serializable {
 
    public LUDecomposition (Matrix A) {
 
-   // Use a "left-looking", dot-product, Crout/Doolittle algorithm.
+   // Use a "left-looking", dot-product, Crout/Doolittle algorithm, on a
+   // row packed copy of A, one panel of Matrix.BLOCK columns at a time.
+   // The dot products are split at the left edge j0 of the panel: the part
+   // with k < j0 is computed for the whole panel at once, which is where
+   // the cache blocking pays off, and the rest column by column as before.
+   // Each dot product is still accumulated in the order of increasing k.
 
-      LU = A.getArrayCopy();
       m = A.getRowDimension();
       n = A.getColumnDimension();
       piv = new int[m];
@@ -57,59 +61,86 @@ public class LUDecomposition implements java.io.Serializable {
          piv[i] = i;
       }
       pivsign = 1;
-      double[] LUrowi;
-      double[] LUcolj = new double[m];
+      double[] LUp = A.getRowPackedCopy();
+      double[] S = new double[m*Matrix.BLOCK];
 
       // Outer loop.
 
-      for (int j = 0; j < n; j++) {
+      for (int j0 = 0; j0 < n; j0 += Matrix.BLOCK) {
+         int nb = Math.min(Matrix.BLOCK,n-j0);
+
+         // Rows above the panel: forward substitution with the unit lower
+         // triangle, one block of rows at a time.  These rows don't move
+         // any more.
+
+         for (int i0 = 0; i0 < Math.min(j0,m); i0 += Matrix.BLOCK) {
+            int mb = Math.min(Matrix.BLOCK,Math.min(j0,m)-i0);
+            java.util.Arrays.fill(S,0,mb*nb,0.0);
+            Matrix.multiply(mb,i0,nb,LUp,i0*n,n,LUp,j0,n,S,0,nb);
+            for (int i = i0; i < i0+mb; i++) {
+               int si = (i-i0)*nb;
+               for (int k = i0; k < i; k++) {
+                  double t = LUp[i*n+k];
+                  for (int jj = 0; jj < nb; jj++) {
+                     S[si+jj] += t*LUp[k*n+j0+jj];
+                  }
+               }
+               for (int jj = 0; jj < nb; jj++) {
+                  LUp[i*n+j0+jj] -= S[si+jj];
+               }
+            }
+         }
 
-         // Make a copy of the j-th column to localize references.
+         // Rows below: partial dot products over k < j0.
 
-         for (int i = 0; i < m; i++) {
-            LUcolj[i] = LU[i][j];
+         java.util.Arrays.fill(S,0,Math.max(m-j0,0)*nb,0.0);
+         if (j0 < m) {
+            Matrix.multiply(m-j0,j0,nb,LUp,j0*n,n,LUp,j0,n,S,0,nb);
          }
 
-         // Apply previous transformations.
-
-         for (int i = 0; i < m; i++) {
-            LUrowi = LU[i];
+         for (int j = j0; j < j0+nb; j++) {
 
-            // Most of the time is spent in the following dot product.
+            // Apply previous transformations.
 
-            int kmax = Math.min(i,j);
-            double s = 0.0;
-            for (int k = 0; k < kmax; k++) {
-               s += LUrowi[k]*LUcolj[k];
+            for (int i = j0; i < m; i++) {
+               int kmax = Math.min(i,j);
+               double s = S[(i-j0)*nb+j-j0];
+               for (int k = j0; k < kmax; k++) {
+                  s += LUp[i*n+k]*LUp[k*n+j];
+               }
+               LUp[i*n+j] -= s;
             }
 
-            LUrowi[j] = LUcolj[i] -= s;
-         }
-   
-         // Find pivot and exchange if necessary.
+            // Find pivot and exchange if necessary.
 
-         int p = j;
-         for (int i = j+1; i < m; i++) {
-            if (Math.abs(LUcolj[i]) > Math.abs(LUcolj[p])) {
-               p = i;
+            int p = j;
+            for (int i = j+1; i < m; i++) {
+               if (Math.abs(LUp[i*n+j]) > Math.abs(LUp[p*n+j])) {
+                  p = i;
+               }
             }
-         }
-         if (p != j) {
-            for (int k = 0; k < n; k++) {
-               double t = LU[p][k]; LU[p][k] = LU[j][k]; LU[j][k] = t;
+            if (p != j) {
+               for (int k = 0; k < n; k++) {
+                  double t = LUp[p*n+k]; LUp[p*n+k] = LUp[j*n+k]; LUp[j*n+k] = t;
+               }
+               for (int jj = 0; jj < nb; jj++) {
+                  int sp = (p-j0)*nb+jj, sj = (j-j0)*nb+jj;
+                  double t = S[sp]; S[sp] = S[sj]; S[sj] = t;
+               }
+               int k = piv[p]; piv[p] = piv[j]; piv[j] = k;
+               pivsign = -pivsign;
             }
-            int k = piv[p]; piv[p] = piv[j]; piv[j] = k;
-            pivsign = -pivsign;
-         }
 
-         // Compute multipliers.
-         
-         if (j < m & LU[j][j] != 0.0) {
-            for (int i = j+1; i < m; i++) {
-               LU[i][j] /= LU[j][j];
+            // Compute multipliers.
+
+            if (j < m && LUp[j*n+j] != 0.0) {
+               for (int i = j+1; i < m; i++) {
+                  LUp[i*n+j] /= LUp[j*n+j];
+               }
             }
          }
       }
+      LU = Matrix.unpack(LUp,m,n);
    }
 
 /* ------------------------
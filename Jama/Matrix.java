@@ -241,9 +241,7 @@ public class Matrix implements Cloneable, java.io.Serializable {
    public double[] getRowPackedCopy () {
       double[] vals = new double[m*n];
       for (int i = 0; i < m; i++) {
-         for (int j = 0; j < n; j++) {
-            vals[i*n+j] = A[i][j];
-         }
+         System.arraycopy(A[i],0,vals,i*n,n);
       }
       return vals;
    }
@@ -742,23 +740,79 @@ public class Matrix implements Cloneable, java.io.Serializable {
       if (B.m != n) {
          throw new IllegalArgumentException("Matrix inner dimensions must agree.");
       }
-      Matrix X = new Matrix(m,B.n);
-      double[][] C = X.getArray();
-      double[] Bcolj = new double[n];
-      for (int j = 0; j < B.n; j++) {
-         for (int k = 0; k < n; k++) {
-            Bcolj[k] = B.A[k][j];
-         }
-         for (int i = 0; i < m; i++) {
-            double[] Arowi = A[i];
-            double s = 0;
-            for (int k = 0; k < n; k++) {
-               s += Arowi[k]*Bcolj[k];
+      double[] C = new double[m*B.n];
+      multiply(m,n,B.n,getRowPackedCopy(),0,n,B.getRowPackedCopy(),0,B.n,C,0,B.n);
+      return new Matrix(unpack(C,m,B.n),m,B.n);
+   }
+
+   /** Block size of the cache-blocked kernels, in rows or columns.
+   */
+
+   static final int BLOCK = 128;
+
+   /** Blocked product kernel on row packed arrays, C += A*B.  Each entry
+   of C is accumulated in the order of increasing k, so the result is the
+   same as that of the dot product algorithm.  A block of rows of B stays
+   in the cache while all rows of A go by, and four rows of C are updated
+   at once, so that each entry of B is loaded once for four products.
+   The matrices may be blocks of larger arrays: entry (i,j) of A is
+   A[a+i*lda+j], and likewise for B and C.
+   @param m    Number of rows of A and C.
+   @param n    Number of columns of A and rows of B.
+   @param p    Number of columns of B and C.
+   */
+
+   static void multiply (int m, int n, int p,
+                         double[] A, int a, int lda,
+                         double[] B, int b, int ldb,
+                         double[] C, int c, int ldc) {
+      for (int kk = 0; kk < n; kk += BLOCK) {
+         int ke = Math.min(kk+BLOCK,n);
+         for (int jj = 0; jj < p; jj += 4*BLOCK) {
+            int je = Math.min(jj+4*BLOCK,p);
+            int i = 0;
+            for (; i+4 <= m; i += 4) {
+               int a0 = a+i*lda, a1 = a0+lda, a2 = a1+lda, a3 = a2+lda;
+               int c0 = c+i*ldc, c1 = c0+ldc, c2 = c1+ldc, c3 = c2+ldc;
+               for (int k = kk; k < ke; k++) {
+                  double t0 = A[a0+k], t1 = A[a1+k], t2 = A[a2+k], t3 = A[a3+k];
+                  int bk = b+k*ldb;
+                  for (int j = jj; j < je; j++) {
+                     double s = B[bk+j];
+                     C[c0+j] += t0*s;
+                     C[c1+j] += t1*s;
+                     C[c2+j] += t2*s;
+                     C[c3+j] += t3*s;
+                  }
+               }
+            }
+            for (; i < m; i++) {
+               int ai = a+i*lda, ci = c+i*ldc;
+               for (int k = kk; k < ke; k++) {
+                  double t = A[ai+k];
+                  int bk = b+k*ldb;
+                  for (int j = jj; j < je; j++) {
+                     C[ci+j] += t*B[bk+j];
+                  }
+               }
             }
-            C[i][j] = s;
          }
       }
-      return X;
+   }
+
+   /** Unpack a row packed array.
+   @param vals Matrix elements packed by rows.
+   @param m    Number of rows.
+   @param n    Number of colums.
+   @return     Two-dimensional array of matrix elements.
+   */
+
+   static double[][] unpack (double[] vals, int m, int n) {
+      double[][] C = new double[m][n];
+      for (int i = 0; i < m; i++) {
+         System.arraycopy(vals,i*n,C[i],0,n);
+      }
+      return C;
    }
 
    /** LU Decomposition
@@ -810,6 +810,21 @@ public class TestMatrix {
       } catch ( java.lang.RuntimeException e ) {
          errorCount = try_failure(errorCount,"inverse()...","incorrect inverse calculation");
       }
+      /** larger than the block size of the blocked kernels **/
+      Matrix BIG = Matrix.random(300,300);
+      try {
+         check(BIG.times(BIG.transpose()).transpose(),BIG.times(BIG.transpose()));
+         try_success("times(Matrix) (blocked)...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"times(Matrix) (blocked)...","incorrect Matrix-Matrix product calculation");
+      }
+      LU = BIG.lu();
+      try {
+         check(BIG.getMatrix(LU.getPivot(),0,299),LU.getL().times(LU.getU()));
+         try_success("LUDecomposition (blocked)...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"LUDecomposition (blocked)...","incorrect LU decomposition calculation");
+      }
       O = new Matrix(SUB.getRowDimension(),1,1.0);
       SOL = new Matrix(sqSolution);
       SQ = SUB.getMatrix(0,SUB.getRowDimension()-1,0,SUB.getRowDimension()-1);
@@ -856,6 +871,19 @@ public class TestMatrix {
       } catch ( java.lang.RuntimeException e ) {
          errorCount = try_failure(errorCount,"EigenvalueDecomposition (nonsymmetric)...","incorrect nonsymmetric Eigenvalue decomposition calculation");
       }
+      try {
+         /* the values-only QR iteration rounds differently, so the
+            eigenvalues are compared up to a tolerance, relative to their norm */
+         EigenvalueDecomposition vEig = new EigenvalueDecomposition(A,false);
+         check(new Matrix(vEig.getRealEigenvalues(),1),new Matrix(Eig.getRealEigenvalues(),1));
+         check(new Matrix(vEig.getImagEigenvalues(),1),new Matrix(Eig.getImagEigenvalues(),1));
+         Matrix P = new Matrix(pvals);
+         vEig = new EigenvalueDecomposition(P,false);
+         check(new Matrix(vEig.getRealEigenvalues(),1),new Matrix(P.eig().getRealEigenvalues(),1));
+         try_success("EigenvalueDecomposition (values only)...","");
+      } catch ( java.lang.RuntimeException e ) {
+         errorCount = try_failure(errorCount,"EigenvalueDecomposition (values only)...","eigenvalues differ from full decomposition by more than rounding");
+      }
 
       try {
 	  print("\nTesting Eigenvalue; If this hangs, we've failed\n");
@@ -0,0 +1,243 @@
+package pbj.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+A small benchmark harness in the spirit of JMH. Each benchmark is warmed up
+for a number of iterations and then measured for a number of iterations of
+fixed duration; the harness reports the mean time per operation, its
+standard deviation across iterations, and the number of bytes allocated per
+operation (the equivalent of JMH's -prof gc, as far as the JVM supports
+per-thread allocation counters).
+@author Peter Brinkmann
+@see Primitives
+ */
+public class Bench {
+
+	/**
+A benchmarked operation. Operations that destroy their input override
+needsSetup() and setup(); setup() is then called before every invocation
+of run() and is not timed.
+	 */
+	public static abstract class Op {
+
+		/**
+Prepares a single invocation of run(). Only called if needsSetup() is true.
+		 */
+		public void setup() {}
+
+		/**
+@return true iff setup() must be called before every invocation.
+		 */
+		public boolean needsSetup() {
+			return false;
+		}
+
+		/**
+Performs the operation.
+@return result of the operation; it is consumed by the harness, so that the JIT can't eliminate the computation
+		 */
+		public abstract Object run();
+	}
+
+	/**
+The outcome of a single benchmark.
+	 */
+	public static class Result {
+		/** name of benchmark */
+		public final String name;
+		/** parameters of benchmark */
+		public final String params;
+		/** mean time per operation in nanoseconds */
+		public final double nsPerOp;
+		/** standard deviation of time per operation across iterations */
+		public final double nsError;
+		/** bytes allocated per operation, or -1 if unknown */
+		public final double bytesPerOp;
+
+		Result(String n,String p,double ns,double err,double b) {
+			name=n;
+			params=p;
+			nsPerOp=ns;
+			nsError=err;
+			bytesPerOp=b;
+		}
+
+		public String toString() {
+			return String.format("%-28s %-32s %14.1f %10.1f %12.1f",
+					name,params,nsPerOp,nsError,bytesPerOp);
+		}
+
+		/**
+@return this result as a JSON object.
+		 */
+		public String toJSON() {
+			return "{\"name\": \""+name+"\", \"params\": \""+params
+			+"\", \"nsPerOp\": "+nsPerOp+", \"nsError\": "+nsError
+			+", \"bytesPerOp\": "+bytesPerOp+"}";
+		}
+	}
+
+	/** results are added to this value, so that they can't be optimized away */
+	public static volatile int sink;
+
+	private static final com.sun.management.ThreadMXBean threads=
+		(ManagementFactory.getThreadMXBean()
+				instanceof com.sun.management.ThreadMXBean) ?
+						(com.sun.management.ThreadMXBean)
+						ManagementFactory.getThreadMXBean() : null;
+
+	private int warmup=3;
+	private int iterations=5;
+	private long iterationTime=200;	// milliseconds
+	private Pattern filter=null;
+	private List<Result> results=new ArrayList<Result>();
+
+	/**
+@param int w: number of warmup iterations
+@param int n: number of measurement iterations
+@param long t: duration of an iteration in milliseconds
+	 */
+	public void setIterations(int w,int n,long t) {
+		if ((w<0) || (n<1) || (t<1))
+			throw new IllegalArgumentException("bad iteration parameters");
+		warmup=w;
+		iterations=n;
+		iterationTime=t;
+	}
+
+	/**
+Restricts the benchmarks to be run.
+@param String regex: only benchmarks whose names match regex will be run (null for all)
+	 */
+	public void setFilter(String regex) {
+		filter=(regex==null) ? null : Pattern.compile(regex);
+	}
+
+	/**
+@return true iff the benchmark with the given name is to be run.
+	 */
+	public boolean accepts(String name) {
+		return (filter==null) || filter.matcher(name).find();
+	}
+
+	/**
+@return results of all benchmarks run so far.
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	private static long allocated() {
+		return (threads==null) ? 0 :
+			threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/* runs op for about one iteration; returns {nanoseconds, ops, bytes} */
+	private long[] iteration(Op op) {
+		long deadline=System.nanoTime()+iterationTime*1000000;
+		long t0,t,a0,bytes=0,ops=0,time=0;
+		int h=0;
+		int batch;
+
+		if (op.needsSetup()) {
+			do {
+				op.setup();
+				a0=allocated();
+				t0=System.nanoTime();
+				h+=op.run().hashCode();
+				t=System.nanoTime();
+				bytes+=allocated()-a0;
+				time+=t-t0;
+				ops++;
+			} while (t<deadline);
+		}
+		else {
+			a0=allocated();
+			t0=System.nanoTime();
+			batch=1;
+			do {
+				for(int i=0;i<batch;i++)
+					h+=op.run().hashCode();
+				ops+=batch;
+				if (batch<(1<<20))
+					batch*=2;
+				t=System.nanoTime();
+			} while (t<deadline);
+			time=t-t0;
+			bytes=allocated()-a0;
+		}
+		sink+=h;
+		return new long[] {time,ops,bytes};
+	}
+
+	/**
+Runs a benchmark, unless it is excluded by the filter, and prints the result
+to stdout.
+@param String name: name of benchmark
+@param String params: description of parameters
+@param Op op: operation to be measured
+@return result, or null if the benchmark was excluded
+	 */
+	public Result run(String name,String params,Op op) {
+		double ns[]=new double[iterations];
+		double mean=0,var=0;
+		long bytes=0,ops=0;
+		long r[];
+		int i;
+		Result res;
+
+		if (!accepts(name))
+			return null;
+
+		for(i=0;i<warmup;i++)
+			iteration(op);
+		for(i=0;i<iterations;i++) {
+			r=iteration(op);
+			ns[i]=((double) r[0])/r[1];
+			mean+=ns[i];
+			ops+=r[1];
+			bytes+=r[2];
+		}
+		mean/=iterations;
+		for(i=0;i<iterations;i++)
+			var+=(ns[i]-mean)*(ns[i]-mean);
+		if (iterations>1)
+			var/=iterations-1;
+
+		res=new Result(name,params,mean,Math.sqrt(var),
+				(threads==null) ? -1 : ((double) bytes)/ops);
+		results.add(res);
+		System.out.println(res);
+		return res;
+	}
+
+	/**
+@return header line matching Result.toString().
+	 */
+	public static String header() {
+		return String.format("%-28s %-32s %14s %10s %12s",
+				"benchmark","params","ns/op","error","B/op");
+	}
+
+	/**
+@return all results as a JSON array.
+	 */
+	public String toJSON() {
+		StringBuilder sb=new StringBuilder("[\n");
+		int i;
+
+		for(i=0;i<results.size();i++) {
+			sb.append("  "+results.get(i).toJSON());
+			if (i<results.size()-1)
+				sb.append(",");
+			sb.append("\n");
+		}
+		sb.append("]\n");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,160 @@
+package pbj.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import pbj.math.graph.DehnTwist;
+import pbj.math.graph.GenerateExample;
+import pbj.math.graph.GraphMap;
+import pbj.math.graph.LorenzKnot;
+import pbj.math.graph.Word;
+
+/**
+Input generators for benchmarks: random words with a given amount of
+cancellation, boundary words, random automorphisms of free groups, and
+maps read from examples/*.tw, monodromies of Lorenz knots, and the
+examples of GenerateExample. All generators are deterministic for a given
+seed, so that benchmark runs are comparable.
+@author Peter Brinkmann
+@see Primitives
+@see Pipeline
+ */
+public abstract class Generators {
+
+	/**
+Generates a random word (in internal representation).
+@param int rank: number of edges involved
+@param int len: length of the word
+@param double cancel: probability that a letter cancels the previous one
+@param long seed: seed for the random number generator
+@return random word of length len; about cancel*len letters are inverses of their predecessors
+	 */
+	public static String randomWord(int rank,int len,double cancel,long seed) {
+		Random rnd=new Random(seed);
+		StringBuilder sb=new StringBuilder(len);
+		char c,prev=0;
+		int i;
+
+		for(i=0;i<len;i++) {
+			if ((i>0) && (rnd.nextDouble()<cancel))
+				c=Word.inverse(prev);
+			else
+				do
+					c=Word.indexToChar(rnd.nextInt(rank),rnd.nextBoolean());
+				while ((i>0) && (c==Word.inverse(prev)) && (rank>0));
+			sb.append(c);
+			prev=c;
+		}
+		return sb.toString();
+	}
+
+	/**
+Generates the standard boundary word of a surface of the given genus,
+i.e., a product of commutators a b A B c d C D ...
+@param int genus: genus of surface
+@return boundary word in internal representation
+	 */
+	public static String boundaryWord(int genus) {
+		StringBuilder sb=new StringBuilder();
+		int i;
+
+		for(i=0;i<genus;i++) {
+			sb.append(Word.indexToChar(2*i,false));
+			sb.append(Word.indexToChar(2*i+1,false));
+			sb.append(Word.indexToChar(2*i,true));
+			sb.append(Word.indexToChar(2*i+1,true));
+		}
+		return sb.toString();
+	}
+
+	/**
+Generates a random automorphism of a free group, represented as a map of
+a rose, by composing random Nielsen transformations.
+@param int rank: rank of free group
+@param int len: number of Nielsen transformations
+@param long seed: seed for the random number generator
+@return random automorphism
+	 */
+	public static GraphMap randomMap(int rank,int len,long seed) {
+		Random rnd=new Random(seed);
+		GraphMap g=GraphMap.identity(rank);
+		int i,a,b;
+
+		for(i=0;i<len;i++) {
+			a=rnd.nextInt(rank);
+			b=rnd.nextInt(rank-1);
+			if (b>=a)
+				b++;
+			if (rnd.nextBoolean())
+				g.setImage(a,Word.tightenWord(g.getIm(a)+g.getIm(b)));
+			else
+				g.setImage(a,Word.tightenWord(
+						Word.reverseWord(g.getIm(b))+g.getIm(a)));
+		}
+		return g;
+	}
+
+	/**
+Reads all examples from a directory.
+@param String dir: directory containing files in the input format of jtwist
+@return list of maps, labelled by file name
+	 */
+	public static List<GraphMap> examples(String dir) {
+		List<GraphMap> res=new ArrayList<GraphMap>();
+		File files[]=new File(dir).listFiles();
+		GraphMap g;
+		int i;
+
+		if (files==null)
+			throw new RuntimeException("can't read directory: "+dir);
+
+		Arrays.sort(files);
+		for(i=0;i<files.length;i++)
+			if (files[i].getName().endsWith(".tw"))
+				try {
+					g=DehnTwist.readFromFile(files[i].getPath());
+					g.setLabel(files[i].getName().replace(".tw",""));
+					res.add(g);
+				} catch (Exception e) {
+					System.err.println(files[i]+": "+e.toString());
+				}
+		return res;
+	}
+
+	/**
+Computes the monodromy of a Lorenz knot.
+@param String v: knot in the notation of pbj/experiments/knots.txt, e.g., 2^4.3^4
+@return monodromy of the knot, labelled by v
+	 */
+	public static GraphMap lorenzKnot(String v) {
+		String t[]=v.split("\\.");
+		int r[]=new int[t.length];
+		int s[]=new int[t.length];
+		String f[];
+		GraphMap g;
+		int i;
+
+		for(i=0;i<t.length;i++) {
+			f=t[i].split("\\^");
+			r[i]=Integer.parseInt(f[0].trim());
+			s[i]=(f.length>1) ? Integer.parseInt(f[1].trim()) : 1;
+		}
+		g=new LorenzKnot(r,s).getMonodromy();
+		g.setLabel(v);
+		return g;
+	}
+
+	/**
+Computes the example of GenerateExample for a given genus.
+@param int genus: genus of the surface
+@return composition of standard Dehn twists
+	 */
+	public static GraphMap genusExample(int genus) {
+		return DehnTwist.stdGenerators(genus,GenerateExample.twists(genus),
+				"genus"+genus);
+	}
+
+}
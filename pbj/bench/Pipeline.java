@@ -0,0 +1,628 @@
+package pbj.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import gnu.getopt.Getopt;
+import pbj.experiments.KKSequence;
+import pbj.math.graph.DehnTwist;
+import pbj.math.graph.GraphMap;
+import pbj.math.graph.train.Budget;
+import pbj.math.graph.train.Gates;
+import pbj.math.graph.train.MappingTorus;
+import pbj.math.graph.train.TrainTrack;
+import pbj.math.graph.train.TurnStrategy;
+import pbj.math.manifold.ThreeComplex;
+
+/**
+<p>End-to-end benchmarks for the full pipeline, i.e., DehnTwist,
+TrainTrack.trainTrackMap(), Gates, MappingTorus.triangulate(), and
+ThreeComplex.toSnapPea(). For each input and each stage, the runner records
+the wall time, the number of bytes allocated, the peak heap usage above the
+usage at the beginning of the stage, and the size of the output of the
+stage (size of the map, number of gates, number of tetrahedra, length of
+the SnapPea triangulation).</p>
+
+<p>Usage: <kbd>java pbj.bench.Pipeline [-e dir] [-k ns] [-z knots]
+[-g genera] [-b regex] [-w warmup] [-n runs] [-t seconds] [-s strategy] [-o file] [-c file]
+[-x percent] [-m millis] [-u]</kbd></p>
+
+<p>The corpus consists of the examples in the given directory (default:
+examples), KKSequence.getMap(n) for the given values of n (default:
+3,5,8,12), the monodromies of the given Lorenz knots (default: the first
+four entries of pbj/experiments/knots.txt), and the examples of
+GenerateExample for the given genera (default: 2,3,4,5). Lists are comma
+separated; the switch -b restricts the corpus to inputs whose labels match
+the given regular expression. Each input is processed w times (default: 1)
+to warm up the JIT and then n times (default: 3), and the best run is kept. The switch -t limits the train track algorithm
+to the given number of seconds per input, and -s selects the strategy for
+choosing illegal turns (see TurnStrategy), so that strategies can be
+compared on the same corpus.</p>
+
+<p>The switch -o writes the results to the given file in JSON format, one
+stage per line. The switch -c compares the results to a baseline written
+by -o; the runner exits with status 1 if the time, the allocation, or the
+peak heap usage of any stage exceeds its baseline by more than the given
+percentage (default: 25). Times below the given number of milliseconds
+(default: 10) are considered noise and never count as regressions; the
+same goes for allocations and peak heap usage below 1MB. A stage of an
+input of the corpus that is in the baseline but was not reached (e.g.,
+because the train track algorithm ran out of budget) counts as a
+regression, and so does a change in the size of the output of a stage,
+unless the switch -u is given, in which case output changes are only
+reported.</p>
+@author Peter Brinkmann
+@see Bench
+@see Generators
+ */
+public class Pipeline {
+
+	/** names of stages */
+	public static final String stages[]=
+	{"map","train","gates","torus","snappea"};
+
+	private static final long NOISE_BYTES=1<<20;
+
+	private static final com.sun.management.ThreadMXBean threads=
+		(ManagementFactory.getThreadMXBean()
+				instanceof com.sun.management.ThreadMXBean) ?
+						(com.sun.management.ThreadMXBean)
+						ManagementFactory.getThreadMXBean() : null;
+
+	/**
+An input of the pipeline. Creating the map is the first stage.
+	 */
+	public static abstract class Input {
+		/** label of input */
+		public final String label;
+
+		public Input(String lab) {
+			label=lab;
+		}
+
+		/**
+@return map to be fed into the pipeline
+		 */
+		public abstract GraphMap create() throws Exception;
+	}
+
+	/**
+The measurements for a single stage applied to a single input.
+	 */
+	public static class Result {
+		/** label of input */
+		public final String input;
+		/** name of stage */
+		public final String stage;
+		/** wall time in milliseconds */
+		public double millis;
+		/** bytes allocated, or -1 if unknown */
+		public long bytes;
+		/** peak heap usage above the usage at the beginning of the stage */
+		public long peakHeap;
+		/** size of the output of the stage */
+		public long output;
+
+		Result(String in,String st) {
+			input=in;
+			stage=st;
+		}
+
+		/* keeps the better measurements of this and r */
+		void min(Result r) {
+			millis=Math.min(millis,r.millis);
+			bytes=Math.min(bytes,r.bytes);
+			peakHeap=Math.min(peakHeap,r.peakHeap);
+		}
+
+		String key() {
+			return input+"/"+stage;
+		}
+
+		public String toString() {
+			return String.format("%-24s %-8s %12.1f %14d %14d %10d",
+					input,stage,millis,bytes,peakHeap,output);
+		}
+
+		/**
+@return this result as a JSON object.
+		 */
+		public String toJSON() {
+			return "{\"input\": \""+input+"\", \"stage\": \""+stage
+			+"\", \"millis\": "+millis+", \"bytes\": "+bytes
+			+", \"peakHeap\": "+peakHeap+", \"output\": "+output+"}";
+		}
+	}
+
+	private static final Pattern field=
+		Pattern.compile("\"(\\w+)\": (\"([^\"]*)\"|[-0-9.eE]+)");
+
+	/**
+Reads a baseline written by toJSON().
+@param String fn: file name
+@return results in the baseline, keyed by input/stage
+	 */
+	public static Hashtable<String,Result> readBaseline(String fn)
+	throws IOException {
+		Hashtable<String,Result> res=new Hashtable<String,Result>();
+		BufferedReader br=new BufferedReader(new FileReader(fn));
+		Hashtable<String,String> f=new Hashtable<String,String>();
+		Matcher m;
+		Result r;
+		String s;
+
+		while ((s=br.readLine())!=null) {
+			f.clear();
+			m=field.matcher(s);
+			while (m.find())
+				f.put(m.group(1),(m.group(3)!=null) ? m.group(3) : m.group(2));
+			if (!(f.containsKey("input") && f.containsKey("stage")))
+				continue;
+			r=new Result(f.get("input"),f.get("stage"));
+			r.millis=Double.parseDouble(f.get("millis"));
+			r.bytes=Long.parseLong(f.get("bytes"));
+			r.peakHeap=Long.parseLong(f.get("peakHeap"));
+			r.output=Long.parseLong(f.get("output"));
+			res.put(r.key(),r);
+		}
+		br.close();
+		return res;
+	}
+
+	private double threshold=25;	// percent
+	private double noise=10;		// milliseconds
+	private boolean outputs=true;	// do output changes count as regressions?
+	private int warmup=1;
+	private int runs=3;
+	private Budget budget=new Budget();
+	private String strategy=null;
+	private Pattern filter=null;
+	private List<Input> corpus=new ArrayList<Input>();
+	private List<Result> results=new ArrayList<Result>();
+	private List<MemoryPoolMXBean> heap=new ArrayList<MemoryPoolMXBean>();
+
+	public Pipeline() {
+		for(MemoryPoolMXBean p: ManagementFactory.getMemoryPoolMXBeans())
+			if (p.getType()==MemoryType.HEAP)
+				heap.add(p);
+	}
+
+	/**
+@param double percent: maximal tolerated slowdown of a stage relative to the baseline
+@param double millis: times below millis are not considered regressions
+	 */
+	public void setThreshold(double percent,double millis) {
+		if ((percent<0) || (millis<0))
+			throw new IllegalArgumentException("bad threshold");
+		threshold=percent;
+		noise=millis;
+	}
+
+	/**
+@param boolean b: whether changes in the sizes of outputs count as regressions (default: true)
+	 */
+	public void setOutputsChecked(boolean b) {
+		outputs=b;
+	}
+
+	/**
+@param int w: number of unmeasured runs of each input
+@param int n: number of measured runs of each input
+	 */
+	public void setRuns(int w,int n) {
+		if ((w<0) || (n<1))
+			throw new IllegalArgumentException("bad number of runs");
+		warmup=w;
+		runs=n;
+	}
+
+	/**
+@param Budget b: budget for the train track algorithm
+	 */
+	public void setBudget(Budget b) {
+		budget=b;
+	}
+
+	/**
+@param String name: name of strategy for choosing illegal turns (null for the default)
+	 */
+	public void setStrategy(String name) {
+		if (name!=null)
+			TurnStrategy.forName(name);	// fail early if name is bad
+		strategy=name;
+	}
+
+	/**
+Restricts the corpus.
+@param String regex: only inputs whose labels match regex will be run (null for all)
+	 */
+	public void setFilter(String regex) {
+		filter=(regex==null) ? null : Pattern.compile(regex);
+	}
+
+	/**
+Adds an input to the corpus, unless it is excluded by the filter.
+@param Input in: new input
+	 */
+	public void add(Input in) {
+		if ((filter==null) || filter.matcher(in.label).find())
+			corpus.add(in);
+	}
+
+	/**
+Adds the examples in a directory to the corpus. Reading the file is part
+of the first stage.
+@param String dir: directory containing files in the input format of jtwist
+	 */
+	public void addExamples(String dir) {
+		File files[]=new File(dir).listFiles();
+		int i;
+
+		if (files==null)
+			throw new RuntimeException("can't read directory: "+dir);
+
+		Arrays.sort(files);
+		for(i=0;i<files.length;i++)
+			if (files[i].getName().endsWith(".tw")) {
+				final String fn=files[i].getPath();
+				add(new Input(files[i].getName().replace(".tw","")) {
+					public GraphMap create() throws Exception {
+						return DehnTwist.readFromFile(fn);
+					}
+				});
+			}
+	}
+
+	/**
+@return results of all stages run so far.
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	private static long allocated() {
+		return (threads==null) ? -1 :
+			threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private long heapUsed() {
+		long res=0;
+		for(MemoryPoolMXBean p: heap)
+			res+=p.getUsage().getUsed();
+		return res;
+	}
+
+	private long heapPeak() {
+		long res=0;
+		for(MemoryPoolMXBean p: heap)
+			res+=p.getPeakUsage().getUsed();
+		return res;
+	}
+
+	/* starts measuring a stage; returns {nanos, bytes, heap} */
+	private long[] begin() {
+		for(MemoryPoolMXBean p: heap)
+			p.resetPeakUsage();
+		return new long[] {System.nanoTime(),allocated(),heapUsed()};
+	}
+
+	private Result end(long m[],String in,String st,long out) {
+		Result r=new Result(in,st);
+		r.millis=(System.nanoTime()-m[0])/1e6;
+		r.bytes=(m[1]<0) ? -1 : allocated()-m[1];
+		r.peakHeap=Math.max(0,heapPeak()-m[2]);
+		r.output=out;
+		return r;
+	}
+
+	/* runs the pipeline on in once; returns the results of the stages that were completed */
+	private List<Result> process(Input in) throws Exception {
+		List<Result> res=new ArrayList<Result>();
+		ThreeComplex cx;
+		StringWriter sw;
+		MappingTorus mt;
+		TrainTrack tt;
+		GraphMap g;
+		Gates gg;
+		long m[];
+
+		m=begin();
+		g=in.create();
+		res.add(end(m,in.label,stages[0],g.size()));
+
+		m=begin();
+		tt=new TrainTrack(g);
+		tt.setLabel(in.label);
+		tt.unmark();
+		tt.setBudget(budget);
+		if (strategy!=null)
+			tt.setStrategy(TurnStrategy.forName(strategy));
+		if (!tt.trainTrackMap())
+			return res;
+		res.add(end(m,in.label,stages[1],tt.size()));
+
+		m=begin();
+		gg=new Gates(tt);
+		if (!gg.isPseudoAnosov())
+			return res;
+		res.add(end(m,in.label,stages[2],gg.getGates()));
+
+		m=begin();
+		cx=new ThreeComplex();
+		mt=new MappingTorus(tt);
+		mt.triangulate(cx);
+		res.add(end(m,in.label,stages[3],cx.getTetrahedra()));
+
+		m=begin();
+		sw=new StringWriter();
+		cx.toSnapPea(sw);
+		res.add(end(m,in.label,stages[4],sw.getBuffer().length()));
+
+		return res;
+	}
+
+	/**
+Runs the pipeline on all inputs and prints the results to stdout. Stages
+that are not reached (e.g., because the map is not pseudo-Anosov) are
+omitted.
+	 */
+	public void run() {
+		List<Result> best,r;
+		Input in;
+		int i,j,k;
+
+		for(i=0;i<corpus.size();i++) {
+			in=corpus.get(i);
+			best=null;
+			try {
+				for(j=0;j<warmup;j++)
+					process(in);
+				for(j=0;j<runs;j++) {
+					r=process(in);
+					if (best==null)
+						best=r;
+					else
+						for(k=0;k<Math.min(best.size(),r.size());k++)
+							best.get(k).min(r.get(k));
+				}
+			} catch (Exception e) {
+				System.err.println(in.label+": "+e.toString());
+				continue;
+			}
+			for(k=0;k<best.size();k++) {
+				results.add(best.get(k));
+				System.out.println(best.get(k));
+			}
+		}
+	}
+
+	/**
+@return header line matching Result.toString().
+	 */
+	public static String header() {
+		return String.format("%-24s %-8s %12s %14s %14s %10s",
+				"input","stage","ms","bytes","peak heap","output");
+	}
+
+	/**
+@return all results as a JSON array, one stage per line.
+	 */
+	public String toJSON() {
+		StringBuilder sb=new StringBuilder("[\n");
+		int i;
+
+		for(i=0;i<results.size();i++) {
+			sb.append("  "+results.get(i).toJSON());
+			if (i<results.size()-1)
+				sb.append(",");
+			sb.append("\n");
+		}
+		sb.append("]\n");
+		return sb.toString();
+	}
+
+	private boolean exceeds(double v,double base,double floor) {
+		return (v>floor) && (v>base*(1+threshold/100));
+	}
+
+	/**
+Compares the results to a baseline and prints regressions to stdout. Stages
+in the baseline that are missing from the results count as regressions if
+their input is part of the corpus.
+@param Hashtable base: baseline, as returned by readBaseline()
+@return number of regressions
+	 */
+	public int compare(Hashtable<String,Result> base) {
+		Set<String> labels=new HashSet<String>(),keys=new HashSet<String>();
+		Result r,b;
+		int i,n=0;
+
+		for(Input in: corpus)
+			labels.add(in.label);
+
+		for(i=0;i<results.size();i++) {
+			r=results.get(i);
+			keys.add(r.key());
+			b=base.get(r.key());
+			if (b==null) {
+				System.out.println("// new: "+r.key());
+				continue;
+			}
+			if (exceeds(r.millis,b.millis,noise)) {
+				System.out.println("// regression: "+r.key()+" time "
+						+b.millis+" -> "+r.millis+" ms");
+				n++;
+			}
+			if ((r.bytes>=0) && (b.bytes>=0)
+					&& exceeds(r.bytes,b.bytes,NOISE_BYTES)) {
+				System.out.println("// regression: "+r.key()+" allocation "
+						+b.bytes+" -> "+r.bytes+" bytes");
+				n++;
+			}
+			if (exceeds(r.peakHeap,b.peakHeap,NOISE_BYTES)) {
+				System.out.println("// regression: "+r.key()+" peak heap "
+						+b.peakHeap+" -> "+r.peakHeap+" bytes");
+				n++;
+			}
+			if (r.output!=b.output) {
+				if (outputs) {
+					System.out.println("// regression: "+r.key()+" output "
+							+b.output+" -> "+r.output);
+					n++;
+				}
+				else
+					System.out.println("// output changed: "+r.key()+" "
+							+b.output+" -> "+r.output);
+			}
+		}
+
+		for(String k: new TreeSet<String>(base.keySet())) {
+			b=base.get(k);
+			if (labels.contains(b.input) && !keys.contains(k)) {
+				System.out.println("// regression: "+k+" missing");
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static int[] intList(String s) {
+		String t[]=s.split(",");
+		int res[]=new int[t.length];
+		for(int i=0;i<t.length;i++)
+			res[i]=Integer.parseInt(t[i].trim());
+		return res;
+	}
+
+	public static void main(String s[]) {
+		String dir="examples";
+		int kk[]={3,5,8,12};
+		String knots[]={"2^4.3^4","2^2.3^8","2^2.4^7","2^2.5^6"};
+		int genera[]={2,3,4,5};
+		String out=null,base=null;
+		double percent=25,millis=10;
+		Pipeline p=new Pipeline();
+		Budget b=new Budget();
+		int c,i,n,w=1,r=3;
+
+		Getopt opts=new Getopt("Pipeline.class",s,"e:k:z:g:b:w:n:t:s:o:c:x:m:u");
+		while ((c=opts.getopt())!=-1) {
+			switch(c) {
+			case 'e':
+				dir=opts.getOptarg();
+				break;
+			case 'k':
+				kk=intList(opts.getOptarg());
+				break;
+			case 'z':
+				knots=opts.getOptarg().split(",");
+				break;
+			case 'g':
+				genera=intList(opts.getOptarg());
+				break;
+			case 'b':
+				p.setFilter(opts.getOptarg());
+				break;
+			case 'w':
+				w=Integer.parseInt(opts.getOptarg());
+				break;
+			case 'n':
+				r=Integer.parseInt(opts.getOptarg());
+				break;
+			case 't':
+				b.setMaxTime((long) (1000*Double.parseDouble(opts.getOptarg())));
+				break;
+			case 's':
+				p.setStrategy(opts.getOptarg());
+				break;
+			case 'o':
+				out=opts.getOptarg();
+				break;
+			case 'c':
+				base=opts.getOptarg();
+				break;
+			case 'x':
+				percent=Double.parseDouble(opts.getOptarg());
+				break;
+			case 'm':
+				millis=Double.parseDouble(opts.getOptarg());
+				break;
+			case 'u':
+				p.setOutputsChecked(false);
+				break;
+			case '?':
+				System.exit(1);
+				break;
+			}
+		}
+		p.setThreshold(percent,millis);
+		p.setRuns(w,r);
+		p.setBudget(b);
+
+		if (dir.length()>0)
+			p.addExamples(dir);
+		for(i=0;i<kk.length;i++) {
+			final int k=kk[i];
+			p.add(new Input("kk"+k) {
+				public GraphMap create() {
+					return KKSequence.getMap(k);
+				}
+			});
+		}
+		for(i=0;i<knots.length;i++) {
+			final String v=knots[i].trim();
+			p.add(new Input("lorenz"+v) {
+				public GraphMap create() {
+					return Generators.lorenzKnot(v);
+				}
+			});
+		}
+		for(i=0;i<genera.length;i++) {
+			final int g=genera[i];
+			p.add(new Input("genus"+g) {
+				public GraphMap create() {
+					return Generators.genusExample(g);
+				}
+			});
+		}
+
+		System.out.println(header());
+		p.run();
+
+		try {
+			if (out!=null) {
+				Writer wr=new FileWriter(out);
+				wr.write(p.toJSON());
+				wr.close();
+			}
+			if (base!=null) {
+				n=p.compare(readBaseline(base));
+				if (n>0) {
+					System.out.println("// "+n+" regression(s)");
+					System.exit(1);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package pbj.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.getopt.Getopt;
+import pbj.math.graph.GraphMap;
+import pbj.math.graph.Word;
+
+/**
+<p>Microbenchmarks for the primitive operations on words and graph maps
+that dominate the running time of the train track algorithm.</p>
+
+<p>Usage: <kbd>java pbj.bench.Primitives [-r ranks] [-L lengths]
+[-p densities] [-e dir] [-w warmup] [-i iterations] [-t millis]
+[-b regex] [-j file]</kbd></p>
+
+<p>Ranks, lengths, and cancellation densities are comma separated lists
+(defaults: 3,10,30 and 16,256,4096 and 0,0.5). Random words are generated
+by Generators.randomWord(); random automorphisms of the given ranks as well
+as the examples in the given directory (default: examples) serve as inputs
+for the graph map benchmarks. The switch -b restricts the benchmarks to
+those whose names match the given regular expression, and -j writes the
+results in JSON format to the given file.</p>
+@author Peter Brinkmann
+@see Bench
+@see Generators
+ */
+public class Primitives {
+
+	private static final long SEED=1234;
+
+	private static int[] intList(String s) {
+		String t[]=s.split(",");
+		int res[]=new int[t.length];
+		for(int i=0;i<t.length;i++)
+			res[i]=Integer.parseInt(t[i].trim());
+		return res;
+	}
+
+	private static double[] doubleList(String s) {
+		String t[]=s.split(",");
+		double res[]=new double[t.length];
+		for(int i=0;i<t.length;i++)
+			res[i]=Double.parseDouble(t[i].trim());
+		return res;
+	}
+
+	/* the index of an edge with longest image */
+	private static int longestEdge(GraphMap g) {
+		int i,e=0;
+		for(i=1;i<g.getEdges();i++)
+			if (g.getIm(i).length()>g.getIm(e).length())
+				e=i;
+		return e;
+	}
+
+	/**
+Runs the benchmarks on words.
+	 */
+	public static void words(Bench b,int ranks[],int lens[],double dens[]) {
+		int r,l,d;
+
+		for(r=0;r<ranks.length;r++)
+			for(l=0;l<lens.length;l++)
+				for(d=0;d<dens.length;d++) {
+					final String w=Generators.randomWord(ranks[r],lens[l],
+							dens[d],SEED);
+					final String s=Generators.randomWord(ranks[r],8,0,SEED+1);
+					String par="r="+ranks[r]+",L="+lens[l]+",p="+dens[d];
+
+					b.run("Word.tightenWord",par,new Bench.Op() {
+						public Object run() {
+							return Word.tightenWord(w);
+						}
+					});
+					b.run("Word.replaceChar",par,new Bench.Op() {
+						public Object run() {
+							return Word.replaceChar(w,Word.indexToChar(0,false),s);
+						}
+					});
+				}
+
+		for(r=0;r<ranks.length;r++)
+			for(l=0;l<lens.length;l++) {
+				final String w=Word.tightenCycl(
+						Generators.randomWord(ranks[r],lens[l],0,SEED));
+				final String w2=w.substring(w.length()/2)
+				+w.substring(0,w.length()/2);
+				String par="r="+ranks[r]+",L="+lens[l];
+
+				b.run("Word.reverseWord",par,new Bench.Op() {
+					public Object run() {
+						return Word.reverseWord(w);
+					}
+				});
+				b.run("Word.isCyclicallyConjugate",par,new Bench.Op() {
+					public Object run() {
+						return Word.isCyclicallyConjugate(w,w2);
+					}
+				});
+			}
+
+		for(r=0;r<ranks.length;r++) {
+			final String bd=Generators.boundaryWord(Math.max(1,ranks[r]/2));
+
+			b.run("Word.dualize","r="+2*Math.max(1,ranks[r]/2),new Bench.Op() {
+				public Object run() {
+					return Word.dualize(bd);
+				}
+			});
+		}
+	}
+
+	/**
+Runs the benchmarks on graph maps.
+@param Bench b: harness
+@param GraphMap g: input map
+@param String par: description of input map
+@param String w: word that is to be mapped
+	 */
+	public static void maps(Bench b,final GraphMap g,String par,
+			final String w) {
+		final int e=longestEdge(g);
+
+		b.run("GraphMap.mapWord",par+",L="+w.length(),new MapWord(g,w));
+		b.run("GraphMap.compose",par,new Bench.Op() {
+			GraphMap h;
+			public boolean needsSetup() {
+				return true;
+			}
+			public void setup() {
+				h=new GraphMap(g);
+			}
+			public Object run() {
+				h.compose(g);
+				return h;
+			}
+		});
+		if (g.getIm(e).length()>1)
+			b.run("GraphMap.splitEdge",par,new Bench.Op() {
+				GraphMap h;
+				public boolean needsSetup() {
+					return true;
+				}
+				public void setup() {
+					h=new GraphMap(g);
+				}
+				public Object run() {
+					h.splitEdge(e,h.getIm(e).length()/2);
+					return h;
+				}
+			});
+		b.run("GraphMap.elementaryFold",par,new Bench.Op() {
+			GraphMap h;
+			public boolean needsSetup() {
+				return true;
+			}
+			public void setup() {
+				h=new GraphMap(g);
+				h.addEdge(h.getStart(e),h.getEnd(e),h.getIm(e));
+			}
+			public Object run() {
+				h.elementaryFold(e,h.getEdges()-1);
+				return h;
+			}
+		});
+		b.run("GraphMap.invert",par,new Bench.Op() {
+			GraphMap h;
+			public boolean needsSetup() {
+				return true;
+			}
+			public void setup() {
+				h=new GraphMap(g);
+			}
+			public Object run() {
+				h.invert();
+				return h;
+			}
+		});
+	}
+
+	public static void main(String s[]) {
+		int ranks[]={3,10,30};
+		int lens[]={16,256,4096};
+		double dens[]={0,0.5};
+		String dir="examples";
+		String json=null;
+		Bench b=new Bench();
+		int w=3,n=5;
+		long t=200;
+		List<GraphMap> ex;
+		GraphMap g;
+		int c,i,l;
+
+		Getopt opts=new Getopt("Primitives.class",s,"r:L:p:e:w:i:t:b:j:");
+		while ((c=opts.getopt())!=-1) {
+			switch(c) {
+			case 'r':
+				ranks=intList(opts.getOptarg());
+				break;
+			case 'L':
+				lens=intList(opts.getOptarg());
+				break;
+			case 'p':
+				dens=doubleList(opts.getOptarg());
+				break;
+			case 'e':
+				dir=opts.getOptarg();
+				break;
+			case 'w':
+				w=Integer.parseInt(opts.getOptarg());
+				break;
+			case 'i':
+				n=Integer.parseInt(opts.getOptarg());
+				break;
+			case 't':
+				t=Long.parseLong(opts.getOptarg());
+				break;
+			case 'b':
+				b.setFilter(opts.getOptarg());
+				break;
+			case 'j':
+				json=opts.getOptarg();
+				break;
+			case '?':
+				System.exit(1);
+				break;
+			}
+		}
+		b.setIterations(w,n,t);
+
+		System.out.println(Bench.header());
+		words(b,ranks,lens,dens);
+
+		ex=new ArrayList<GraphMap>();
+		for(i=0;i<ranks.length;i++) {
+			g=Generators.randomMap(Math.max(2,ranks[i]),4*ranks[i],SEED);
+			g.setLabel("random"+Math.max(2,ranks[i]));
+			ex.add(g);
+		}
+		ex.addAll(Generators.examples(dir));
+
+		for(i=0;i<ex.size();i++) {
+			g=ex.get(i);
+			maps(b,g,"map="+g.getLabel(),
+					Generators.randomWord(g.getEdges(),lens[0],0,SEED));
+			for(l=1;l<lens.length;l++)
+				b.run("GraphMap.mapWord","map="+g.getLabel()+",L="+lens[l],
+						new MapWord(g,Generators.randomWord(g.getEdges(),
+								lens[l],0,SEED)));
+		}
+
+		if (json!=null)
+			try {
+				Writer wr=new FileWriter(json);
+				wr.write(b.toJSON());
+				wr.close();
+			} catch (IOException e) {
+				System.err.println(e.toString());
+				System.exit(1);
+			}
+	}
+
+	private static class MapWord extends Bench.Op {
+		private final GraphMap g;
+		private final String w;
+
+		MapWord(GraphMap g,String w) {
+			this.g=g;
+			this.w=w;
+		}
+
+		public Object run() {
+			return g.mapWord(w);
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package pbj.gui;
+
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JTextField;
+
+import pbj.math.graph.train.Budget;
+
+public class BudgetDialog {
+
+	private JDialog dialog;
+	private JTextField timeField;
+	private JTextField foldField;
+	private JTextField sizeField;
+	private JButton cancelButton;
+	private JButton okButton;
+	private JFrame owner;
+
+	private boolean valid;
+
+	public BudgetDialog(JFrame owner) {
+		this.owner = owner;
+		dialog = new JDialog(owner, "Budget", true);
+		dialog.setLayout(new GridLayout(4, 2));
+		dialog.add(new JLabel("Time limit (seconds)"));
+		dialog.add(timeField = new JTextField("0"));
+		dialog.add(new JLabel("Maximal number of folds"));
+		dialog.add(foldField = new JTextField("0"));
+		dialog.add(new JLabel("Maximal total image length"));
+		dialog.add(sizeField = new JTextField("0"));
+		dialog.add(cancelButton = new JButton("Cancel"));
+		dialog.add(okButton = new JButton("Okay"));
+
+		dialog.getRootPane().setDefaultButton(okButton);
+		okButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				valid = true;
+				dialog.setVisible(false);
+			}
+		});
+		cancelButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				dialog.setVisible(false);
+			}
+		});
+
+		timeField.setColumns(8);
+		dialog.setTitle("Budget (0 means no limit)");
+	}
+
+	public Budget getBudget(Budget b) {
+		timeField.setText(Double.toString(b.getMaxTime()/1000.0));
+		foldField.setText(Integer.toString(b.getMaxFolds()));
+		sizeField.setText(Integer.toString(b.getMaxSize()));
+		valid = false;
+		dialog.pack();
+		dialog.setVisible(true);
+		if (valid) {
+			try {
+				long t = (long) (1000*Double.parseDouble(timeField.getText()));
+				int f = Integer.parseInt(foldField.getText());
+				int s = Integer.parseInt(sizeField.getText());
+				return new Budget(t, f, s);
+			} catch (Exception e) {
+				JOptionPane.showMessageDialog(owner, e.toString(), "Error!", JOptionPane.ERROR_MESSAGE);
+			}
+		}
+		return b;
+	}
+}
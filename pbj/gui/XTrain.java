@@ -29,6 +29,7 @@ import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.UndoManager;
 
 import pbj.math.graph.GraphMap;
+import pbj.math.graph.train.Budget;
 import pbj.math.graph.train.Gates;
 import pbj.math.graph.train.TrainTrack;
 import pbj.math.manifold.snappea.SnapPeaBridge;
@@ -64,6 +65,7 @@ public class XTrain extends JFrame {
 	private JMenuItem drawItem;
 	private JMenuItem foldItem;
 	private JMenuItem cleanItem;
+	private JMenuItem budgetItem;
 	private JMenu snapMenu;
 	private JMenuItem infoItem;
 	private JMenuItem isomCensusItem;
@@ -86,8 +88,10 @@ public class XTrain extends JFrame {
 	private LorenzKnotDialog lorenzDialog;
 	private RandomDialog randomDialog;
 	private FoldDialog foldDialog;
+	private BudgetDialog budgetDialog;
 
 	private TrainTrack currentMap = null;
+	private Budget budget = new Budget();
 	private SnapPeaBridge snappeaBridge = null;
 	private XTrainGraphics graphicsWindow = null;
 
@@ -126,6 +130,7 @@ public class XTrain extends JFrame {
 		drawItem = new JMenuItem("Draw train track");
 		foldItem = new JMenuItem("Fold edges");
 		cleanItem = new JMenuItem("Tighten map");
+		budgetItem = new JMenuItem("Set budget");
 		snapMenu = new JMenu("SnapPea");
 		infoItem = new JMenuItem("Analyze mapping torus");
 		isomCensusItem = new JMenuItem("Compare to census");
@@ -173,6 +178,8 @@ public class XTrain extends JFrame {
 		trainMenu.addSeparator();
 		trainMenu.add(foldItem);
 		trainMenu.add(cleanItem);
+		trainMenu.addSeparator();
+		trainMenu.add(budgetItem);
 		menuBar.add(snapMenu);
 		snapMenu.add(infoItem);
 		snapMenu.add(isomCensusItem);
@@ -398,8 +405,13 @@ public class XTrain extends JFrame {
 			public void actionPerformed(ActionEvent e) {
 				setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 				try {
-					getMap().trainTrackMap();
+					TrainTrack tt = getMap();
+					tt.setBudget(budget);
+					tt.trainTrackMap();
 					setMap(currentMap);
+					if (tt.getStatus()==TrainTrack.BUDGET_EXCEEDED) {
+						JOptionPane.showMessageDialog(XTrain.this, "Budget exceeded: "+tt.getInterruptionReason(), "Budget exceeded", JOptionPane.WARNING_MESSAGE);
+					}
 				} catch(Exception ex) {
 					JOptionPane.showMessageDialog(XTrain.this, ex.toString(), "Error!", JOptionPane.ERROR_MESSAGE);
 				} finally {
@@ -442,6 +454,12 @@ public class XTrain extends JFrame {
 			}
 		});
 		MenuTools.setShortCut(cleanItem, KeyEvent.VK_C, KeyEvent.SHIFT_MASK);
+		budgetItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (budgetDialog==null) budgetDialog = new BudgetDialog(XTrain.this);
+				budget = budgetDialog.getBudget(budget);
+			}
+		});
 		infoItem.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				try {
@@ -478,6 +478,81 @@ the genus and a sequence of standard Dehn twists.
 		return g;
 	}
 
+	/**
+Reads a homeomorphism in the input format of jtwist, i.e., either a genus
+followed by a sequence of standard twists, or a boundary word (or fixed word)
+followed by a sequence of twists, optionally followed by a label.
+@param StreamTokenizer st: source of input
+@param String lab: default label
+@param StringBuffer inp: the input is echoed here (may be null)
+@return GraphMap representing the homeomorphism
+	 */
+	public static GraphMap parse(StreamTokenizer st,String lab,StringBuffer inp)
+	throws IOException {
+		GraphMap g;
+		String a,tw;
+		int genus;
+
+		if (inp==null)
+			inp=new StringBuffer();
+
+		if (st.nextToken()==StreamTokenizer.TT_NUMBER) {
+			genus=(int) st.nval;
+			st.nextToken();
+			tw=st.sval;
+			if (tw==null)
+				throw new RuntimeException("bad sequence of twists");
+
+			st.nextToken();
+			if (st.sval!=null)
+				lab=st.sval;
+
+			g=stdGenerators(genus,tw,lab);
+			inp.append(genus+" "+tw+" "+lab);
+		}
+		else {
+			a=st.sval;
+			if (a==null)
+				throw new RuntimeException("bad boundary word");
+
+			st.nextToken();
+			tw=st.sval;
+			if (tw==null)
+				throw new RuntimeException("bad sequence of twists."+
+						"\nDid you use double quotes "+
+				"(e.g., \"\'-c(bD)aab\'\")?");
+
+			st.nextToken();
+			if (st.sval!=null)
+				lab=st.sval;
+
+			if (a.startsWith("fix.")) {
+				g=twistWithFixedWord(a.substring(4),tw,lab);
+			}
+			else
+				g=twist(a,tw,lab);
+
+			inp.append(a+" "+tw+" "+lab);
+		}
+
+		return g;
+	}
+
+	/**
+Reads a homeomorphism from a file in the input format of jtwist.
+@param String fn: file name
+@return GraphMap representing the homeomorphism
+	 */
+	public static GraphMap readFromFile(String fn) throws IOException {
+		Reader r=new FileReader(fn);
+
+		try {
+			return parse(new StreamTokenizer(r),fn,null);
+		} finally {
+			r.close();
+		}
+	}
+
 	/**
 <p>The main routine. Recommended usage for Unix systems:
 Add the line</p>
@@ -491,8 +566,8 @@ and twist.</p>
 	 */
 	public static void main(String s[]) throws FileNotFoundException, IOException {
 		GraphMap g;
-		String a,lab,inp,tw;
-		int genus;
+		String lab;
+		StringBuffer inp;
 		StreamTokenizer st;
 
 		try {
@@ -509,45 +584,8 @@ and twist.</p>
 				lab="";
 			}
 
-			inp="// input: ";
-			if (st.nextToken()==StreamTokenizer.TT_NUMBER) {
-				genus=(int) st.nval;
-				st.nextToken();
-				tw=st.sval;
-				if (tw==null)
-					throw new RuntimeException("bad sequence of twists");
-
-				st.nextToken();
-				if (st.sval!=null)
-					lab=st.sval;
-
-				g=stdGenerators(genus,tw,lab);
-				inp=inp+genus+" "+tw+" "+lab;
-			}
-			else {
-				a=st.sval;
-				if (a==null)
-					throw new RuntimeException("bad boundary word");
-
-				st.nextToken();
-				tw=st.sval;
-				if (tw==null)
-					throw new RuntimeException("bad sequence of twists."+
-							"\nDid you use double quotes "+
-					"(e.g., \"\'-c(bD)aab\'\")?");
-
-				st.nextToken();
-				if (st.sval!=null)
-					lab=st.sval;
-
-				if (a.startsWith("fix.")) {
-					g=twistWithFixedWord(a.substring(4),tw,lab);
-				}
-				else
-					g=twist(a,tw,lab);
-
-				inp=inp+a+" "+tw+" "+lab;
-			}
+			inp=new StringBuffer("// input: ");
+			g=parse(st,lab,inp);
 		} catch (Exception e) {System.err.println(e.toString());
 		return;}
 
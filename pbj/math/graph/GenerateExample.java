@@ -11,19 +11,29 @@ by the command line parameter (default is g=2).
  */
 public class GenerateExample {
 
+	/**
+Returns the sequence of standard Dehn twists of the example.
+@param int n: genus of the surface
+@return sequence of twists, suitable for DehnTwist.stdGenerators()
+	 */
+	public static String twists(int n) {
+		String res="";
+		int i;
+
+		for(i=0;i<n;i++)
+			res=res+"C"+i+"d"+i;
+		return res;
+	}
+
 	public static void main(String args[]) {
-		int n,i;
+		int n;
 
 		if (args.length>0)
 			n=Integer.parseInt(args[0]);
 		else 
 			n=2;
 
-		System.out.print(n+" ");
-		for(i=0;i<n;i++)
-			System.out.print("C"+i+"d"+i);
-
-		System.out.println("");
+		System.out.println(n+" "+twists(n));
 	}
 
 }
@@ -0,0 +1,89 @@
+package pbj.math.graph;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+Java Flight Recorder events for the elementary operations on graph maps.
+Each event carries the operation's arguments and the size of the map
+after the operation, so that a recording (e.g., jcmd &lt;pid&gt; JFR.start)
+shows the exact sequence of moves performed on a given input. The events
+cost next to nothing unless a recording is in progress.
+@author Peter Brinkmann
+@see GraphMap
+ */
+public abstract class GraphEvents {
+
+	private GraphEvents() {}
+
+	/** common fields of all graph map events */
+	@Category({"XTrain", "Graph maps"})
+	static abstract class GraphMapEvent extends Event {
+		@Label("Map")
+		@Description("Label of the graph map")
+		String map;
+
+		@Label("Edges")
+		@Description("Number of edges after the operation")
+		int edges;
+
+		@Label("Vertices")
+		@Description("Number of vertices after the operation")
+		int vertices;
+
+		@Label("Size")
+		@Description("Total length of the images of edges after the operation")
+		int size;
+
+		@Label("First Edge")
+		String edge1;
+
+		@Label("Second Edge")
+		String edge2;
+	}
+
+	@Name("pbj.SplitEdge")
+	@Label("Split Edge")
+	static class SplitEdge extends GraphMapEvent {
+		@Label("Position")
+		@Description("Position in the image where the edge was split")
+		int at;
+	}
+
+	@Name("pbj.ElementaryFold")
+	@Label("Elementary Fold")
+	static class ElementaryFold extends GraphMapEvent {}
+
+	@Name("pbj.CollapseEdge")
+	@Label("Collapse Edge")
+	static class CollapseEdge extends GraphMapEvent {}
+
+	@Name("pbj.JoinEdges")
+	@Label("Join Edges")
+	static class JoinEdges extends GraphMapEvent {}
+
+	/**
+Ends an event and commits it if it is enabled and above its threshold.
+@param GraphMapEvent ev: event
+@param GraphMap g: map after the operation
+@param int e1,e2: indices of edges involved in the operation (-1 if not applicable)
+	 */
+	static void end(GraphMapEvent ev,GraphMap g,int e1,int e2) {
+		ev.end();
+		if (ev.shouldCommit()) {
+			ev.map=g.getLabel();
+			ev.edges=g.getEdges();
+			ev.vertices=g.getVertices();
+			ev.size=g.size();
+			if (e1>=0)
+				ev.edge1=Word.indexToLabel(e1,false);
+			if (e2>=0)
+				ev.edge2=Word.indexToLabel(e2,false);
+			ev.commit();
+		}
+	}
+
+}
@@ -771,7 +771,9 @@ image starting at position 'at' becomes the image of the second half.
 	 */
 	public void splitEdge(int ed,int at) {
 		int i,n;
+		GraphEvents.SplitEdge ev=new GraphEvents.SplitEdge();
 
+		ev.begin();
 		if (DEBUG)
 			System.out.println("splitedge: "+
 					Word.indexToChar(ed,false) + " " + at);
@@ -798,6 +800,9 @@ image starting at position 'at' becomes the image of the second half.
 			for(i=0;i<nmarks;i++)
 				mark[i]=Word.splitChar(mark[i],ed,n);
 
+		ev.at=at;
+		GraphEvents.end(ev,this,ed,n);
+
 		if (DEBUG)
 			System.out.println(toString()+showMarking());
 	}
@@ -986,6 +991,9 @@ different) and takes care of the book-keeping.
 @param int ed: index of edge to be collapsed
 	 */
 	public void collapseEdge(int ed) {
+		GraphEvents.CollapseEdge ev=new GraphEvents.CollapseEdge();
+
+		ev.begin();
 		if (DEBUG)
 			System.out.println("collapseEdge: "
 					+Word.indexToChar(ed,false));
@@ -996,6 +1004,7 @@ different) and takes care of the book-keeping.
 		adjustVertices(start[ed],end[ed]);
 
 		removeEntry(ed);
+		GraphEvents.end(ev,this,ed,-1);
 
 		if (DEBUG)
 			System.out.println(toString()+showMarking());
@@ -1057,7 +1066,9 @@ the given edges.
 	public void joinEdges(int e1,int e2) {
 		int i;
 		int valence;
+		GraphEvents.JoinEdges ev=new GraphEvents.JoinEdges();
 
+		ev.begin();
 		if (DEBUG)
 			System.out.println("joinedges: "+Word.indexToChar(e1,false)
 					+" "+Word.indexToChar(e2,false));
@@ -1081,6 +1092,7 @@ the given edges.
 
 		im[e1]=im[e1]+im[e2];
 		collapseEdge(e2);
+		GraphEvents.end(ev,this,e1,e2);
 
 		if (DEBUG)
 			System.out.println(toString()+showMarking());
@@ -1094,7 +1106,9 @@ is important.
 	 */
 	public void elementaryFold(int e1,int e2) {
 		int i;
+		GraphEvents.ElementaryFold ev=new GraphEvents.ElementaryFold();
 
+		ev.begin();
 		if (DEBUG)
 			System.out.println("elementaryfold: "
 					+Word.indexToChar(e1,false)
@@ -1126,6 +1140,7 @@ is important.
 
 		adjustVertices(end[e1],end[e2]);
 		removeEntry(e2);
+		GraphEvents.end(ev,this,e1,e2);
 
 		if (DEBUG)
 			System.out.println(toString()+showMarking());
@@ -0,0 +1,106 @@
+package pbj.math.graph.train;
+
+/**
+Resource limits for a train track computation. A budget bounds the wall
+time, the number of elementary folds, and the total length of the images
+of edges (i.e., GraphMap.size()) that TrainTrack.trainTrackMap() may use
+before it gives up. A limit of zero means that the corresponding resource
+is unlimited.
+@author Peter Brinkmann
+@see TrainTrack
+ */
+public class Budget {
+
+	private long maxTime;	// in milliseconds
+	private int maxFolds;
+	private int maxSize;
+
+	/**
+Constructs an unlimited budget.
+	 */
+	public Budget() {
+		this(0,0,0);
+	}
+
+	/**
+Constructs a budget with the given limits.
+@param long mt: maximal wall time in milliseconds (0 for no limit)
+@param int mf: maximal number of elementary folds (0 for no limit)
+@param int ms: maximal total length of images (0 for no limit)
+	 */
+	public Budget(long mt,int mf,int ms) {
+		setMaxTime(mt);
+		setMaxFolds(mf);
+		setMaxSize(ms);
+	}
+
+	/**
+@return maximal wall time in milliseconds, or 0 if unlimited.
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+@param long mt: maximal wall time in milliseconds (0 for no limit)
+	 */
+	public void setMaxTime(long mt) {
+		if (mt<0)
+			throw new IllegalArgumentException("negative time limit: "+mt);
+		maxTime=mt;
+	}
+
+	/**
+@return maximal number of elementary folds, or 0 if unlimited.
+	 */
+	public int getMaxFolds() {
+		return maxFolds;
+	}
+
+	/**
+@param int mf: maximal number of elementary folds (0 for no limit)
+	 */
+	public void setMaxFolds(int mf) {
+		if (mf<0)
+			throw new IllegalArgumentException("negative fold limit: "+mf);
+		maxFolds=mf;
+	}
+
+	/**
+@return maximal total length of images, or 0 if unlimited.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+@param int ms: maximal total length of images (0 for no limit)
+	 */
+	public void setMaxSize(int ms) {
+		if (ms<0)
+			throw new IllegalArgumentException("negative size limit: "+ms);
+		maxSize=ms;
+	}
+
+	/**
+Checks the given consumption against this budget.
+@param long time: elapsed time in milliseconds
+@param int folds: number of elementary folds so far, including one that is about to be performed
+@param int size: current total length of images
+@return null if the budget is not exceeded, otherwise a short description of the exhausted resource
+	 */
+	public String check(long time,int folds,int size) {
+		if ((maxTime>0) && (time>maxTime))
+			return "time limit of "+maxTime+"ms exceeded";
+		if ((maxFolds>0) && (folds>maxFolds))
+			return "fold limit of "+maxFolds+" exceeded";
+		if ((maxSize>0) && (size>maxSize))
+			return "size limit of "+maxSize+" exceeded";
+		return null;
+	}
+
+	public String toString() {
+		return "time: "+maxTime+"ms, folds: "+maxFolds+", size: "+maxSize;
+	}
+
+}
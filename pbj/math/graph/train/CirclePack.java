@@ -1,23 +1,78 @@
 package pbj.math.graph.train;
 
-import pbj.math.numerical.Newton;
+import pbj.math.numerical.LinEq;
 import pbj.math.numerical.VectorFunction;
 
 /**
-A class that implements Thurston's circle packing in a simple case.
+<p>A class that implements Thurston's circle packing in a simple case.</p>
+
+<p>The triangulation consists of one triangle for each edge of the graph,
+spanned by the edge and an extra vertex (with index #vertices). The incidences
+of vertices and edges are computed once, so that all angle sums can be
+evaluated in time O(#edges), and the Jacobian, which is sparse apart from the
+row and column of the extra vertex, is assembled in time O(#edges) as well.
+Newton steps are solved by a preconditioned iterative method, and they are
+damped so that the radii stay positive and the angle errors decrease.</p>
 @author Peter Brinkmann
 @see VectorFunction
  */
 public class CirclePack implements VectorFunction {
 
+	private static final double TOL=0.0000000000001; // tolerance for angles,
+			// per edge, since the extra vertex has an angle in each triangle
+	private static final int MAXITER=1000;	// Newton steps
+	private static final int MAXHALF=40;	// step halvings per Newton step
+	private static final int POLISH=3;	// Newton steps after convergence
+
 	private TrainTrack g;
+	private int nv;		// number of vertices of g; index of extra vertex
+	private int inc[][];	// inc[v]: other ends of edges at v, loops twice
+	private int st[],en[];	// start and end of each edge
+	private double last[];	// radii of previous packing, or null
+
+	/* sparse Jacobian: diagonal, plus entries val[k] at (row[k], col[k]),
+	   where a position may occur more than once */
+	private double diag[],val[];
+	private int row[],col[];
+
+	private double ws[][];	// workspace of the iterative solver
+	private LinEq lin;	// dense solver, created when needed
 
 	/**
 Constructor.
 @param TrainTrack gg: the graph for which a circle packing will be computed
 	 */
 	public CirclePack(TrainTrack gg) {
+		int i,v,k,cnt[];
+
 		g=new TrainTrack(gg);
+		nv=g.getVertices();
+		st=new int[g.getEdges()];
+		en=new int[g.getEdges()];
+		cnt=new int[nv];
+		for(i=0;i<g.getEdges();i++) {
+			st[i]=g.getStart(i);
+			en[i]=g.getEnd(i);
+			cnt[st[i]]++;
+			cnt[en[i]]++;
+		}
+		inc=new int[nv][];
+		for(v=0;v<nv;v++)
+			inc[v]=new int[cnt[v]];
+		for(i=0;i<g.getEdges();i++) {
+			inc[st[i]][--cnt[st[i]]]=en[i];
+			inc[en[i]][--cnt[en[i]]]=st[i];
+		}
+
+		/* entries (v, o), (v, extra), (extra, v) for each incidence (v, o) */
+		k=0;
+		for(v=0;v<nv;v++)
+			k+=3*inc[v].length;
+		diag=new double[nv+1];
+		val=new double[k];
+		row=new int[k];
+		col=new int[k];
+		ws=new double[8][nv+1];
 	}
 
 	private static double cosh(double x) {
@@ -81,21 +136,15 @@ Computes the angle at a vertex.
 		double phi;
 		phi=0;
 
-		for(i=0;i<g.getVertices()+1;i++)
+		for(i=0;i<nv+1;i++)
 			if (r[i]<0)	r[i]=1;	/* no negative radii, please */
 
-		if (g.getVertices()==v)
-			for(i=0;i<g.getEdges();i++)
-				phi+=angleA(r[v],r[g.getStart(i)],r[g.getEnd(i)]);
+		if (nv==v)
+			for(i=0;i<st.length;i++)
+				phi+=angleA(r[v],r[st[i]],r[en[i]]);
 		else
-			for(i=0;i<g.getEdges();i++) {
-				if (g.getStart(i)==v)
-					phi+=angleA(r[v],r[g.getVertices()],
-							r[g.getEnd(i)]);
-				if (g.getEnd(i)==v)
-					phi+=angleA(r[v],r[g.getVertices()],
-							r[g.getStart(i)]);
-			}
+			for(i=0;i<inc[v].length;i++)
+				phi+=angleA(r[v],r[nv],r[inc[v][i]]);
 		return 2*phi;
 	}
 
@@ -109,69 +158,246 @@ derivative of angles with respect to radii.
 @return partial derivative dA_i/dr_j.
 	 */
 	public double df(int n,double r[],int i,int j) {
-		int k;
+		int k,o;
 		double dphi;
 
-		for(k=0;k<g.getVertices()+1;k++)
+		for(k=0;k<nv+1;k++)
 			if (r[k]<0)	r[k]=1;
 
 		dphi=0;
-		if (i==j)
-			if (i==g.getVertices())
-				for(k=0;k<g.getEdges();k++)
-					dphi+=dAdra(r[i],r[g.getStart(k)],
-							r[g.getEnd(k)]);
-			else
-				for(k=0;k<g.getEdges();k++) {
-					if (g.getStart(k)==i)
-						dphi+=dAdra(r[i],r[g.getVertices()],
-								r[g.getEnd(k)]);
-					if (g.getEnd(k)==i)
-						dphi+=dAdra(r[i],r[g.getVertices()],
-								r[g.getStart(k)]);
+		if (i==nv)
+			for(k=0;k<st.length;k++) {
+				if (j==i)
+					dphi+=dAdra(r[i],r[st[k]],r[en[k]]);
+				else {
+					if (st[k]==j)
+						dphi+=dAdrb(r[i],r[j],r[en[k]]);
+					if (en[k]==j)
+						dphi+=dAdrb(r[i],r[j],r[st[k]]);
 				}
+			}
 		else
-			if (i==g.getVertices())
-				for(k=0;k<g.getEdges();k++) {
-					if (g.getStart(k)==j)
-						dphi+=dAdrb(r[i],r[j],
-								r[g.getEnd(k)]);
-					if (g.getEnd(k)==j)
-						dphi+=dAdrb(r[i],r[j],
-								r[g.getStart(k)]);
-				}
-			else if (j==g.getVertices())
-				for(k=0;k<g.getEdges();k++) {
-					if (g.getStart(k)==i)
-						dphi+=dAdrb(r[i],r[j],
-								r[g.getEnd(k)]);
-					if (g.getEnd(k)==i)
-						dphi+=dAdrb(r[i],r[j],
-								r[g.getStart(k)]);
-				}
-			else
-				for(k=0;k<g.getEdges();k++) {
-					if ((g.getStart(k)==i) && (g.getEnd(k)==j))
-						dphi+=dAdrb(r[i],r[j],r[g.getVertices()]);
-					if ((g.getStart(k)==j) && (g.getEnd(k)==i))
-						dphi+=dAdrb(r[i],r[j],r[g.getVertices()]);
-				}
+			for(k=0;k<inc[i].length;k++) {
+				o=inc[i][k];
+				if (j==i)
+					dphi+=dAdra(r[i],r[nv],r[o]);
+				if (j==nv)
+					dphi+=dAdrb(r[i],r[nv],r[o]);
+				if (j==o)	// both apply for loops
+					dphi+=dAdrb(r[i],r[o],r[nv]);
+			}
 		return 2*dphi;
 	}
 
+	/* computes all angle sums minus 2pi, in time O(#edges); returns the
+	   euclidean norm, or infinity if a radius isn't positive */
+	private double residual(double r[],double b[]) {
+		int i,v;
+		double s,a;
+
+		for(v=0;v<=nv;v++) {
+			if (!(r[v]>0))
+				return Double.POSITIVE_INFINITY;
+			b[v]=-2*Math.PI;
+		}
+		for(v=0;v<nv;v++)
+			for(i=0;i<inc[v].length;i++)
+				b[v]+=2*angleA(r[v],r[nv],r[inc[v][i]]);
+		for(i=0;i<st.length;i++)
+			b[nv]+=2*angleA(r[nv],r[st[i]],r[en[i]]);
+		s=0;
+		for(v=0;v<=nv;v++) {
+			a=b[v];
+			s+=a*a;
+		}
+		return Math.sqrt(s);
+	}
+
+	/* assembles the Jacobian at r, in time O(#edges) */
+	private void jacobian(double r[]) {
+		int v,i,o,k;
+		double rv,rc=r[nv];
+
+		for(v=0;v<=nv;v++)
+			diag[v]=0;
+		for(i=0;i<st.length;i++)
+			diag[nv]+=2*dAdra(rc,r[st[i]],r[en[i]]);
+		k=0;
+		for(v=0;v<nv;v++) {
+			rv=r[v];
+			for(i=0;i<inc[v].length;i++) {
+				o=inc[v][i];
+				diag[v]+=2*dAdra(rv,rc,r[o]);
+				row[k]=v; col[k]=o;
+				val[k++]=2*dAdrb(rv,r[o],rc);
+				row[k]=v; col[k]=nv;
+				val[k++]=2*dAdrb(rv,rc,r[o]);
+				row[k]=nv; col[k]=v;	// angle at extra vertex
+				val[k++]=2*dAdrb(rc,rv,r[o]);
+			}
+		}
+	}
+
+	/* y=J*x */
+	private void times(double x[],double y[]) {
+		int i,k;
+
+		for(i=0;i<=nv;i++)
+			y[i]=diag[i]*x[i];
+		for(k=0;k<val.length;k++)
+			y[row[k]]+=val[k]*x[col[k]];
+	}
+
+	private static double dot(double x[],double y[]) {
+		int i;
+		double s=0;
+
+		for(i=0;i<x.length;i++)
+			s+=x[i]*y[i];
+		return s;
+	}
+
+	/* solves J*x=b by BiCGSTAB with Jacobi preconditioning; returns false
+	   if the iteration breaks down or doesn't converge */
+	private boolean solve(double x[],double b[]) {
+		int n=nv+1,i,it;
+		double r[]=ws[0],rh[]=ws[1],p[]=ws[2],v[]=ws[3];
+		double s[]=ws[4],t[]=ws[5],ph[]=ws[6],sh[]=ws[7];
+		double rho=1,alpha=1,omega=1,rho1,beta,bn,eps;
+
+		for(i=0;i<n;i++) {
+			if (diag[i]==0)
+				return false;
+			x[i]=p[i]=v[i]=0;
+			r[i]=rh[i]=b[i];
+		}
+		bn=Math.sqrt(dot(b,b));
+		if (bn==0)
+			return true;
+		eps=1e-12*bn;	// inexact Newton steps are good enough
+		for(it=0;it<4*n+20;it++) {
+			rho1=dot(rh,r);
+			if (rho1==0)
+				return false;
+			beta=(rho1/rho)*(alpha/omega);
+			for(i=0;i<n;i++) {
+				p[i]=r[i]+beta*(p[i]-omega*v[i]);
+				ph[i]=p[i]/diag[i];
+			}
+			times(ph,v);
+			alpha=rho1/dot(rh,v);
+			for(i=0;i<n;i++)
+				s[i]=r[i]-alpha*v[i];
+			if (Math.sqrt(dot(s,s))<=eps) {
+				for(i=0;i<n;i++)
+					x[i]+=alpha*ph[i];
+				return true;
+			}
+			for(i=0;i<n;i++)
+				sh[i]=s[i]/diag[i];
+			times(sh,t);
+			omega=dot(t,s)/dot(t,t);
+			for(i=0;i<n;i++) {
+				x[i]+=alpha*ph[i]+omega*sh[i];
+				r[i]=s[i]-omega*t[i];
+			}
+			if (Double.isNaN(omega) || (omega==0))
+				return false;
+			if (Math.sqrt(dot(r,r))<=eps)
+				return true;
+			rho=rho1;
+		}
+		return false;
+	}
+
+	/* dense solution of J*x=b, as a fallback */
+	private boolean denseSolve(double x[],double b[]) {
+		int n=nv+1,i,k;
+		double a[][]=new double[n][n],mb[]=new double[n];
+
+		for(i=0;i<n;i++) {
+			a[i][i]=diag[i];
+			mb[i]=-b[i];
+		}
+		for(k=0;k<val.length;k++)
+			a[row[k]][col[k]]+=val[k];
+		if (lin==null)
+			lin=new LinEq(n);
+		return lin.solve(a,x,mb)!=0;	// LinEq solves a*x=-mb
+	}
+
+	/* performs a damped Newton step at r, where b holds the angle errors and
+	   nrm is their norm; updates r and b and returns the new norm, or nrm if
+	   no step decreases it */
+	private double step(double r[],double b[],double nrm) {
+		int n=nv+1,i,h;
+		double bt[]=new double[n],dx[]=new double[n],rt[]=new double[n];
+		double nt,t;
+
+		jacobian(r);
+		for(i=0;i<n;i++)
+			bt[i]=-b[i];
+		if (!solve(dx,bt) && !denseSolve(dx,bt))
+			return nrm;
+
+		/* halve the step until it stays inside the domain and decreases
+		   the residual */
+		t=1;
+		for(h=0;h<MAXHALF;h++,t/=2) {
+			for(i=0;i<n;i++)
+				rt[i]=r[i]+t*dx[i];
+			nt=residual(rt,bt);
+			if (nt<nrm) {
+				System.arraycopy(rt,0,r,0,n);
+				System.arraycopy(bt,0,b,0,n);
+				return nt;
+			}
+		}
+		return nrm;		// no progress; rounding errors dominate
+	}
+
 	/**
-Computes the radii of a circle packing.
+Computes the radii of a circle packing by damped Newton iteration. The
+iteration starts from the previous packing computed by this object, if any,
+or else from the radii in r[] if they are all positive, or else from radius
+1 at every vertex. Once the angles are within the tolerance, up to POLISH
+more steps bring them down to the level of rounding errors. The radii are
+the same as those of the undamped iteration with a dense solver that was
+used before, up to rounding; since TrainPic is sensitive to the last bits
+of the radii, pictures may change nevertheless. Packings by the same object
+are serialized; packings of different objects can run in parallel.
 @param double r[]: array of size #vertices+1 for storing radii
 	 */
-	public void pack(double r[])
-	{	int i;
-	double y[]=new double [r.length];
-	for(i=0;i<g.getVertices()+1;i++) {
-		r[i]=1;		/* 1 is a sensible radius for starters */
-		y[i]=2*Math.PI;	/* we want a total angle of 2pi around */
-	}			/* each vertex */
-	if (Newton.newton(this,g.getVertices()+1,r,y))
-		throw new RuntimeException("circle packing didn't succeed");
+	public synchronized void pack(double r[]) {
+		int n=nv+1,i,cnt;
+		double b[]=new double[n],nrm,nt,tol=TOL*Math.max(st.length,1);
+		boolean warm=true;
+
+		if (last!=null)
+			System.arraycopy(last,0,r,0,n);
+		else
+			for(i=0;i<n;i++)
+				warm&=(r[i]>0);
+		if (!warm)
+			for(i=0;i<n;i++)
+				r[i]=1;		/* 1 is a sensible radius for starters */
+
+		nrm=residual(r,b);	/* we want a total angle of 2pi around */
+		for(cnt=0;!(nrm<tol) && (cnt<MAXITER);cnt++) {	/* each vertex */
+			nt=step(r,b,nrm);
+			if (!(nt<nrm))
+				break;
+			nrm=nt;
+		}
+		if (!(nrm<tol))
+			throw new RuntimeException("circle packing didn't succeed");
+		for(cnt=0;cnt<POLISH;cnt++) {
+			nt=step(r,b,nrm);
+			if (!(nt<nrm))
+				break;
+			nrm=nt;
+		}
+		last=r.clone();
 	}
 
 }
@@ -1,159 +1,224 @@
 package pbj.math.graph.train;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import pbj.math.graph.*;
 
 /**
 A class that implements the notion of gates at vertices, along with the
 infinitesimal edges connecting them. (nothing to do with Bill...)
+Besides deciding whether a map is pseudo-Anosov, it determines the
+singularities of the invariant foliations (see Stratum).
+All data are stored per vertex and sized by valence; the infinitesimal
+edges at each vertex form a graph on the gates, which is stored as
+adjacency lists. The object is a snapshot, i.e., it doesn't keep a
+reference to the train track.
 @author Peter Brinkmann
 @see TrainTrack
  */
 public class Gates{			/* data structure which contains */
-	char adj[][];	/* the structure of the infinitesimal */
-	int noad[];		/* edges of a train track map */
-	int ga[][];
-	int nogates[];
-	boolean infini[][][];
-	TrainTrack g;
+	char adj[][];	/* the directions at each vertex */
+	int ga[][];		/* the gate of each direction */
+	int nogates[];	/* number of gates at each vertex */
+	int infini[][][];	/* neighbors of each gate in the graph of */
+	/* infinitesimal edges, sorted */
+	private boolean irreducible;
+	private int cusps;		/* turns of the fixed word inside a gate */
+	private Stratum stratum;
+	private boolean classified=false;
 
 	/**
 Computes the gates of a train track.
 @param TrainTrack gg: train track whose gates and infinitesimal edges will be computed
 	 */
 	public Gates(TrainTrack gg) {
-		int i,j,k;
-		g=new TrainTrack(gg);
-		adj=new char[g.getVertices()][2*g.getEdges()];
-		noad=new int[g.getVertices()];
-		ga=new int[g.getVertices()][2*g.getEdges()];
-		nogates=new int[g.getVertices()];
-		infini=new boolean[g.getVertices()][2*g.getEdges()][2*g.getEdges()];
-		for(i=0;i<g.getVertices();i++) {
-			noad[i]=nogates[i]=0;
-			for(j=0;j<2*g.getEdges();j++) {
-				adj[i][j]=(char) 0;
-				ga[i][j]=0;
-				for(k=0;k<2*g.getEdges();k++)
-					infini[i][j][k]=false;
-			}
-		}
-		infinitesimalEdges();
+		int pos[]=new int[2*gg.getEdges()];	// position of direction at vertex
+
+		findAdj(gg,pos);
+		findGates(gg,pos);
+		findInfEdges(gg,pos);
+		findCusps(gg,pos);
+		irreducible=gg.isIrreducible();
 	}
 
-	private void findAdj() {
+	private void findAdj(TrainTrack g,int pos[]) {
 		/* writes the edges adjacent to the individual vertices to the respective
    adjacency lists. */
-		int i,j,cnt;
+		int noad[]=new int[g.getVertices()];
+		int i,j;
+
+		for(j=0;j<g.getEdges();j++) {
+			noad[g.getStart(j)]++;
+			noad[g.getEnd(j)]++;
+		}
+		adj=new char[g.getVertices()][];
 		for(i=0;i<g.getVertices();i++) {
-			for(cnt=j=0;j<g.getEdges();j++) {
-				if (g.getStart(j)==i) {
-					adj[i][cnt]=Word.indexToChar(j,false);
-					cnt++;
-				}
-				if (g.getEnd(j)==i) {
-					adj[i][cnt]=Word.indexToChar(j,true);
-					cnt++;
-				}
-			}
-			noad[i]=cnt;
+			adj[i]=new char[noad[i]];
+			noad[i]=0;
+		}
+		for(j=0;j<g.getEdges();j++) {
+			i=g.getStart(j);
+			pos[j]=noad[i];
+			adj[i][noad[i]++]=Word.indexToChar(j,false);
+			i=g.getEnd(j);
+			pos[g.getEdges()+j]=noad[i];
+			adj[i][noad[i]++]=Word.indexToChar(j,true);
 		}
 	}
 
-	private void findGates() {
-		/* groups edges together in gates. */
-		int i,j,k,cnt;
-		boolean flag;
+	private void findGates(TrainTrack g,int pos[]) {
+		/* groups edges together in gates: two directions belong to the same gate
+   iff some iterate of D identifies them. Gates are numbered in order of
+   their first direction. */
+		int p[]=g.eventualDirections();
+		int id[]=new int[p.length];
+		int i,j,cnt;
 
+		Arrays.fill(id,-1);
+		ga=new int[g.getVertices()][];
+		nogates=new int[g.getVertices()];
 		for(i=0;i<g.getVertices();i++) {
-			cnt=0; 				// number of current gate
-			for(j=0;j<noad[i]-1;j++) {
-				flag=false;
-				if (ga[i][j]>=cnt)
-					for(k=j+1;k<noad[i];k++)
-						if ((ga[i][k]>=cnt) &&
-								(0==g.isIllegal(adj[i][j],
-										adj[i][k]))) {
-							ga[i][k]=cnt+1;
-							flag=true;
-						}
-
-				if (flag) cnt++;
+			ga[i]=new int[adj[i].length];
+			cnt=0;
+			for(j=0;j<adj[i].length;j++) {
+				if (id[p[g.charToCoord(adj[i][j])]]<0)
+					id[p[g.charToCoord(adj[i][j])]]=cnt++;
+				ga[i][j]=id[p[g.charToCoord(adj[i][j])]];
 			}
-			nogates[i]=cnt+1;
+			for(j=0;j<adj[i].length;j++)	// reset for next vertex
+				id[p[g.charToCoord(adj[i][j])]]=-1;
+			nogates[i]=Math.max(1,cnt);
 		}
 	}
 
-	private void infedgesrec(boolean flags[][],char a,char b) {
-		int vt,i,x,y;
-		x=g.charToCoord(a);
-		y=g.charToCoord(b);
-		if (!flags[x][y]) {
-			flags[y][x]=flags[x][y]=true; // deviates from C code
-			vt=g.firstVertex(b);
-			for(i=0;adj[vt][i]!=a;i++);
-			x=ga[vt][i];
-			for(i=0;adj[vt][i]!=b;i++);
-			y=ga[vt][i];
-			infini[vt][x][y]=infini[vt][y][x]=true;
-			infedgesrec(flags,g.mapd(a),g.mapd(b));
-		}
+	private int gateOf(TrainTrack g,int pos[],char c) {
+		int e=Word.charToIndex(c);
+
+		if (Word.isInverse(c))
+			return ga[g.getEnd(e)][pos[g.getEdges()+e]];
+		else
+			return ga[g.getStart(e)][pos[e]];
 	}
 
-	private void findInfEdges() {
-		/* finds out where infinitesimal edges have to be drawn. */
-		int i,j;
-		boolean flags[][]=new boolean[2*g.getEdges()][2*g.getEdges()];
+	private void findInfEdges(TrainTrack g,int pos[]) {
+		/* finds out where infinitesimal edges have to be drawn, by following the
+   orbits of the turns in the images of edges under D. */
+		HashSet<Long> turns=new HashSet<Long>();
+		HashSet<Long> edges=new HashSet<Long>();
+		int deg[][]=new int[g.getVertices()][];
+		int i,j,x,y,vt;
+		long t;
+		char a,b;
 
-		for(i=0;i<2*g.getEdges();i++)
-			for(j=0;j<2*g.getEdges();j++)
-				flags[i][j]=false;
+		for(i=0;i<g.getVertices();i++)
+			deg[i]=new int[nogates[i]];
 
 		for(i=0;i<g.getEdges();i++)
-			for(j=0;j<g.getIm(i).length()-1;j++)
-				infedgesrec(flags,
-						Word.inverse(g.getIm(i).charAt(j)),
-						g.getIm(i).charAt(j+1));
-	}
+			for(j=0;j<g.getIm(i).length()-1;j++) {
+				a=Word.inverse(g.getIm(i).charAt(j));
+				b=g.getIm(i).charAt(j+1);
+				while (true) {
+					x=g.charToCoord(a);
+					y=g.charToCoord(b);
+					t=(x<y) ? (((long) x)<<17)|y : (((long) y)<<17)|x;
+					if (!turns.add(t))
+						break;
+					vt=g.firstVertex(b);
+					x=gateOf(g,pos,a);
+					y=gateOf(g,pos,b);
+					t=(x<y) ? (((long) vt)<<34)|(((long) x)<<17)|y
+							: (((long) vt)<<34)|(((long) y)<<17)|x;
+					if (edges.add(t)) {
+						deg[vt][x]++;
+						if (x!=y)
+							deg[vt][y]++;
+					}
+					a=g.mapd(a);
+					b=g.mapd(b);
+				}
+			}
 
-	private void infinitesimalEdges() {
-		/* finds gates and connects them with infinitesimal edges. */
-		findAdj();
-		findGates();
-		findInfEdges();
+		infini=new int[g.getVertices()][][];
+		for(i=0;i<g.getVertices();i++) {
+			infini[i]=new int[nogates[i]][];
+			for(j=0;j<nogates[i];j++) {
+				infini[i][j]=new int[deg[i][j]];
+				deg[i][j]=0;
+			}
+		}
+		for(Long e: edges) {
+			vt=(int) (e>>>34);
+			x=(int) ((e>>>17)&0x1ffff);
+			y=(int) (e&0x1ffff);
+			infini[vt][x][deg[vt][x]++]=y;
+			if (x!=y)
+				infini[vt][y][deg[vt][y]++]=x;
+		}
+		for(i=0;i<infini.length;i++)
+			for(j=0;j<infini[i].length;j++)
+				Arrays.sort(infini[i][j]);
 	}
 
-	private void exchange(int vt,int g1,int g2) {
+	private void findCusps(TrainTrack g,int pos[]) {
+		/* counts the turns of the fixed word whose directions belong to the
+   same gate; each of them is a cusp of the complementary region that
+   contains the puncture. */
+		String f=g.getFix();
 		int i;
-		boolean tmp;
-
-		for(i=0;i<noad[vt];i++)
-			if (ga[vt][i]==g1) ga[vt][i]=g2;
-			else if (ga[vt][i]==g2) ga[vt][i]=g1;
-		for(i=0;i<nogates[vt];i++) {
-			tmp=infini[vt][i][g1];
-			infini[vt][i][g1]=infini[vt][i][g2];
-			infini[vt][i][g2]=tmp;
+
+		if (f.length()==0) {
+			cusps=-1;
+			return;
 		}
-		for(i=0;i<nogates[vt];i++) {
-			tmp=infini[vt][g1][i];
-			infini[vt][g1][i]=infini[vt][g2][i];
-			infini[vt][g2][i]=tmp;
+		cusps=0;
+		for(i=0;i<f.length();i++)
+			if (gateOf(g,pos,Word.inverse(f.charAt(i)))
+					==gateOf(g,pos,f.charAt((i+1)%f.length())))
+				cusps++;
+	}
+
+	/* renumbers the gates at vertex vt; gate x becomes gate nw[x]. */
+	private void renumber(int vt,int nw[]) {
+		int old[][]=infini[vt];
+		int i,j;
+
+		for(i=0;i<ga[vt].length;i++)
+			ga[vt][i]=nw[ga[vt][i]];
+		infini[vt]=new int[old.length][];
+		for(i=0;i<old.length;i++) {
+			infini[vt][nw[i]]=old[i];
+			for(j=0;j<old[i].length;j++)
+				old[i][j]=nw[old[i][j]];
+			Arrays.sort(old[i]);
 		}
 	}
 
 	/**
-Checks whether a given map is pseudo-Anosov.
+Checks whether a given map is pseudo-Anosov, i.e., whether the
+infinitesimal edges at each vertex form a path or a cycle through all
+gates and the transition matrix is irreducible. As a side effect, the gates
+at each vertex are renumbered in the order in which the path or cycle
+visits them, and the stratum is determined in the same pass (see
+getStratum()). This takes time linear in the number of gates and
+infinitesimal edges.
 @return true iff map is pseudo-Anosov
 	 */
 	public boolean isPseudoAnosov() {
-		int i,j,k,cnt,flag,pos;
-		for(i=0;i<g.getVertices();i++) {
+		int i,j,k,cnt,flag,pos,n;
+		int slot[],gate[];		// permutation of gates and its inverse
+		int nb[];
+		int prongs[]=new int[nogates.length];
+		int vert[]=new int[nogates.length];
+		int sing=0,punct=0,edges=0;
+
+		classified=true;
+		stratum=null;
+		for(i=0;i<nogates.length;i++) {
+			n=nogates[i];
 			pos=flag=0;
-			for(j=0;j<nogates[i];j++) {
-				cnt=0;
-				for(k=0;k<nogates[i];k++)
-					if (infini[i][j][k])
-						cnt++;
+			for(j=0;j<n;j++) {
+				cnt=infini[i][j].length;
 				if ((cnt>2) || (cnt==0)) return false;
 				if (cnt==1)
 					if (flag>1)
@@ -164,39 +229,145 @@ Checks whether a given map is pseudo-Anosov.
 					}
 			}
 
-			for(j=0;((j<nogates[i]) && (pos<nogates[i]));j++) {
-				exchange(i,j,pos);
-				for(pos=j+1;((pos<nogates[i]) && 
-						(!infini[i][j][pos]));pos++);
+			/* walk along the infinitesimal edges, starting at an end of the
+			   path (if any), and move each gate to the next free slot */
+			slot=new int[n];
+			gate=new int[n];
+			for(j=0;j<n;j++)
+				slot[j]=gate[j]=j;
+			for(j=0;((j<n) && (pos<n));j++) {
+				k=gate[j];	// exchange slots j and pos
+				gate[j]=gate[pos];
+				gate[pos]=k;
+				slot[gate[j]]=j;
+				slot[gate[pos]]=pos;
+
+				nb=infini[i][gate[j]];
+				pos=n;
+				for(k=0;k<nb.length;k++)
+					if ((slot[nb[k]]>j) && (slot[nb[k]]<pos))
+						pos=slot[nb[k]];
 			}
+			renumber(i,slot);
 
-			if (j<nogates[i]) return false;
+			if (j<n) return false;
+
+			/* a cycle of n gates bounds an n-gon, i.e., a singularity with
+			   n prongs; a path of n gates opens into the region of the
+			   puncture and contributes n-2 cusps to it. */
+			if (flag==0) {
+				vert[sing]=i;
+				prongs[sing++]=n;
+			}
+			else
+				punct+=n-2;
+			edges+=adj[i].length;
 		}
-		return g.isIrreducible();
+		if (!irreducible)
+			return false;
+
+		if (cusps>=0)
+			punct+=cusps;
+		else {	// no fixed word; use the Euler-Poincare formula
+			punct=edges-2*nogates.length;	// 2*rank-2
+			for(i=0;i<sing;i++)
+				punct-=prongs[i]-2;
+		}
+		stratum=new Stratum(Arrays.copyOf(prongs,sing),
+				Arrays.copyOf(vert,sing),punct);
+		return true;
+	}
+
+	/**
+Returns the stratum of the map, i.e., the number of prongs at each
+singularity of the invariant foliations and at the puncture. It is
+computed by isPseudoAnosov(), which is called if necessary.
+@return stratum, or null if the map is not pseudo-Anosov
+	 */
+	public Stratum getStratum() {
+		if (!classified)
+			isPseudoAnosov();
+		return stratum;
+	}
+
+	/**
+Returns the total number of gates.
+@return sum of the numbers of gates at all vertices
+	 */
+	public int getGates() {
+		int i,res=0;
+		for(i=0;i<nogates.length;i++)
+			res+=nogates[i];
+		return res;
+	}
+
+	/**
+@param int v: vertex
+@return number of gates at v
+	 */
+	public int getGates(int v) {
+		return nogates[v];
+	}
+
+	/**
+@param int v: vertex
+@return valence of v
+	 */
+	public int getValence(int v) {
+		return adj[v].length;
+	}
+
+	/**
+@param int v: vertex
+@param int k: index of direction, 0<=k<getValence(v)
+@return the k-th direction at v
+	 */
+	public char getDirection(int v,int k) {
+		return adj[v][k];
+	}
+
+	/**
+@param int v: vertex
+@param int k: index of direction, 0<=k<getValence(v)
+@return the gate of the k-th direction at v
+	 */
+	public int getGate(int v,int k) {
+		return ga[v][k];
+	}
+
+	/**
+@param int v: vertex
+@param int x: gate at v
+@return gates at v that are connected to x by infinitesimal edges, in ascending order
+	 */
+	public int[] getNeighbors(int v,int x) {
+		return infini[v][x].clone();
 	}
 
 	public String toString() {
-		int i,j,k;
-		String res="";
+		int i,j,k,l;
+		StringBuilder res=new StringBuilder();
 
-		for(i=0;i<g.getVertices();i++) {
-			res=res+"vertex "+i+"\n";
-			for(j=0;j<noad[i];j++)
-				res=res+Word.charToLabel(adj[i][j])
-				+" "+ga[i][j]+"\n";
-			res=res+"\n";
+		for(i=0;i<nogates.length;i++) {
+			res.append("vertex "+i+"\n");
+			for(j=0;j<adj[i].length;j++)
+				res.append(Word.charToLabel(adj[i][j])
+						+" "+ga[i][j]+"\n");
+			res.append("\n");
 			for(j=0;j<nogates[i];j++) {
-				for(k=0;k<nogates[i];k++)
-					if (infini[i][j][k])
-						res=res+"1 ";
+				for(k=l=0;k<nogates[i];k++)
+					if ((l<infini[i][j].length) && (infini[i][j][l]==k)) {
+						res.append("1 ");
+						l++;
+					}
 					else
-						res=res+"0 ";
-				res=res+"\n";
+						res.append("0 ");
+				res.append("\n");
 			}
-			res=res+"\n";
+			res.append("\n");
 		}
 
-		return res;
+		return res.toString();
 	}
 
 }
@@ -2,8 +2,7 @@ package pbj.math.graph.train;
 
 import gnu.getopt.Getopt;
 
-import java.util.Enumeration;
-import java.util.Vector;
+import java.util.Arrays;
 
 import pbj.io.GenericPrint;
 import pbj.math.graph.Word;
@@ -13,14 +12,17 @@ import pbj.math.manifold.ThreeComplex;
 The class takes a train track map representing an homeomorphism of a
 punctured surface and computes a triangulation of the corresponding
 mapping torus. The output format is suitable for the class ThreeComplex.
+The layers of the triangulation are computed one at a time and written
+out as they are triangulated, so that only two of them are in memory at
+any given time.
 @author Peter Brinkmann
 @see TrainTrack
 @see pbj.math.manifold.ThreeComplex
  */
 public class MappingTorus {
 
-	private Vector<Layer> layers;		// collects the layers obtained by subdividing
-	// and folding
+	private Layer base;		// the base layer; the other layers are
+	// generated from it by subdividing and folding, one at a time
 	private String label;
 	private GenericPrint gp;	// output device
 	private ThreeComplex cx;	// alternative output device
@@ -31,12 +33,77 @@ public class MappingTorus {
 	// private, but somehow netscape and
 	// appletviewer choke on it...
 
-	private String inverse(String s) {
-		return Word.inverse(s.charAt(0))+s.substring(1);
+	// Edges are represented by integer ids. The edges of the fixed word have
+	// ids 2*index (+1 for inverses), and edges arising from subdivision get
+	// ids above nbase, in pairs, so that the inverse of edge e is always e^1.
+	// Folding removes a pair of edges, whose ids are recycled, so that the
+	// number of ids doesn't grow with the number of layers. Edge labels are
+	// only kept when they are printed.
+	private int nbase;		// number of ids of edges of the fixed word
+	private int ids;		// number of ids handed out so far
+	private int free[];		// recycled pairs of ids
+	private int nfree;		// number of recycled pairs
+	private int pos[];		// position of edge e in the indexed layer, or -1
+	private String names[];		// labels of edges, or null if not needed
+
+	private String edgeLabel(int e) {
+		if (e<nbase)
+			return Word.charToLabel(Word.indexToChar(e>>1,(e&1)!=0));
+		else
+			return names[e];
 	}
 
-	private String toLabel(String s) {
-		return Word.charToLabel(s.charAt(0))+s.substring(1);
+	// returns the id of the edge of the fixed word represented by c
+	private static int edgeId(char c) {
+		return 2*Word.charToIndex(c)+(Word.isInverse(c) ? 1 : 0);
+	}
+
+	// creates a new edge by subdividing e; the inverse of the new edge is
+	// the corresponding piece of the inverse of e
+	private int newEdge(int e) {
+		int id,i;
+
+		if (nfree>0)
+			id=free[--nfree];
+		else {
+			if (ids+2>pos.length) {
+				i=pos.length;
+				pos=Arrays.copyOf(pos,2*i);
+				Arrays.fill(pos,i,pos.length,-1);
+				if (names!=null)
+					names=Arrays.copyOf(names,pos.length);
+			}
+			id=ids;
+			ids+=2;
+		}
+		id+=e&1;
+		if (names!=null) {
+			names[id]=edgeLabel(e)+"."+splt;
+			names[id^1]=edgeLabel(e^1)+"."+splt;
+		}
+		return id;
+	}
+
+	// recycles the ids of edge e and its inverse
+	private void freeEdge(int e) {
+		if (e<nbase)
+			return;
+		if (nfree==free.length)
+			free=Arrays.copyOf(free,2*nfree);
+		free[nfree++]=e&~1;
+	}
+
+	// resets the ids of edges to those of the base layer
+	private void resetEdges(boolean named) {
+		splt=0;
+		ids=nbase;
+		nfree=0;
+		names=named ? new String[pos.length] : null;
+	}
+
+	// returns the position of edge e in the indexed layer, or -1
+	private int find(int e) {
+		return (e<pos.length) ? pos[e] : -1;
 	}
 
 	// some convenient routines for computations mod n
@@ -66,24 +133,28 @@ public class MappingTorus {
 		int n;			// the number of the layer
 		int type;		// its type
 		int f0,F0;		// index of the folded edge and its inverse
+		int fold;		// first edge whose image cancels with the next one
 		boolean subd0,subd1;	// index of the subdivided edge(s)
-		Vector<String> edges;		// collects labels of edges
-		Vector<String> images;		// collects images of edges
-		Vector<String> vertices;	// collects labels of initial vertices of edges
-
-		// construct empty layer
-		Layer(int nn) {
+		int len;		// number of edges
+		int edges[];		// ids of edges
+		String images[];	// images of edges
+		int inv[];		// positions of the inverses of edges
+		int vm[],vk[];		// initial vertex of edge i is v.n.vm[i]-vk[i]
+		String labels[];	// labels of vertices, assigned on demand
+
+		// construct empty layer with room for cap edges
+		Layer(int nn,int cap) {
 			n=nn;
-			edges=new Vector<String>();
-			images=new Vector<String>();
-			vertices=new Vector<String>();
+			edges=new int[cap];
+			images=new String[cap];
+			len=0;
 			subd0=false;
 			subd1=false;
 		}
 
 		// construct base layers
 		Layer(TrainTrack t) {
-			this(0);
+			this(0,t.getFix().length());
 
 			int i,e;
 			char c;
@@ -97,61 +168,93 @@ public class MappingTorus {
 				// the fixed word
 				c=t.getFix().charAt(i);
 				e=Word.charToIndex(c);
-				if (!Word.isInverse(c)) {
-					edges.addElement(""+c);
-					images.addElement(t.getIm(e));
-				}
-				else {
-					edges.addElement(""+c);
-					images.addElement(Word.reverseWord(t.getIm(e)));
-				}
+				if (!Word.isInverse(c))
+					add(edgeId(c),t.getIm(e));
+				else
+					add(edgeId(c),Word.reverseWord(t.getIm(e)));
 			}
 
 			// assign standard labels for vertices
 			stdLabels();
+			plan();
 
 			n=0;
 		}
 
+		private void add(int e,String im) {
+			edges[len]=e;
+			images[len++]=im;
+		}
+
+		// records the positions of the edges of this layer in pos[]
+		void index() {
+			int i;
+			for(i=0;i<len;i++)
+				if (pos[edges[i]]<0)
+					pos[edges[i]]=i;
+		}
+
+		// clears the positions recorded by index()
+		void unindex() {
+			int i;
+			for(i=0;i<len;i++)
+				pos[edges[i]]=-1;
+		}
+
 		// computes standard labels for vertices, of the form v.n.m.k, where n is
 		// the number of the layers, m is the number of the vertex after gluing
-		// and k distinguishes vertices that differ before gluing.
+		// and k distinguishes vertices that differ before gluing. Only m and k
+		// are stored; the labels are assembled by label().
 		private void stdLabels() {
 			int i,j,cnt,cnt1;
-			String lab;
 
-			cnt=0;	// counter for labels
+			inv=new int[len];
+			vm=new int[len];
+			vk=new int[len];
+			labels=null;
 
-			vertices.removeAllElements();
-			for(i=0;i<edges.size();i++)
-				vertices.addElement(""); // start with dummy labels
+			index();
+			for(i=0;i<len;i++) {
+				inv[i]=pos[edges[i]^1];
+				vm[i]=-1;	// start with dummy labels
+			}
+			unindex();
 
-			for(i=0;i<edges.size();i++)
+			cnt=0;	// counter for labels
+
+			for(i=0;i<len;i++)
 				// has the initial vertex of edge i been taken care of?
-				if (((String) vertices.elementAt(i)).equals("")) { // no
-					lab="v."+n+"."+(cnt++);	// assign label
+				if (vm[i]<0) { // no
 					cnt1=0;
 					j=i;
 					do {	// find all other vertices that get glued to
 						// the current one
-						j=(edges.indexOf(
-								inverse((String) edges.elementAt(j)))+1)
-								% edges.size();
-						vertices.setElementAt(lab+"-"+(cnt1++),j);
+						j=(inv[j]+1) % len;
+						vm[j]=cnt;
+						vk[j]=cnt1++;
 					} while (i!=j);
 					// note: i gets changed inside the do/while loop, but
 					// now it's back to its original value!
+					cnt++;
 				}
 		}
 
+		// returns the label of the initial vertex of edge i
+		String label(int i) {
+			if (labels==null)
+				labels=new String[len];
+			if (labels[i]==null)
+				labels[i]="v."+n+"."+vm[i]+"-"+vk[i];
+			return labels[i];
+		}
+
 		// goes through the fixed word looking for cancellation in the image
 		int findFold() {
 			int i;
 			String s;
 
-			for(i=0;i<edges.size();i++) {
-				s=((String) images.elementAt(i))+
-				((String) images.elementAt(cyclNext(i,edges.size())));
+			for(i=0;i<len;i++) {
+				s=images[i]+images[cyclNext(i,len)];
 				if (Word.tightenWord(s).length()<s.length())
 					return i;	// cancellation occurs, so we can
 				// subdivide and fold edges i, i+1
@@ -160,29 +263,42 @@ public class MappingTorus {
 			return -1;	// no cancellation
 		}
 
+		// determines where the next layer is folded, so that f0 is known
+		// before the next layer is computed
+		private void plan() {
+			String s;
+
+			fold=findFold();
+			if ((type!=SUBD) && (fold>=0)) {
+				s=images[fold]+images[cyclNext(fold,len)];
+				if (Word.tightenWord(s).length()==0)
+					f0=fold;	// mark edge to be folded
+			}
+		}
+
 		// creates the next layer, either by subdivision or folding
 		Layer nextLayer() {
-			int it,d,n0;
-			String f1,f2,s,s1,s2;
+			int it,d,n0,f1,f2,e,e0,e1;
+			String s,s1,s2;
 			Layer l;
 			int i;
 			boolean flag;		// flag indicating folding layer
 
-			l=new Layer(n+1);	// construct new layer
-			n0=edges.size();	// number of edges
+			n0=len;			// number of edges
+			l=new Layer(n+1,n0+4);	// construct new layer
 			flag=true;		// init flag
 
 			// did 'this' arise from subdivision?
 			if (type!=SUBD) {	// no
-				it=findFold();	// find two edges to fold
+				it=fold;	// two edges to fold
 				l.F0=it;	// mark the edge to be folded
 
 				if (it<0)	// folding impossible? that's trouble...
 					throw new RuntimeException("no next layer");
 
 				// find the images of the edges to be folded...
-				s1=(String) images.elementAt(it);
-				s2=(String) images.elementAt((it+1) % edges.size());
+				s1=images[it];
+				s2=images[(it+1) % n0];
 				// ... and concatenate them.
 				s=s1+s2;
 
@@ -194,152 +310,104 @@ public class MappingTorus {
 					// find the number of letters cancelled
 					d=(s.length()-Word.tightenWord(s).length())/2;
 
+					// new edges for the pieces of edges it and it+1
+					e0=(s1.length()==d) ? -1 : newEdge(edges[it]);
+					e1=(s2.length()==d) ? -1 : newEdge(edges[cyclNext(it,n0)]);
+
 					for(i=0;i<n0;i++) {
 						if (i==it) {
 							// do we need to subdivide edge it?
-							if (s1.length()==d) {	// no
-								l.f0=l.edges.size();
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										(String) images.elementAt(i));
+							if (e0<0) {	// no
+								l.f0=l.len;
+								l.add(edges[i],images[i]);
 							}
 							else { // yes
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.f0=l.edges.size();
-								l.edges.addElement(
-										((String) edges.elementAt(i))
-										+"."+splt);
-								l.images.addElement(
-										s1.substring(0,s1.length()-d));
-								l.images.addElement(
-										s1.substring(s1.length()-d));
+								l.add(edges[i],s1.substring(0,s1.length()-d));
+								l.f0=l.len;
+								l.add(e0,s1.substring(s1.length()-d));
 								l.subd0=true;
 							}
 						}
 						else if (i==cyclNext(it,n0)) {
 							// do we need to subdivide edge it+1?
-							if (s2.length()==d) { // no
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										(String) images.elementAt(i));
-							}
+							if (e1<0) // no
+								l.add(edges[i],images[i]);
 							else { // yes
-								l.edges.addElement(
-										((String) edges.elementAt(i))
-										+"."+splt);
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										s2.substring(0,d));
-								l.images.addElement(
-										s2.substring(d));
+								l.add(e1,s2.substring(0,d));
+								l.add(edges[i],s2.substring(d));
 								l.subd1=true;
 							}
 						}
 						// same thing for the inverses of edges
 						// it and it+1
-						else if (i==edges.indexOf(inverse((String)
-								edges.elementAt(it)))) {
+						else if (i==inv[it]) {
 							// subdivision needed?
-							if (s1.length()==d) { // no
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										(String) images.elementAt(i));
-							}
+							if (e0<0) // no
+								l.add(edges[i],images[i]);
 							else { // yes
-								l.edges.addElement(
-										((String) edges.elementAt(i))
-										+"."+splt);
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										Word.reverseWord(s1).
-										substring(0,d));
-								l.images.addElement(
-										Word.reverseWord(s1).
-										substring(d));
+								l.add(e0^1,Word.reverseWord(s1).substring(0,d));
+								l.add(edges[i],Word.reverseWord(s1).substring(d));
 								l.subd0=true;
 							}
 						}
-						else if (i==edges.indexOf(inverse((String)
-								edges.elementAt(
-										cyclNext(it,n0))))) {
+						else if (i==inv[cyclNext(it,n0)]) {
 							// subdivision needed?
-							if (s2.length()==d) { // no
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.images.addElement(
-										(String) images.elementAt(i));
-							}
+							if (e1<0) // no
+								l.add(edges[i],images[i]);
 							else { // yes
-								l.edges.addElement(
-										(String) edges.elementAt(i));
-								l.edges.addElement(
-										((String) edges.elementAt(i))
-										+"."+splt);
-								l.images.addElement(
-										Word.reverseWord(s2).
+								l.add(edges[i],Word.reverseWord(s2).
 										substring(0,s2.length()-d));
-								l.images.addElement(
-										Word.reverseWord(s2).
+								l.add(e1^1,Word.reverseWord(s2).
 										substring(s2.length()-d));
 								l.subd1=true;
 							}
 
 						}
-						else {	// edge i is nothing special,
+						else	// edge i is nothing special,
 							// just copy it
-							l.edges.addElement(
-									(String) edges.elementAt(i));
-							l.images.addElement(
-									(String) images.elementAt(i));
-						}
+							l.add(edges[i],images[i]);
 					}
 					splt++;		// update marker for subdivided edges
 				}
-				else {
-					f0=it;		// mark edge to be folded
-				}
 			}
 
 			if (flag) {	// flag==true means folding
 				l.type=FOLD;	// record the type of the operation
-				f1=inverse((String) edges.elementAt(f0));	// and fold...
-				f2=(String) edges.elementAt(cyclNext(f0,n0));
+				f1=edges[f0]^1;	// and fold...
+				f2=edges[cyclNext(f0,n0)];
 				for(i=cyclNext(f0+1,n0);i!=f0;i=cyclNext(i,n0)) {
-					s=(String) edges.elementAt(i);
-					if (s.equals(f1))
-						l.edges.addElement(f2);
-					else if (s.equals(inverse(f1)))
-						l.edges.addElement(inverse(f2));
+					e=edges[i];
+					if (e==f1)
+						l.add(f2,images[i]);
+					else if (e==(f1^1))
+						l.add(f2^1,images[i]);
 					else
-						l.edges.addElement(s);
-					l.images.addElement((String) images.elementAt(i));
+						l.add(e,images[i]);
 				}
+				freeEdge(edges[f0]);	// edge f0 is gone
 			}
 
 			// assign standard labels to vertices
 			l.stdLabels();
+			l.plan();
 
 			return l;
 		}
 
 		public String toString() {
 			int i;
-			String res="// "+type+" "+f0+" "+F0+" "+subd0+" "+" "+subd1+"\n";
+			StringBuilder res=new StringBuilder();
 
-			for(i=0;i<edges.size();i++)
-				res=res+"// "+toLabel((String) edges.elementAt(i))+" "+
-				Word.pathToString((String) images.elementAt(i))+" "+
-				((String) vertices.elementAt(i))+"\n";
+			res.append("// "+type+" "+f0+" "+F0+" "+subd0+" "+" "+subd1+"\n");
 
-			res=res+"// size: "+size();
+			for(i=0;i<len;i++)
+				res.append("// ").append(edgeLabel(edges[i])).append(' ')
+				.append(Word.pathToString(images[i])).append(' ')
+				.append(label(i)).append('\n');
 
-			return res+"\n";
+			res.append("// size: ").append(size());
+
+			return res.append('\n').toString();
 		}
 
 		// computes the sum of the lengths of the images of edges
@@ -347,8 +415,8 @@ public class MappingTorus {
 			int s;
 			int i;
 
-			for(i=0,s=0;i<edges.size();i++)
-				s+=((String) images.elementAt(i)).length();
+			for(i=0,s=0;i<len;i++)
+				s+=images[i].length();
 
 			return s;
 		}
@@ -360,24 +428,22 @@ Constructor
 @param TrainTrack t: train track whose mapping torus will be computed
 	 */
 	public MappingTorus(TrainTrack t) {
-		Layer l;
+		int i;
 
-		layers=new Vector<Layer>();
+		nbase=0;
+		for(i=0;i<t.getFix().length();i++)
+			nbase=Math.max(nbase,edgeId(t.getFix().charAt(i))/2*2+2);
+		pos=new int[Math.max(2*nbase,16)];
+		Arrays.fill(pos,-1);
+		free=new int[8];
+		resetEdges(false);
 
-		l=new Layer(t);		// construct the base layer
+		base=new Layer(t);		// construct the base layer
 		setLabel(t.getLabel());
 		VERBOSE=false;
-		splt=0;
 
-		layers.addElement(l);
-
-		// fold until we reach an immersion
-		while (l.findFold()>=0) {
-			l=l.nextLayer();
-			layers.addElement(l);
-		}
-
-		if (layers.size()<2)
+		// the remaining layers are computed on the fly, by triangulate()
+		if (base.fold<0)
 			throw new RuntimeException("need at least two layers");
 	}
 
@@ -443,6 +509,213 @@ the triangulation. Default is false.
 
 	}
 
+	// triangulates the region between the successive layers l0 and l1
+	private void triangulate(Layer l0,Layer l1) {
+		int i,i0,k0,i1,k1,r0,r1,R0,R1,n0,n1;
+
+		n0=l0.len;
+		n1=l1.len;
+		l1.index();
+
+		if (l1.type==l1.FOLD) {		// handle folding layers
+			i0=l0.f0;
+			i1=0;
+			k0=cyclNext(l0.inv[i0],n0);
+
+			k1=cyclNext(find(l0.edges[cyclNext(i0,n0)]),n1);
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// collapse edge at "+i0);
+
+			addTuple(l0.label(i0),
+					l0.label(cyclNext(i0,n0)),
+					l1.label(i1),
+					l0.label(k0),
+					l0.label(cyclPrev(k0,n0)),
+					l1.label(k1));
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// done collapsing edge at "+i0);
+
+			r0=cyclNext(i0,n0);
+			R0=cyclNext(l0.inv[r0],n0);
+			R1=cyclNext(find(l0.edges[r0]^1),n1);
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// fold edge at "+(i0+1));
+
+			addTuple(l0.label(r0),
+					l0.label(cyclNext(r0,n0)),
+					l1.label(i1),
+					l0.label(R0),
+					l0.label(cyclPrev(R0,n0)),
+					l1.label(cyclPrev(R1,n1)));
+
+			addTuple(l0.label(cyclPrev(k0,n0)),
+					l1.label(k1),
+					l1.label(cyclPrev(k1,n1)),
+					l0.label(R0),
+					l1.label(cyclPrev(R1,n1)),
+					l1.label(R1));
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// done folding edge at "+(i0+1));
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// fill in remaining edges");
+
+			for(r0=cyclNext(r0,n0);r0!=i0;r0=cyclNext(r0,n0)) {
+				r1=find(l0.edges[r0]);
+				R0=cyclNext(l0.inv[r0],n0);
+				R1=cyclNext(find(l0.edges[r0]^1),n1);
+
+				if (cyclLeq(r0,cyclPrev(R0,n0),n0,i0)) {
+					addTuple(l0.label(r0),
+							l1.label(r1),
+							l1.label(
+									cyclNext(r1,n1)),
+									l0.label(R0),
+									l1.label(R1),
+									l1.label(
+											cyclPrev(R1,n1)));
+
+					addTuple(l0.label(r0),
+							l0.label(
+									cyclNext(r0,n0)),
+									l1.label(
+											cyclNext(r1,n1)),
+											l0.label(R0),
+											l0.label(
+													cyclPrev(R0,n0)),
+													l1.label(
+															cyclPrev(R1,n1)));
+				}
+			}
+			if ((VERBOSE) && (gp!=null))
+				gp.println(
+				"// done filling in remaining edges");
+		}
+		else if (l1.type==l1.SUBD) {	// handle subdivision layers
+			R0=cyclNext(l0.inv[l1.F0],n0);
+			R1=cyclNext(l1.inv[l1.f0],n1);
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// fill in edge "+l1.F0);
+
+			addTuple(l0.label(l1.F0),
+					l0.label(cyclNext(l1.F0,n0)),
+					l1.label(l1.f0),
+					l0.label(R0),
+					l0.label(cyclPrev(R0,n0)),
+					l1.label(R1));
+
+			addTuple(l0.label(cyclNext(l1.F0,n0)),
+					l1.label(l1.f0),
+					l1.label(cyclNext(l1.f0,n1)),
+					l0.label(cyclPrev(R0,n0)),
+					l1.label(R1),
+					l1.label(cyclPrev(R1,n1)));
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// done filling in edge "+l1.F0);
+
+			if (l1.subd0) {
+				if ((VERBOSE) && (gp!=null))
+					gp.println(
+							"// fill in remainder of "+l1.F0);
+
+				addTuple(l0.label(l1.F0),
+						l1.label(
+								cyclPrev(l1.f0,n1)),
+								l1.label(l1.f0),
+								l0.label(R0),
+								l1.label(cyclNext(R1,n1)),
+								l1.label(R1));
+				if ((VERBOSE) && (gp!=null))
+					gp.println("// done filling "+
+							"in remainder of "+l1.F0);
+			}
+
+			r0=cyclNext(l1.F0,n0);
+			R0=cyclNext(l0.inv[r0],n0);
+			r1=cyclNext(l1.f0,n1);
+			R1=cyclNext(l1.inv[r1],n1);
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// fill in edge "+r0);
+
+			addTuple(l0.label(r0),
+					l0.label(cyclNext(r0,n0)),
+					l1.label(cyclNext(r1,n1)),
+					l0.label(R0),
+					l0.label(cyclPrev(R0,n0)),
+					l1.label(cyclPrev(R1,n1)));
+
+			addTuple(l0.label(r0),
+					l1.label(r1),
+					l1.label(cyclNext(r1,n1)),
+					l0.label(R0),
+					l1.label(R1),
+					l1.label(cyclPrev(R1,n1)));
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// done filling in edge "+r0);
+
+			if (l1.subd1) {
+				if ((VERBOSE) && (gp!=null))
+					gp.println("// fill in remainder"
+							+" of "+r0);
+				addTuple(l0.label(
+						cyclNext(r0,n0)),
+						l1.label(
+								cyclNext(r1,n1)),
+								l1.label(
+										cyclNext(r1+1,n1)),
+										l0.label(
+												cyclPrev(R0,n0)),
+												l1.label(
+														cyclPrev(R1,n1)),
+														l1.label(
+																cyclPrev(R1-1,n1)));
+				if ((VERBOSE) && (gp!=null))
+					gp.println("// done filling in "+
+							"remainder of "+
+							+r0);
+			}
+
+			if ((VERBOSE) && (gp!=null))
+				gp.println("// fill in remaining edges");
+
+			for(i=cyclNext(l1.F0+1,n0);i!=l1.F0;i=cyclNext(i,n0)) {
+				r0=i;
+				R0=cyclNext(l0.inv[r0],n0);
+				r1=find(l0.edges[r0]);
+				R1=cyclNext(l1.inv[r1],n1);
+
+				if (cyclLeq(r0,cyclPrev(R0,n0),n0,l1.F0)) {
+					addTuple(l0.label(r0),
+							l0.label(cyclNext(r0,n0)),
+							l1.label(r1),
+							l0.label(R0),
+							l0.label(cyclPrev(R0,n0)),
+							l1.label(R1));
+
+					addTuple(l0.label(
+							cyclNext(r0,n0)),
+							l1.label(r1),
+							l1.label(
+									cyclNext(r1,n1)),
+									l0.label(
+											cyclPrev(R0,n0)),
+											l1.label(R1),
+											l1.label(
+													cyclPrev(R1,n1)));
+				}
+			}
+			if ((VERBOSE) && (gp!=null))
+				gp.println(
+				"// done filling in remaining edges");
+		}
+
+		l1.unindex();
+	}
+
 	/**
 Prints a triangulation in a format that's suitable for ThreeComplex.
 The output goes to stdout.
@@ -453,15 +726,16 @@ The output goes to stdout.
 	}
 
 	/**
-Prints a triangulation in a format that's suitable for ThreeComplex.
+Prints a triangulation in a format that's suitable for ThreeComplex. The
+tetrahedra between two layers are emitted as soon as the layers have been
+computed.
 @param Object pp: object of Writer class or of type ThreeComplex. Output goes to pp
 @see ThreeComplex
 	 */
 	public void triangulate(Object pp) {
-		Enumeration<Layer> elts;
-		Layer base,l0,l1;
-		int i,i0,k0,i1,k1,r0,r1,R0,R1,n0,n1;
-		char c;
+		Layer l0,l1;
+		int i,k0,r0,r1,R0,R1,n0,n1;
+		int first[];
 
 		if (pp instanceof ThreeComplex) {
 			cx=(ThreeComplex) pp;
@@ -473,229 +747,18 @@ Prints a triangulation in a format that's suitable for ThreeComplex.
 			gp=new GenericPrint(pp);
 		}
 
-		elts=layers.elements();
-		base=(Layer) elts.nextElement();
+		resetEdges((VERBOSE) && (gp!=null));
 		l1=base;
-		
+
 		if ((VERBOSE) && (gp!=null))
 			gp.println("\n"+l1.toString());
 
-		// triangulate between successive layers
-		while (elts.hasMoreElements()) {
+		// generate the layers one at a time and triangulate between
+		// successive layers; only two layers (and the base layer) are kept
+		while (l1.fold>=0) {
 			l0=l1;
-			l1=(Layer) elts.nextElement();
-			n0=l0.edges.size();
-			n1=l1.edges.size();
-
-			if (l1.type==l1.FOLD) {		// handle folding layers
-				i0=l0.f0;
-				i1=0;
-				k0=cyclNext(l0.edges.indexOf(inverse((String)
-						l0.edges.elementAt(i0))),n0);
-
-				k1=cyclNext(l1.edges.indexOf((String)
-						l0.edges.elementAt(cyclNext(i0,n0))),n1);
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// collapse edge at "+i0);
-
-				addTuple(l0.vertices.elementAt(i0),
-						l0.vertices.elementAt(cyclNext(i0,n0)),
-						l1.vertices.elementAt(i1),
-						l0.vertices.elementAt(k0),
-						l0.vertices.elementAt(cyclPrev(k0,n0)),
-						l1.vertices.elementAt(k1));
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// done collapsing edge at "+i0);
-
-				r0=cyclNext(i0,n0);
-				R0=cyclNext(l0.edges.indexOf(inverse((String)
-						l0.edges.elementAt(r0))),n0);
-				R1=cyclNext(l1.edges.indexOf(inverse((String)
-						l0.edges.elementAt(r0))),n1);
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// fold edge at "+(i0+1));
-
-				addTuple(l0.vertices.elementAt(r0),
-						l0.vertices.elementAt(cyclNext(r0,n0)),
-						l1.vertices.elementAt(i1),
-						l0.vertices.elementAt(R0),
-						l0.vertices.elementAt(cyclPrev(R0,n0)),
-						l1.vertices.elementAt(cyclPrev(R1,n1)));
-
-				addTuple(l0.vertices.elementAt(cyclPrev(k0,n0)),
-						l1.vertices.elementAt(k1),
-						l1.vertices.elementAt(cyclPrev(k1,n1)),
-						l0.vertices.elementAt(R0),
-						l1.vertices.elementAt(cyclPrev(R1,n1)),
-						l1.vertices.elementAt(R1));
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// done folding edge at "+(i0+1));
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// fill in remaining edges");
-
-				for(r0=cyclNext(r0,n0);r0!=i0;r0=cyclNext(r0,n0)) {
-					r1=l1.edges.indexOf(
-							(String) l0.edges.elementAt(r0));
-					R0=cyclNext(l0.edges.indexOf(inverse((String)
-							l0.edges.elementAt(r0))),n0);
-					R1=cyclNext(l1.edges.indexOf(inverse((String)
-							l0.edges.elementAt(r0))),n1);
-
-					if (cyclLeq(r0,cyclPrev(R0,n0),n0,i0)) {
-						addTuple(l0.vertices.elementAt(r0),
-								l1.vertices.elementAt(r1),
-								l1.vertices.elementAt(
-										cyclNext(r1,n1)),
-										l0.vertices.elementAt(R0),
-										l1.vertices.elementAt(R1),
-										l1.vertices.elementAt(
-												cyclPrev(R1,n1)));
-
-						addTuple(l0.vertices.elementAt(r0),
-								l0.vertices.elementAt(
-										cyclNext(r0,n0)),
-										l1.vertices.elementAt(
-												cyclNext(r1,n1)),
-												l0.vertices.elementAt(R0),
-												l0.vertices.elementAt(
-														cyclPrev(R0,n0)),
-														l1.vertices.elementAt(
-																cyclPrev(R1,n1)));
-					}
-				}
-				if ((VERBOSE) && (gp!=null))
-					gp.println(
-					"// done filling in remaining edges");
-			}
-			else if (l1.type==l1.SUBD) {	// handle subdivision layers
-				R0=cyclNext(l0.edges.indexOf(inverse((String)
-						l0.edges.elementAt(l1.F0))),n0);
-				R1=cyclNext(l1.edges.indexOf(inverse((String)
-						l1.edges.elementAt(l1.f0))),n1);
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// fill in edge "+l1.F0);
-
-				addTuple(l0.vertices.elementAt(l1.F0),
-						l0.vertices.elementAt(cyclNext(l1.F0,n0)),
-						l1.vertices.elementAt(l1.f0),
-						l0.vertices.elementAt(R0),
-						l0.vertices.elementAt(cyclPrev(R0,n0)),
-						l1.vertices.elementAt(R1));
-
-				addTuple(l0.vertices.elementAt(cyclNext(l1.F0,n0)),
-						l1.vertices.elementAt(l1.f0),
-						l1.vertices.elementAt(cyclNext(l1.f0,n1)),
-						l0.vertices.elementAt(cyclPrev(R0,n0)),
-						l1.vertices.elementAt(R1),
-						l1.vertices.elementAt(cyclPrev(R1,n1)));
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// done filling in edge "+l1.F0);
-
-				if (l1.subd0) {
-					if ((VERBOSE) && (gp!=null))
-						gp.println(
-								"// fill in remainder of "+l1.F0);
-
-					addTuple(l0.vertices.elementAt(l1.F0),
-							l1.vertices.elementAt(
-									cyclPrev(l1.f0,n1)),
-									l1.vertices.elementAt(l1.f0),
-									l0.vertices.elementAt(R0),
-									l1.vertices.elementAt(cyclNext(R1,n1)),
-									l1.vertices.elementAt(R1));
-					if ((VERBOSE) && (gp!=null))
-						gp.println("// done filling "+
-								"in remainder of "+l1.F0);
-				}
-
-				r0=cyclNext(l1.F0,n0);
-				R0=cyclNext(l0.edges.indexOf(inverse((String)
-						l0.edges.elementAt(r0))),n0);
-				r1=cyclNext(l1.f0,n1);
-				R1=cyclNext(l1.edges.indexOf(inverse((String)
-						l1.edges.elementAt(r1))),n1);
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// fill in edge "+r0);
-
-				addTuple(l0.vertices.elementAt(r0),
-						l0.vertices.elementAt(cyclNext(r0,n0)),
-						l1.vertices.elementAt(cyclNext(r1,n1)),
-						l0.vertices.elementAt(R0),
-						l0.vertices.elementAt(cyclPrev(R0,n0)),
-						l1.vertices.elementAt(cyclPrev(R1,n1)));
-
-				addTuple(l0.vertices.elementAt(r0),
-						l1.vertices.elementAt(r1),
-						l1.vertices.elementAt(cyclNext(r1,n1)),
-						l0.vertices.elementAt(R0),
-						l1.vertices.elementAt(R1),
-						l1.vertices.elementAt(cyclPrev(R1,n1)));
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// done filling in edge "+r0);
-
-				if (l1.subd1) {
-					if ((VERBOSE) && (gp!=null))
-						gp.println("// fill in remainder"
-								+" of "+r0);
-					addTuple(l0.vertices.elementAt(
-							cyclNext(r0,n0)),
-							l1.vertices.elementAt(
-									cyclNext(r1,n1)),
-									l1.vertices.elementAt(
-											cyclNext(r1+1,n1)),
-											l0.vertices.elementAt(
-													cyclPrev(R0,n0)),
-													l1.vertices.elementAt(
-															cyclPrev(R1,n1)),
-															l1.vertices.elementAt(
-																	cyclPrev(R1-1,n1)));
-					if ((VERBOSE) && (gp!=null))
-						gp.println("// done filling in "+
-								"remainder of "+
-								+r0);
-				}
-
-				if ((VERBOSE) && (gp!=null))
-					gp.println("// fill in remaining edges");
-
-				for(i=cyclNext(l1.F0+1,n0);i!=l1.F0;i=cyclNext(i,n0)) {
-					r0=i;
-					R0=cyclNext(l0.edges.indexOf(inverse((String)
-							l0.edges.elementAt(r0))),n0);
-					r1=l1.edges.indexOf((String)
-							l0.edges.elementAt(r0));
-					R1=cyclNext(l1.edges.indexOf(inverse((String)
-							l1.edges.elementAt(r1))),n1);
-
-					if (cyclLeq(r0,cyclPrev(R0,n0),n0,l1.F0)) {
-						addTuple(l0.vertices.elementAt(r0),
-								l0.vertices.elementAt(cyclNext(r0,n0)),
-								l1.vertices.elementAt(r1),
-								l0.vertices.elementAt(R0),
-								l0.vertices.elementAt(cyclPrev(R0,n0)),
-								l1.vertices.elementAt(R1));
-
-						addTuple(l0.vertices.elementAt(
-								cyclNext(r0,n0)),
-								l1.vertices.elementAt(r1),
-								l1.vertices.elementAt(
-										cyclNext(r1,n1)),
-										l0.vertices.elementAt(
-												cyclPrev(R0,n0)),
-												l1.vertices.elementAt(R1),
-												l1.vertices.elementAt(
-														cyclPrev(R1,n1)));
-					}
-				}
-				if ((VERBOSE) && (gp!=null))
-					gp.println(
-					"// done filling in remaining edges");
-			}
+			l1=l0.nextLayer();
+			triangulate(l0,l1);
 
 			if ((VERBOSE) && (gp!=null))
 				gp.println("\n"+l1.toString());
@@ -703,25 +766,38 @@ Prints a triangulation in a format that's suitable for ThreeComplex.
 
 		if ((VERBOSE) && (gp!=null))
 			gp.println("// final gluing");
-		n0=base.edges.size();
-		n1=l1.edges.size();
-		for(i=0;l1.images.indexOf(""+Word.indexToChar(i,false))>=0;i++) {
-			c=Word.indexToChar(i,false);
-			r0=base.edges.indexOf(c+"");
-			R0=cyclNext(base.edges.indexOf(Word.inverse(c)+""),n0);
-			r1=l1.images.indexOf(c+"");
-			R1=cyclNext(l1.images.indexOf(Word.inverse(c)+""),n1);
-
-			addGluing(l1.vertices.elementAt(r1),
-					l1.vertices.elementAt(cyclNext(r1,n1)),
-					base.vertices.elementAt(r0),
-					base.vertices.elementAt(cyclNext(r0,n0)));
-
-			addGluing(l1.vertices.elementAt(R1),
-					l1.vertices.elementAt(cyclPrev(R1,n1)),
-					base.vertices.elementAt(R0),
-					base.vertices.elementAt(cyclPrev(R0,n0)));
+		n0=base.len;
+		n1=l1.len;
+
+		// first[e]: first position in l1 whose image is the single edge e
+		for(i=0,k0=0;i<n1;i++)
+			if (l1.images[i].length()==1)
+				k0=Math.max(k0,edgeId(l1.images[i].charAt(0))/2*2+2);
+		first=new int[k0];
+		Arrays.fill(first,-1);
+		for(i=n1-1;i>=0;i--)
+			if (l1.images[i].length()==1)
+				first[edgeId(l1.images[i].charAt(0))]=i;
+
+		base.index();
+		for(i=0;2*i<first.length && first[2*i]>=0;i++) {
+			r0=find(2*i);
+			R0=cyclNext(find(2*i+1),n0);
+			r1=first[2*i];
+			R1=cyclNext(first[2*i+1],n1);
+
+			addGluing(l1.label(r1),
+					l1.label(cyclNext(r1,n1)),
+					base.label(r0),
+					base.label(cyclNext(r0,n0)));
+
+			addGluing(l1.label(R1),
+					l1.label(cyclPrev(R1,n1)),
+					base.label(R0),
+					base.label(cyclPrev(R0,n0)));
 		}
+		base.unindex();
+
 		if ((VERBOSE) && (gp!=null)) {
 			gp.println("// done with final gluing");
 			gp.println("\n"+base.toString());
@@ -730,8 +806,12 @@ Prints a triangulation in a format that's suitable for ThreeComplex.
 
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for(Layer layer: layers) {
+		Layer layer;
+		resetEdges(true);
+		for(layer=base;;layer=layer.nextLayer()) {
 			sb.append(layer.toString());
+			if (layer.fold<0)
+				break;
 		}
 		return sb.toString();
 	}
@@ -0,0 +1,191 @@
+package pbj.math.graph.train;
+
+/**
+<p>Runs the train track algorithm with several strategies for choosing
+illegal turns at the same time, each on a copy of the input and in a thread
+of its own. Running times vary wildly with the order of folds, so racing a
+few strategies or random seeds cuts the running time on hard inputs.</p>
+
+<p>By default, the first computation that reaches SUCCESS or FAILURE wins
+and the others are stopped. Alternatively, setGrace() makes the portfolio
+wait for the other computations for a while and keep the train track with
+the fewest edges, which leads to smaller triangulations of the mapping
+torus.</p>
+@author Peter Brinkmann
+@see TurnStrategy
+@see TrainTrack
+ */
+public class Portfolio {
+
+	private String strategies[];
+	private Budget budget=null;
+	private long grace=-1;		// milliseconds, negative for first result
+	private boolean collect=false;	// statistics for each member?
+
+	private TrainTrack members[];
+	private int finished;
+	private int winner;
+
+	/**
+Constructs a portfolio.
+@param String st[]: names of strategies, one per thread (see TurnStrategy.forName())
+	 */
+	public Portfolio(String st[]) {
+		int i;
+
+		if (st.length<1)
+			throw new IllegalArgumentException("empty portfolio");
+		for(i=0;i<st.length;i++)
+			TurnStrategy.forName(st[i]);	// fail early if a name is bad
+		strategies=st;
+	}
+
+	/**
+Constructs a portfolio of one thread per processor: min-depth, the
+look-ahead strategies, and random strategies with seeds 1, 2, ...
+@return portfolio with default strategies
+	 */
+	public static Portfolio defaultPortfolio() {
+		int n=Math.max(3,Runtime.getRuntime().availableProcessors());
+		String st[]=new String[n];
+		int i;
+
+		st[0]="depth";
+		st[1]="pf";
+		st[2]="size";
+		for(i=3;i<n;i++)
+			st[i]="random:"+(i-2);
+		return new Portfolio(st);
+	}
+
+	/**
+@param Budget b: budget for each computation (null for no limits)
+	 */
+	public void setBudget(Budget b) {
+		budget=b;
+	}
+
+	/**
+Determines how the result is chosen.
+@param long ms: if negative, the first result wins; otherwise, after the first result, the portfolio waits up to ms milliseconds for the other computations and keeps the result with the fewest edges
+	 */
+	public void setGrace(long ms) {
+		grace=ms;
+	}
+
+	/**
+@param boolean b: if true, each computation collects statistics
+	 */
+	public void setStatistics(boolean b) {
+		collect=b;
+	}
+
+	/**
+Runs the train track algorithm on copies of t, one for each strategy.
+The input is not changed.
+@param TrainTrack t: input
+@return the winning computation, which can be asked for its status, strategy, and statistics
+	 */
+	public TrainTrack run(TrainTrack t) {
+		Thread threads[]=new Thread[strategies.length];
+		long deadline=0;
+		boolean done;
+		int i;
+
+		members=new TrainTrack[strategies.length];
+		finished=0;
+		winner=-1;
+		for(i=0;i<members.length;i++) {
+			members[i]=new TrainTrack(t);
+			members[i].setStrategy(TurnStrategy.forName(strategies[i]));
+			members[i].setBudget(budget);
+			if (collect)
+				members[i].setStatistics(new Statistics());
+		}
+
+		for(i=0;i<members.length;i++) {
+			final int k=i;
+			threads[i]=new Thread("portfolio-"+strategies[i]) {
+				public void run() {
+					try {
+						members[k].trainTrackMap();
+					} finally {
+						finish(k);
+					}
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		try {
+			synchronized (this) {
+				while ((winner<0) && (finished<members.length))
+					wait();
+				if ((winner>=0) && (grace>=0)) {
+					deadline=(grace>Long.MAX_VALUE/2) ? Long.MAX_VALUE
+							: System.currentTimeMillis()+grace;
+					while ((finished<members.length)
+							&& (System.currentTimeMillis()<deadline))
+						wait(Math.max(1,deadline-System.currentTimeMillis()));
+				}
+			}
+		} catch (InterruptedException e) {
+			// stop everything and return what we have
+		}
+
+		// stop the rest; stop() is a no-op until a computation has started
+		do {
+			done=true;
+			for(i=0;i<threads.length;i++)
+				if (threads[i].isAlive()) {
+					members[i].stop();
+					done=false;
+				}
+			if (!done)
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					break;
+				}
+		} while (!done);
+
+		synchronized (this) {
+			if (winner<0)	// nobody finished; keep the first one
+				winner=0;
+			return members[winner];
+		}
+	}
+
+	/* called by thread k when its computation is over */
+	private synchronized void finish(int k) {
+		int st=members[k].getStatus();
+
+		finished++;
+		if ((st==TrainTrack.SUCCESS) || (st==TrainTrack.FAILURE)) {
+			if (winner<0)
+				winner=k;
+			else if ((grace>=0) && (members[k].getStatus()==TrainTrack.SUCCESS)
+					&& ((members[winner].getStatus()!=TrainTrack.SUCCESS)
+							|| (members[k].getEdges()
+									<members[winner].getEdges())))
+				winner=k;
+		}
+		notifyAll();
+	}
+
+	/**
+@return the computations of the last run, in the order of the strategies
+	 */
+	public TrainTrack[] getMembers() {
+		return members;
+	}
+
+	/**
+@return name of the strategy that won the last run
+	 */
+	public String getWinnerStrategy() {
+		return strategies[winner];
+	}
+
+}
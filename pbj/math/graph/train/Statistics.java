@@ -0,0 +1,208 @@
+package pbj.math.graph.train;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+/**
+Counters and timers for the train track algorithm. A TrainTrack only
+collects statistics if an instance of this class has been attached to it
+with setStatistics(), so there is no overhead otherwise. Statistics can be
+published via JMX (see register()) and written as a JSON report.
+Phase timers are inclusive, i.e., the cleanup time contains the PF
+evaluations performed during valence two homotopies.
+@author Peter Brinkmann
+@see TrainTrack
+ */
+public class Statistics implements StatisticsMBean {
+
+	/** phase: cleaning up, i.e., turning a map into a topological representative */
+	public static final int CLEANUP=0;
+	/** phase: looking for illegal turns */
+	public static final int SEARCH=1;
+	/** phase: splitting and folding */
+	public static final int FOLD=2;
+
+	private static final String phaseNames[]={"cleanup","search","fold"};
+
+	long splits;
+	long folds;
+	long tightenings;
+	long v1;
+	long v2;
+	long forests;
+	long pf;
+	long escalations;
+	long uncertified;
+	long turns;
+	long candidates;
+	long lookaheads;
+	volatile String strategy="depth";
+	private volatile long size;
+	private long phaseTime[]=new long[phaseNames.length];	// nanoseconds
+	private long start=System.currentTimeMillis();
+	private List<long[]> sizes=new ArrayList<long[]>();	// (time, size)
+
+	/**
+Adds time to one of the phases.
+@param int phase: CLEANUP, SEARCH, or FOLD
+@param long nanos: time in nanoseconds
+	 */
+	public void addTime(int phase,long nanos) {
+		phaseTime[phase]+=nanos;
+	}
+
+	/**
+Records the total length of the images of edges at the current time.
+@param int sz: current size
+	 */
+	public void sample(int sz) {
+		size=sz;
+		synchronized (sizes) {
+			sizes.add(new long[] {System.currentTimeMillis()-start,sz});
+		}
+	}
+
+	public long getSplits() {
+		return splits;
+	}
+
+	public long getFolds() {
+		return folds;
+	}
+
+	public long getTightenings() {
+		return tightenings;
+	}
+
+	public long getV1Homotopies() {
+		return v1;
+	}
+
+	public long getV2Homotopies() {
+		return v2;
+	}
+
+	public long getForestCollapses() {
+		return forests;
+	}
+
+	public long getPFEvaluations() {
+		return pf;
+	}
+
+	public long getPFEscalations() {
+		return escalations;
+	}
+
+	public long getPFUncertified() {
+		return uncertified;
+	}
+
+	public String getStrategy() {
+		return strategy;
+	}
+
+	public long getTurnSelections() {
+		return turns;
+	}
+
+	public long getCandidateTurns() {
+		return candidates;
+	}
+
+	public long getLookAheads() {
+		return lookaheads;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getCleanupTime() {
+		return phaseTime[CLEANUP]/1000000;
+	}
+
+	public long getSearchTime() {
+		return phaseTime[SEARCH]/1000000;
+	}
+
+	public long getFoldTime() {
+		return phaseTime[FOLD]/1000000;
+	}
+
+	public void reset() {
+		int i;
+
+		splits=folds=tightenings=v1=v2=forests=pf=escalations=uncertified=size=0;
+		turns=candidates=lookaheads=0;
+		for(i=0;i<phaseTime.length;i++)
+			phaseTime[i]=0;
+		start=System.currentTimeMillis();
+		synchronized (sizes) {
+			sizes.clear();
+		}
+	}
+
+	/**
+Publishes this object via the platform MBean server.
+@param String name: name that distinguishes this object from other instances
+	 */
+	public void register(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName("pbj.math.graph.train:type=Statistics,name="
+							+ObjectName.quote(name)));
+		} catch (Exception e) {
+			throw new RuntimeException("can't register statistics: "
+					+e.toString());
+		}
+	}
+
+	public String toJSON() {
+		int i;
+		StringBuilder sb=new StringBuilder();
+
+		sb.append("{\n");
+		sb.append("  \"splits\": "+splits+",\n");
+		sb.append("  \"folds\": "+folds+",\n");
+		sb.append("  \"tightenings\": "+tightenings+",\n");
+		sb.append("  \"v1Homotopies\": "+v1+",\n");
+		sb.append("  \"v2Homotopies\": "+v2+",\n");
+		sb.append("  \"forestCollapses\": "+forests+",\n");
+		sb.append("  \"pfEvaluations\": "+pf+",\n");
+		sb.append("  \"pfEscalations\": "+escalations+",\n");
+		sb.append("  \"pfUncertified\": "+uncertified+",\n");
+		sb.append("  \"strategy\": \""+strategy+"\",\n");
+		sb.append("  \"turnSelections\": "+turns+",\n");
+		sb.append("  \"candidateTurns\": "+candidates+",\n");
+		sb.append("  \"lookAheads\": "+lookaheads+",\n");
+		sb.append("  \"phaseMillis\": {");
+		for(i=0;i<phaseNames.length;i++) {
+			if (i>0)
+				sb.append(", ");
+			sb.append("\""+phaseNames[i]+"\": "
+					+phaseTime[i]/1000000.0);
+		}
+		sb.append("},\n");
+		sb.append("  \"size\": [");
+		synchronized (sizes) {
+			for(i=0;i<sizes.size();i++) {
+				if (i>0)
+					sb.append(", ");
+				sb.append("["+sizes.get(i)[0]+", "+sizes.get(i)[1]+"]");
+			}
+		}
+		sb.append("]\n");
+		sb.append("}\n");
+
+		return sb.toString();
+	}
+
+	public String toString() {
+		return toJSON();
+	}
+
+}
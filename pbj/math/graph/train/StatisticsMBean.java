@@ -0,0 +1,68 @@
+package pbj.math.graph.train;
+
+/**
+Management interface of Statistics, for monitoring train track computations
+via JMX.
+@author Peter Brinkmann
+@see Statistics
+ */
+public interface StatisticsMBean {
+
+	/** @return number of edge splits */
+	public long getSplits();
+
+	/** @return number of elementary folds */
+	public long getFolds();
+
+	/** @return number of successful tightenings */
+	public long getTightenings();
+
+	/** @return number of valence one homotopies */
+	public long getV1Homotopies();
+
+	/** @return number of valence two homotopies */
+	public long getV2Homotopies();
+
+	/** @return number of collapsed invariant forests */
+	public long getForestCollapses();
+
+	/** @return number of PF-eigenvalue/eigenvector evaluations */
+	public long getPFEvaluations();
+
+	/** @return number of PF comparisons that needed more than double precision to be certified */
+	public long getPFEscalations();
+
+	/** @return number of PF comparisons that couldn't be certified and were decided in floating point */
+	public long getPFUncertified();
+
+	/** @return name of the strategy for choosing illegal turns */
+	public String getStrategy();
+
+	/** @return number of illegal turns chosen */
+	public long getTurnSelections();
+
+	/** @return total number of illegal turns a strategy chose from (0 for the default strategy) */
+	public long getCandidateTurns();
+
+	/** @return number of folds tried by look-ahead strategies */
+	public long getLookAheads();
+
+	/** @return current total length of images of edges */
+	public long getSize();
+
+	/** @return time spent cleaning up maps, in milliseconds */
+	public long getCleanupTime();
+
+	/** @return time spent looking for illegal turns, in milliseconds */
+	public long getSearchTime();
+
+	/** @return time spent splitting and folding, in milliseconds */
+	public long getFoldTime();
+
+	/** @return report in JSON format */
+	public String toJSON();
+
+	/** resets all counters */
+	public void reset();
+
+}
@@ -0,0 +1,115 @@
+package pbj.math.graph.train;
+
+import java.util.Arrays;
+
+/**
+<p>The singularity data of a pseudo-Anosov map, i.e., the number of prongs
+at each singularity of its invariant foliations and at the puncture. The
+interior singularities correspond to the vertices of the train track whose
+infinitesimal edges form a cycle; a cycle through k gates yields a singularity
+with k prongs.</p>
+
+<p>Two strata are equal iff they have the same prongs at the puncture and the
+same multiset of prongs at the singularities, regardless of the vertices where
+the singularities sit. The string representation lists the prongs at the
+singularities in descending order, followed by the prongs at the puncture,
+e.g., <code>(3,3;1)</code>.</p>
+@author Peter Brinkmann
+@see Gates
+ */
+public class Stratum {
+
+	private final int prongs[];		// prongs at singularities
+	private final int vertices[];	// vertices of singularities
+	private final int puncture;		// prongs at puncture
+	private final int sorted[];		// prongs in descending order
+
+	/**
+@param int p[]: number of prongs at each singularity
+@param int v[]: vertex of each singularity
+@param int punct: number of prongs at the puncture
+	 */
+	Stratum(int p[],int v[],int punct) {
+		int i;
+
+		prongs=p;
+		vertices=v;
+		puncture=punct;
+		sorted=p.clone();
+		Arrays.sort(sorted);
+		for(i=0;i<sorted.length/2;i++) {
+			punct=sorted[i];
+			sorted[i]=sorted[sorted.length-1-i];
+			sorted[sorted.length-1-i]=punct;
+		}
+	}
+
+	/**
+@return number of singularities, not counting the puncture
+	 */
+	public int getSingularities() {
+		return prongs.length;
+	}
+
+	/**
+@param int i: index of singularity, 0<=i<getSingularities()
+@return number of prongs at i-th singularity
+	 */
+	public int getProngs(int i) {
+		return prongs[i];
+	}
+
+	/**
+@param int i: index of singularity, 0<=i<getSingularities()
+@return vertex of the train track at which the i-th singularity sits
+	 */
+	public int getVertex(int i) {
+		return vertices[i];
+	}
+
+	/**
+@return number of prongs at the puncture
+	 */
+	public int getPuncture() {
+		return puncture;
+	}
+
+	/**
+Computes the genus of the surface from the Euler-Poincare formula, i.e.,
+the sum of k-2 over all singularities and the puncture with k prongs
+equals 4*genus-4.
+@return genus of the surface
+	 */
+	public int getGenus() {
+		int i,s=puncture-2;
+
+		for(i=0;i<prongs.length;i++)
+			s+=prongs[i]-2;
+		return (s+4)/4;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof Stratum))
+			return false;
+		return (puncture==((Stratum) o).puncture)
+				&& Arrays.equals(sorted,((Stratum) o).sorted);
+	}
+
+	public int hashCode() {
+		return 31*Arrays.hashCode(sorted)+puncture;
+	}
+
+	public String toString() {
+		StringBuilder res=new StringBuilder("(");
+		int i;
+
+		for(i=0;i<sorted.length;i++) {
+			if (i>0)
+				res.append(',');
+			res.append(sorted[i]);
+		}
+		res.append(';').append(puncture).append(')');
+		return res.toString();
+	}
+
+}
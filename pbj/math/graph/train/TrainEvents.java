@@ -0,0 +1,79 @@
+package pbj.math.graph.train;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+Java Flight Recorder events for the steps of the train track algorithm.
+Together with the events in pbj.math.graph.GraphEvents, they allow to
+attribute time to individual elementary moves.
+@author Peter Brinkmann
+@see TrainTrack
+ */
+public abstract class TrainEvents {
+
+	private TrainEvents() {}
+
+	/** common fields of all train track events */
+	@Category({"XTrain", "Train tracks"})
+	static abstract class StepEvent extends Event {
+		@Label("Map")
+		@Description("Label of the train track")
+		String map;
+
+		@Label("Edges Before")
+		int edgesBefore;
+
+		@Label("Edges After")
+		int edgesAfter;
+
+		@Label("Size Before")
+		@Description("Total length of the images of edges before the step")
+		int sizeBefore;
+
+		@Label("Size After")
+		@Description("Total length of the images of edges after the step")
+		int sizeAfter;
+
+		@Label("Folds")
+		@Description("Elementary folds performed by the computation so far")
+		int folds;
+	}
+
+	@Name("pbj.SplitAndFold")
+	@Label("Split and Fold")
+	static class SplitAndFold extends StepEvent {
+		@Label("Turn")
+		@Description("Illegal turn that is being folded")
+		String turn;
+	}
+
+	@Name("pbj.CleanUp")
+	@Label("Clean Up")
+	static class CleanUp extends StepEvent {}
+
+	/* fills in the fields that are known at the beginning of a step. */
+	static void begin(StepEvent ev,TrainTrack g) {
+		ev.begin();
+		if (ev.isEnabled()) {
+			ev.edgesBefore=g.getEdges();
+			ev.sizeBefore=g.size();
+		}
+	}
+
+	/* ends a step and commits the event if desired. */
+	static void end(StepEvent ev,TrainTrack g) {
+		ev.end();
+		if (ev.shouldCommit()) {
+			ev.map=g.getLabel();
+			ev.edgesAfter=g.getEdges();
+			ev.sizeAfter=g.size();
+			ev.folds=g.getFolds();
+			ev.commit();
+		}
+	}
+
+}
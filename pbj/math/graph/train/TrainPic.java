@@ -342,6 +342,7 @@ Constructs a new TrainPic that draws a PostScript picture.
 		/* this function identifies ends of edges belonging to the same gates and
    computes the embedding of the infinitesimal edges. */
 		int i,j,k,e,cnt,ind;
+		int nb[];
 		HypPoint p[]=new HypPoint[2*g.getEdges()];
 		HypPoint gp[]=new HypPoint[2*g.getEdges()];
 		Arc a;
@@ -351,11 +352,11 @@ Constructs a new TrainPic that draws a PostScript picture.
 
 		gg=new Geodesic(0,0);
 		for(i=0;i<g.getVertices();i++) {
-			for(j=0;j<gat.nogates[i];j++) {
+			for(j=0;j<gat.getGates(i);j++) {
 				cnt=0;
-				for(k=0;k<gat.noad[i];k++)
-					if (gat.ga[i][k]==j) {
-						ch=gat.adj[i][k];
+				for(k=0;k<gat.getValence(i);k++)
+					if (gat.getGate(i,k)==j) {
+						ch=gat.getDirection(i,k);
 						e=Word.charToIndex(ch);
 						if (Word.isInverse(ch)) {
 							if (!spt[e])	ind=1;
@@ -381,26 +382,28 @@ Constructs a new TrainPic that draws a PostScript picture.
 				a=f.apply(a);
 				gp[j]=new HypPoint(a.p1);
 			}
-			for(k=0;k<gat.noad[i];k++) {
-				ch=gat.adj[i][k];
+			for(k=0;k<gat.getValence(i);k++) {
+				ch=gat.getDirection(i,k);
 				e=Word.charToIndex(ch);
 				if (Word.isInverse(ch)) {
 					if (!spt[e]) ind=1;
 					else            ind=0;
 					far[e][ind]=new Arc(far[e][ind].p1,
-							gp[gat.ga[i][k]]);
+							gp[gat.getGate(i,k)]);
 				}
 				else
-					far[e][0]=new Arc(gp[gat.ga[i][k]],
+					far[e][0]=new Arc(gp[gat.getGate(i,k)],
 							far[e][0].p2);
 			}
 			cnt=0;
-			for(j=0;j<gat.nogates[i]-1;j++)
-				for(k=j+1;k<gat.nogates[i];k++)
-					if (gat.infini[i][j][k]) {
-						infed[i][cnt]=new Arc(gp[j],gp[k]);
+			for(j=0;j<gat.getGates(i)-1;j++) {
+				nb=gat.getNeighbors(i,j);
+				for(k=0;k<nb.length;k++)
+					if (nb[k]>j) {
+						infed[i][cnt]=new Arc(gp[j],gp[nb[k]]);
 						cnt++;
 					}
+			}
 			nred[i]=cnt;
 		}
 	}
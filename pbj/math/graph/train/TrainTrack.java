@@ -2,8 +2,11 @@ package pbj.math.graph.train;
 
 import pbj.math.graph.*;
 import pbj.math.numerical.*;
+import pbj.io.*;
 import gnu.getopt.*;
+import java.io.*;
 import java.util.*;
+import java.math.BigInteger;
 
 /**
 An extension of GraphMap --- the heart and soul of the package. It notifies
@@ -21,6 +24,25 @@ public class TrainTrack extends GraphMap implements Observer, Runnable{
 	private boolean STEP=false;
 	private boolean TDEBUG=false;
 
+	private transient Budget budget=null;	// resource limits, if any
+	private transient volatile boolean stopRequested=false;
+	private transient volatile boolean running=false;
+	private transient long startTime;	// start of current computation
+	private transient int folds;		// elementary folds so far
+	private transient int status=0;		// outcome of last computation
+	private transient String reason="";	// why it was interrupted
+	private transient String checkpointFile=null;
+	private transient long checkpointInterval=0;	// in milliseconds
+	private transient long lastCheckpoint;
+	private transient Statistics stats=null;	// null unless desired
+	private transient TurnStrategy strategy=null;	// null means min-depth
+	private transient Relocation reloc=null;	// scratch space for
+	private transient GrowingIntArray turnScratch;	// splitAndFold,
+	private transient GrowingIntArray subSplitScratch;	// allocated
+	private transient GrowingBoolArray foldScratch;	// on first use
+
+	private final static String CHECKPOINTTAG="// checkpoint:";
+
 	/**
 Integer value indicating the beginning of a new computation.
 	 */
@@ -52,31 +74,49 @@ Integer value indicating that the TrainTrack has changed.
 	 */
 	public static final int CHANGE=6;
 
+	/**
+Integer value indicating that the computation exceeded its budget. The
+train track is left in the state it had reached at that point.
+	 */
+	public static final int BUDGET_EXCEEDED=7;
+
 	public TrainTrack() {
 		super();
 	};
 
-	/* a little helper class for growing char arrays, pretty much
+	/* thrown by checkBudget() in order to unwind a computation that has been
+   stopped or has run out of budget. */
+	private static class Interruption extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		Interruption(int st,String msg) {
+			super(msg);
+			status=st;
+		}
+	}
+
+	/* a little helper class for growing int arrays, pretty much
    self-explanatory. */
-	private class GrowingCharArray {
-		char v[];
+	private class GrowingIntArray {
+		int v[];
 		int cnt;
 
-		GrowingCharArray(int n) {
+		GrowingIntArray(int n) {
 			if (n<1)
 				throw new RuntimeException(
 						"number of entries too small: "+n);
 
-			v=new char[n];
+			v=new int[n];
 			cnt=0;
 		}
 
-		void setValue(int i,char c) {
+		void setValue(int i,int c) {
 			int j;
-			char newv[];
+			int newv[];
 
 			if (i>=v.length) {
-				newv=new char[2*i];
+				newv=new int[2*i];
 				for(j=0;j<v.length;j++)
 					newv[j]=v[j];
 				v=newv;
@@ -88,9 +128,9 @@ Integer value indicating that the TrainTrack has changed.
 			v[i]=c;
 		}
 
-		char getValue(int i) {
+		int getValue(int i) {
 			if (i>=cnt)
-				throw new RuntimeException("GrowingCharArray."+
+				throw new RuntimeException("GrowingIntArray."+
 						"getValue: index too large: "+i);
 
 			return v[i];
@@ -103,7 +143,7 @@ Integer value indicating that the TrainTrack has changed.
 
 	/* just a little helper class for growing boolean arrays, pretty much
    self-explanatory. Reimplementation was necessary because behavior
-   slightly differs from GrowingCharArray. */
+   slightly differs from GrowingIntArray. */
 	private class GrowingBoolArray {
 		boolean v[];
 		int cnt;
@@ -145,12 +185,138 @@ Integer value indicating that the TrainTrack has changed.
 			return v[i];
 		}
 
+		void clear() {
+			int i;
+			for(i=0;i<cnt;i++) v[i]=false;
+			cnt=0;
+		}
+
 		int size() {
 			return cnt;
 		}
 	}
 
 
+	/* keeps track of directed edges that move around while splitting and
+   folding. Pointers to edges are handles. A directed edge is encoded as
+   2*index+(1 if inverse), and all handles pointing to the same directed edge
+   are merged (union-find), so that splits, folds, and reversals cost O(1)
+   instead of a scan of all pointers. */
+	private class Relocation {
+		int slot[]=new int[16];	// directed edge -> handle, or -1
+		int loc[]=new int[16];	// handle -> directed edge (roots only)
+		int parent[]=new int[16];	// union-find forest of handles
+		int handles;
+
+		/* forgets all handles */
+		void reset() {
+			int i;
+			for(i=0;i<slot.length;i++) slot[i]=-1;
+			handles=0;
+		}
+
+		private void ensure(int x) {
+			int i,n;
+			int newv[];
+
+			if (x<slot.length)
+				return;
+			n=Math.max(2*slot.length,x+1);
+			newv=new int[n];
+			for(i=0;i<n;i++) newv[i]=(i<slot.length) ? slot[i] : -1;
+			slot=newv;
+		}
+
+		private int find(int h) {
+			int r=h,t;
+			while (parent[r]!=r) r=parent[r];
+			while (parent[h]!=r) {	// path compression
+				t=parent[h];
+				parent[h]=r;
+				h=t;
+			}
+			return r;
+		}
+
+		/* places the handles of directed edge x at directed edge y */
+		private void moveSlot(int x,int y) {
+			int h=slot[x];
+
+			if (h<0)
+				return;
+			slot[x]=-1;
+			if (slot[y]<0) {
+				slot[y]=h;
+				loc[h]=y;
+			}
+			else
+				parent[h]=slot[y];
+		}
+
+		/* returns a handle pointing to the directed edge c */
+		int handle(char c) {
+			int x=2*Word.charToIndex(c)+(Word.isInverse(c) ? 1 : 0);
+			int n;
+			int newl[],newp[];
+
+			ensure(x);
+			if (slot[x]<0) {
+				if (handles>=loc.length) {
+					n=2*loc.length;
+					newl=new int[n];
+					newp=new int[n];
+					System.arraycopy(loc,0,newl,0,handles);
+					System.arraycopy(parent,0,newp,0,handles);
+					loc=newl;
+					parent=newp;
+				}
+				slot[x]=handles;
+				loc[handles]=x;
+				parent[handles]=handles;
+				handles++;
+			}
+			return slot[x];
+		}
+
+		/* returns the directed edge h is pointing to */
+		char edge(int h) {
+			int x=loc[find(h)];
+			return Word.indexToChar(x>>1,(x&1)==1);
+		}
+
+		/* called when an edge was split. The last part of the edge has got a
+		   new index, so all the inverse pointers to this edge must be
+		   updated. */
+		void split(int old,int nw) {
+			ensure(2*nw+1);
+			moveSlot(2*old+1,2*nw+1);
+		}
+
+		/* called when a complete edge moved to a new position (possibly on
+		   top of another edge, in case of a fold). */
+		void move(int old,int nw) {
+			if (old==nw)
+				return;
+			ensure(2*Math.max(old,nw)+1);
+			moveSlot(2*old,2*nw);
+			moveSlot(2*old+1,2*nw+1);
+		}
+
+		/* called when an edge was inverted. */
+		void reverse(int ed) {
+			int h;
+
+			ensure(2*ed+1);
+			h=slot[2*ed];
+			slot[2*ed]=slot[2*ed+1];
+			slot[2*ed+1]=h;
+			if (slot[2*ed]>=0)
+				loc[slot[2*ed]]=2*ed;
+			if (slot[2*ed+1]>=0)
+				loc[slot[2*ed+1]]=2*ed+1;
+		}
+	}
+
 	/**
 Constructs a new TrainTrack object (almost) identical to g.
 @param GraphMap g: GraphMap to be copied.
@@ -198,9 +364,96 @@ Constructs a new TrainTrack object (almost) identical to g.
 	 */
 	public double growthRate() {
 		updateTransitionMatrix();
+		if (stats!=null)
+			stats.pf++;
 		return m.eigenValue();
 	}
 
+	/**
+Computes the Perron-Frobenius eigenvalue of the transition matrix exactly,
+as an algebraic number. Unlike the value of growthRate(), it can be used to
+sort and bucket maps by dilatation.
+@return PF-eigenvalue, with minimal polynomial and isolating interval
+	 */
+	public AlgebraicNumber exactGrowthRate() {
+		updateTransitionMatrix();
+		if (stats!=null)
+			stats.pf++;
+		return m.exactEigenValue();
+	}
+
+	/**
+Computes the traces of the powers of the transition matrix, i.e., the
+numbers of periodic edge paths, in time proportional to k (see
+IntMatrix.traces()).
+@param int k: largest exponent
+@return array res of length k+1 such that res[m]=tr(M^m)
+	 */
+	public BigInteger[] traces(int k) {
+		updateTransitionMatrix();
+		return m.traces(k);
+	}
+
+	/**
+Computes the traces of the powers of the transition matrix modulo q, which
+avoids large numbers in batch computations.
+@param int k: largest exponent
+@param long q: modulus, 1&lt;q&lt;=2^31
+@return array res of length k+1 such that res[m]=tr(M^m) mod q
+	 */
+	public long[] traces(int k,long q) {
+		updateTransitionMatrix();
+		return m.traces(k,q);
+	}
+
+	/**
+Computes the Lefschetz numbers of the iterates of this, i.e., the number of
+vertices fixed by f^m minus the trace of the action of f^m on edges (see
+abelianized()).
+@param int k: largest exponent
+@return array res of length k+1 such that res[m] is the Lefschetz number of f^m
+	 */
+	public BigInteger[] lefschetzNumbers(int k) {
+		BigInteger res[]=abelianized().traces(k);
+		int img[]=new int[getVertices()];
+		int len[]=new int[getVertices()+1];	// vertices on cycles of each length
+		int i,j,v,mm;
+
+		for(i=0;i<getEdges();i++) {
+			img[getStart(i)]=firstVertex(getIm(i).charAt(0));
+			img[getEnd(i)]=lastVertex(getIm(i).charAt(getIm(i).length()-1));
+		}
+		for(i=0;i<getVertices();i++) {
+			for(j=1,v=img[i];(v!=i) && (j<=getVertices());j++)
+				v=img[v];
+			if (v==i)
+				len[j]++;
+		}
+
+		/* a vertex on a cycle of length j is fixed by f^m iff j divides m */
+		for(mm=0;mm<=k;mm++) {
+			v=(mm==0) ? getVertices() : 0;
+			for(j=1;(j<len.length) && (mm>0);j++)
+				if (mm%j==0)
+					v+=len[j];
+			res[mm]=BigInteger.valueOf(v).subtract(res[mm]);
+		}
+		return res;
+	}
+
+	/**
+Computes a certified enclosure of the Perron-Frobenius eigenvalue of the
+transition matrix, which should be used to compare growth rates of maps.
+@return enclosure of the PF-eigenvalue
+@see PFEnclosure#compareTo
+	 */
+	public PFEnclosure growthRateEnclosure() {
+		updateTransitionMatrix();
+		if (stats!=null)
+			stats.pf++;
+		return new PFEnclosure(m);
+	}
+
 	private IntVector countValences() {
 		/* returns the valence of each vertex in the vector v */
 		int i;
@@ -227,19 +480,35 @@ Removes a vertex of valence one if there is one.
 		for(i=0;i<getEdges();i++)
 			if ((val.v[getStart(i)]==1) || (val.v[getEnd(i)]==1)) {
 				collapseEdge(i);
+				if (stats!=null)
+					stats.v1++;
 				return true;
 			}
 		return false;
 	}
 
+	/* compares entries of the PF-eigenvector, with certified results if
+	   possible and floating point otherwise */
 	private boolean isBigger(int e1,int e2) {
-		double v1[];
+		PFEnclosure pf;
+		int c;
 
 		updateTransitionMatrix();
-		v1=new double[m.n];
-		m.eigenPair(v1);
+		pf=new PFEnclosure(m);
+		try {
+			c=pf.compareEntries(e1,e2);
+		} catch (PFEnclosure.Uncertified e) {	// best guess
+			c=e.getEstimate();
+			if (stats!=null)
+				stats.uncertified++;
+		}
+		if (stats!=null) {
+			stats.pf++;
+			if (pf.getDigits()>0)
+				stats.escalations++;
+		}
 
-		return (v1[e1]>v1[e2]);
+		return (c>0);
 	}
 
 	/**
@@ -274,6 +543,8 @@ Performs a valence 2 homotopy if possible
 		j=tmp;
 		}
 		joinEdges(i,j);	/* and join the edges */
+		if (stats!=null)
+			stats.v2++;
 		return true;
 	}
 
@@ -393,10 +664,13 @@ Performs a valence 2 homotopy if possible
 		}
 		while ((!flag) && (i<getEdges()));
 
-		if (flag) 	/* We have found an invariant forest? */
+		if (flag) {	/* We have found an invariant forest? */
 			for(i=getEdges()-1;i>=0;i--)	/* Great, remove it! */
 				if (invsub[i])
 					collapseEdge(i);
+			if (stats!=null)
+				stats.forests++;
+		}
 
 		return flag;
 	}
@@ -408,13 +682,63 @@ Performs a valence 2 homotopy if possible
 			return Word.charToIndex(c);
 	}
 
+	/* returns a time stamp for the phase timers, or 0 if no statistics are
+   being collected. */
+	private long now() {
+		return (stats==null) ? 0 : System.nanoTime();
+	}
+
+	/* charges the time since t to the given phase; returns a new time stamp. */
+	private long lap(int phase,long t) {
+		long n;
+
+		if (stats==null)
+			return 0;
+		n=System.nanoTime();
+		stats.addTime(phase,n-t);
+		return n;
+	}
+
+	/* called at every fold and cleanup step; throws an Interruption if the
+   computation has been stopped or if the budget is exhausted. */
+	private void checkBudget() {
+		checkBudget(folds);
+	}
+
+	/* same as checkBudget(), where f is the number of folds to be checked
+   against the budget; before a fold, this is the count including that
+   fold, so that the fold limit is never exceeded. */
+	private void checkBudget(int f) {
+		String msg;
+
+		if (!running)
+			return;
+		if (stopRequested)
+			throw new Interruption(STOPPED,"computation stopped");
+		if (budget!=null) {
+			msg=budget.check(System.currentTimeMillis()-startTime,
+					f,size());
+			if (msg!=null)
+				throw new Interruption(BUDGET_EXCEEDED,msg);
+		}
+	}
+
 	private boolean tightenPlus() {
 		boolean flag;
 
 		flag=false;
-		while (tightenVertex()) flag=true;
+		while (tightenVertex()) {
+			flag=true;
+			if (stats!=null)
+				stats.tightenings++;
+		}
 
-		return (flag || tighten());
+		if ((!flag) && tighten()) {
+			flag=true;
+			if (stats!=null)
+				stats.tightenings++;
+		}
+		return flag;
 	}
 
 	private int isIllegalRec(boolean legal[][],char a,char b,int depth) {
@@ -460,12 +784,60 @@ Checks whether a turn is illegal.
 
 	/**
 Looks for an illegal turn in the images of edges. If there is
-a choice, this function will pick an illegal turn such that the number of
+a choice, the turn is picked by the strategy set with setStrategy(); by
+default, this function will pick an illegal turn such that the number of
 iterates before cancellation is minimal.
 @param int res[]: array of size 2 for results. If an illegal turn is found, res[0] will be the index of the edge whose image contains the illegal turn, and res[1] will be the the position of the illegal turn in the image of the edge.
 @return true iff an illegal turn was found
 	 */
 	public boolean findIllegalTurn(int res[]) {
+		List<int[]> turns;
+		int k;
+
+		if (strategy==null) {
+			if (!minDepthTurn(res))
+				return false;
+			if (stats!=null)
+				stats.turns++;
+			return true;
+		}
+
+		turns=illegalTurns();
+		if (turns.isEmpty())
+			return false;
+		k=strategy.select(this,turns);
+		res[0]=turns.get(k)[0];
+		res[1]=turns.get(k)[1];
+		if (stats!=null) {
+			stats.turns++;
+			stats.candidates+=turns.size();
+		}
+		return true;
+	}
+
+	/**
+Lists all illegal turns in the images of edges whose number of iterates
+before cancellation is below the cutoff used by findIllegalTurn().
+@return list of arrays {edge, position, depth}, in edge order
+	 */
+	public List<int[]> illegalTurns() {
+		List<int[]> res=new ArrayList<int[]>();
+		int i,j,d1,dd;
+
+		dd=8*getEdges()*getEdges();
+		for(i=0;i<getEdges();i++)
+			for(j=0;j<(getIm(i).length()-1);j++) {
+				d1=isIllegal(Word.inverse(getIm(i).charAt(j)),
+						getIm(i).charAt(j+1));
+				if ((d1>0) && (d1<dd))
+					res.add(new int[] {i,j,d1});
+			}
+		return res;
+	}
+
+	/* the original rule: the first illegal turn with the minimal number of
+   iterates before cancellation. */
+	private boolean minDepthTurn(int res[]) {
 		int i,j,d1,dd;
 		boolean flag=false;
 
@@ -484,85 +856,169 @@ iterates before cancellation is minimal.
 		return flag;
 	}
 
+	char coordToChar(int i) {
+		if (i<getEdges())
+			return Word.indexToChar(i,false);
+		else
+			return Word.indexToChar(i-getEdges(),true);
+	}
+
+	/* returns the N-th iterate of the map D on directions (in the coordinates
+   of charToCoord), where N is the number of directions. Since the kernels
+   of the iterates of D form an increasing chain of partitions that is
+   constant once two consecutive terms agree, two directions are identified
+   by some iterate of D iff they are identified by this one. Computed by
+   repeated squaring. */
+	int[] eventualDirections() {
+		int n=2*getEdges();
+		int d[]=new int[n];
+		int p[]=new int[n];
+		int t[],tmp[]=new int[n];
+		int i,k;
+
+		for(i=0;i<n;i++) {
+			d[i]=charToCoord(mapd(coordToChar(i)));
+			p[i]=i;
+		}
+		for(k=n;k>0;k>>=1) {
+			if ((k&1)!=0)
+				for(i=0;i<n;i++)
+					p[i]=d[p[i]];
+			for(i=0;i<n;i++)
+				tmp[i]=d[d[i]];
+			t=d;
+			d=tmp;
+			tmp=t;
+		}
+		return p;
+	}
+
 	/**
+Checks whether this is a train track map, i.e., whether the images of edges
+only contain legal turns. Rather than iterating each turn separately, this
+computes the eventual identifications of directions once, so it takes a
+single pass over the images of edges.
 @return true iff this is a train track map
 	 */
 	public boolean isTrainTrack() {
+		int p[];
+		String w;
+		int i,j;
+
 		try {
-			int res[]=new int[2];
-			return !findIllegalTurn(res);
+			p=eventualDirections();
+			for(i=0;i<getEdges();i++) {
+				w=getIm(i);
+				for(j=0;j<w.length()-1;j++)
+					if (p[charToCoord(Word.inverse(w.charAt(j)))]
+					      ==p[charToCoord(w.charAt(j+1))])
+						return false;
+			}
+			return true;
 		}
 		catch (Throwable e) {
 			return false;
 		}
 	}
 
-	private void updateInv(GrowingCharArray al,int old,int nw) {
-		/* This function is called when an edge was split. The last part of the edge
-   has got a new index, so all the inverse pointers to this edge must be
-   updated. */
-		int i;
-		for(i=0;i<al.size();i++)
-			if ((Word.charToIndex(al.getValue(i))==old)
-					&& (Word.isInverse(al.getValue(i))))
-				al.setValue(i,Word.indexToChar(nw,true));
-	}
+	/**
+Checks whether the train track algorithm would leave this map unchanged,
+i.e., whether this is an irreducible train track map on a graph without
+vertices of valence one or two such that D is not constant around any
+vertex. Outputs of earlier runs and their powers (see power()) pass this
+test, and trainTrackMap() returns right away for them.
+@return true iff this map is a finished train track map
+	 */
+	public boolean verify() {
+		IntVector val;
+		int first[];
+		char c;
+		int i,j;
 
-	private void updateAll(GrowingCharArray al,int old,int nw) {
-		/* This function is called when a complete edge moved to a new position, all
-   the pointers must be updated. */
-		int i;
-		for(i=0;i<al.size();i++)
-			if (Word.charToIndex(al.getValue(i))==old)
-				al.setValue(i,Word.indexToChar(nw,
-						Word.isInverse(al.getValue(i))));
+		if (!isGoodMap())
+			return false;
+		for(i=0;i<getEdges();i++)
+			if (getIm(i).length()==0)
+				return false;
+
+		val=countValences();
+		for(i=0;i<getVertices();i++)
+			if (val.v[i]<3)
+				return false;
+
+		first=new int[getVertices()];	// D is not constant around vertices
+		for(i=0;i<getVertices();i++)
+			first[i]=-1;
+		for(i=0;i<2*getEdges();i++) {
+			c=coordToChar(i);
+			j=Word.isInverse(c) ? getEnd(Word.charToIndex(c))
+					: getStart(Word.charToIndex(c));
+			if (first[j]==-1)
+				first[j]=mapd(c);
+			else if (first[j]!=mapd(c))
+				first[j]=-2;
+		}
+		for(i=0;i<getVertices();i++)
+			if (first[i]!=-2)
+				return false;
+
+		return isIrreducible() && isTrainTrack();
 	}
 
-	private void reverseList(GrowingCharArray al,int ed) {
-		/* If an edge was inverted, all the indices pointing to it must be inverted
-   as well. This function does it. */
+	/**
+Computes a power of this map. Powers of train track maps are train track
+maps, so that running the train track algorithm on the result is not
+necessary.
+@param int n: exponent (at least 1)
+@return n-th power of this map
+	 */
+	public TrainTrack power(int n) {
+		TrainTrack res;
 		int i;
-		for(i=0;i<al.size();i++)
-			if (Word.charToIndex(al.getValue(i))==ed)
-				al.setValue(i,Word.inverse(al.getValue(i)));
+
+		if (n<1)
+			throw new IllegalArgumentException("bad exponent: "+n);
+
+		res=new TrainTrack(this);
+		for(i=1;i<n;i++)
+			res.compose(this);
+		return res;
 	}
 
-	private void subSplitRec(char a,GrowingCharArray al,
-			GrowingCharArray sl,int depth) {
+	private void subSplitRec(char a,GrowingIntArray sl,int depth) {
 		/* exception handling for the special case mentioned in the last paragraph
    on p. 7 of [HB2]. */
 		int ed;
 
-		sl.setValue(depth,a);
+		sl.setValue(depth,reloc.handle(a));
 		ed=Word.charToIndex(a);
 
 		if (getIm(ed).length()<=1)
-			subSplitRec(mapd(a),al,sl,depth+1);
+			subSplitRec(mapd(a),sl,depth+1);
 
-		a=sl.getValue(depth);
+		a=reloc.edge(sl.getValue(depth));
 		ed=Word.charToIndex(a);
-		updateInv(al,ed,getEdges());
-		updateInv(sl,ed,getEdges());
+		reloc.split(ed,getEdges());
 		if (Word.isInverse(a))
 			splitEdge(ed,1);
 		else
 			splitEdge(ed,getIm(ed).length()-1);
 	}
 
-	private int splitList(GrowingBoolArray fld,int len,GrowingCharArray al) {
+	private int splitList(GrowingBoolArray fld,int len) {
 		/* splits all the edges whose entry in the vector fld is nonzero such that
    the remaining length of the image is len. */
 		int i;
 		for(i=0;i<getEdges();i++)
 			if ((fld.getValue(i)) && (getIm(i).length()>len)) {
-				updateInv(al,i,getEdges());
+				reloc.split(i,getEdges());
 				splitEdge(i,len);
 				len=getIm(i).length();
 			}
 		return len;
 	}
 
-	private boolean splitAndFoldRecursively(char a,char b,GrowingCharArray al,
+	private boolean splitAndFoldRecursively(char a,char b,GrowingIntArray al,
 			int depth) {
 		/* climbs down to the illegal turn, then it splits the preimage of the illegal
    turn and folds it until the resulting map is NOT locally injective (on the
@@ -570,29 +1026,29 @@ iterates before cancellation is minimal.
    that tightening has occurred, return value false means that splitting
    and folding must continue. */
 		int i,j,e1,len;
-		GrowingBoolArray fld=new GrowingBoolArray(4*getEdges());
-		GrowingCharArray sl=new GrowingCharArray(4*getEdges());
+		GrowingBoolArray fld=foldScratch;	// free again once the
+		GrowingIntArray sl=subSplitScratch;	// recursive call returns
 		boolean fff;
 
-		al.setValue(depth,a);
+		al.setValue(depth,reloc.handle(a));
 		/* Copy the current turn to the list of pointers. */
 
 		if (a==b) {
 			if (TDEBUG)
 				for(i=0;i<=depth;i++)
-					System.err.println(al.getValue(i));
+					System.err.println(reloc.edge(al.getValue(i)));
 			return false;	/* if a==b we have reached the illegal turn */
 		}
 
 		if (!splitAndFoldRecursively(mapd(a),mapd(b),al,depth+1)) {
 			/* recursive call, split and fold if return value is 0 */
-			a=al.getValue(depth);/* find out where a and b have gone... */
+			a=reloc.edge(al.getValue(depth));/* find out where a and b have gone... */
 			if (TDEBUG)
 				System.err.println("--"+a+"--");
 
 			e1=Word.charToIndex(a);
 			if (Word.isInverse(a)) {	/* reorient a if necessary */
-				reverseList(al,e1);
+				reloc.reverse(e1);
 				reverseEdge(e1);
 				a=Word.inverse(a);
 			}
@@ -601,6 +1057,7 @@ iterates before cancellation is minimal.
 		   find the length of the part of the image word that the
 		   folding candidates have in common. */
 			len=getIm(e1).length();
+			fld.clear();
 			for(i=0;i<getEdges();i++) {
 				/* Must we fold the beginning of the edge no. i? */
 				if ((getStart(i)==getStart(e1)) && (0<getIm(i).length())
@@ -614,7 +1071,7 @@ iterates before cancellation is minimal.
 					if ((getEnd(i)==getStart(e1)) &&
 							(mapd(Word.indexToChar(i,true))==mapd(a))){
 						/* Must we also fold the end of no. i? */
-						updateInv(al,i,getEdges());
+						reloc.split(i,getEdges());
 						splitEdge(i,getIm(i).length()/2);
 					}
 
@@ -636,7 +1093,7 @@ iterates before cancellation is minimal.
 					}
 					fld.setValue(i,true);
 					reverseEdge(i);		/* reverse edge i */
-					reverseList(al,i);
+					reloc.reverse(i);
 					for(j=0;((j<getIm(i).length()) &&
 							(j<getIm(e1).length()) &&
 							(getIm(i).charAt(j)==getIm(e1).charAt(j)));
@@ -655,18 +1112,22 @@ iterates before cancellation is minimal.
 						break;
 					}
 					else {
-						subSplitRec(getIm(e1).charAt(0),al,sl,0);
+						subSplitRec(getIm(e1).charAt(0),sl,0);
 						len=getIm(i).length()-1;
 						break;
 					}
-			splitList(fld,len,al);	/* Now split the candidates */
+			splitList(fld,len);	/* Now split the candidates */
 
 			/* Fold 'em and take care of the bookkeeping */
 			for(i=e1+1;i<getEdges();)
 				if (fld.getValue(i)) {
+					checkBudget(folds+1);
 					elementaryFold(e1,i);
-					updateAll(al,i,e1);
-					updateAll(al,getEdges(),i);
+					folds++;
+					if (stats!=null)
+						stats.folds++;
+					reloc.move(i,e1);
+					reloc.move(getEdges(),i);
 					fld.setValue(i,fld.getValue(getEdges()));
 				}
 				else i++;
@@ -684,13 +1145,24 @@ iterates before cancellation is minimal.
 
 	private void splitAndFold(char a,char b) {
 		/* does pretty much what the name suggests. */
-		GrowingCharArray al=new GrowingCharArray(4*getEdges());
-		/* The vector al keeps track of the edges of the graph. Folding
-	   reduces the number of edges, and since other edges might be moved
-	   around in this process, we need to know where to find an edge that
-	   has left its original position. The vector al points to the
-	   new location. */
-		splitAndFoldRecursively(a,b,al,0);
+		TrainEvents.SplitAndFold ev=new TrainEvents.SplitAndFold();
+		TrainEvents.begin(ev,this);
+		if (ev.isEnabled())
+			ev.turn=Word.charToLabel(a)+Word.charToLabel(b);
+		/* The vector turnScratch keeps track of the edges of the graph.
+	   Folding reduces the number of edges, and since other edges might be
+	   moved around in this process, we need to know where to find an edge
+	   that has left its original position. The vector holds handles of
+	   reloc, which point to the new location. */
+		if (reloc==null) {
+			reloc=new Relocation();
+			turnScratch=new GrowingIntArray(4*getEdges());
+			subSplitScratch=new GrowingIntArray(4*getEdges());
+			foldScratch=new GrowingBoolArray(4*getEdges());
+		}
+		reloc.reset();
+		splitAndFoldRecursively(a,b,turnScratch,0);
+		TrainEvents.end(ev,this);
 	}
 
 	/**
@@ -698,83 +1170,182 @@ removes all vertices of valence one or two and all invariant forests that
 might be left after a sequence of folding operations.
 	 */
 	public void cleanItUp() {
-		while (v1Homotopy());
+		TrainEvents.CleanUp ev=new TrainEvents.CleanUp();
+
+		TrainEvents.begin(ev,this);
+		while (v1Homotopy())
+			checkBudget();
 		do {
+			checkBudget();
 			tightenPlus();
-			while (collapseInvForest()) tightenPlus();
+			while (collapseInvForest()) {
+				checkBudget();
+				tightenPlus();
+			}
 		} while (v2Homotopy());
+		TrainEvents.end(ev,this);
 	}
 
 	/**
 Takes a map and transforms it into train track form if this is possible, 
-otherwise the result is a map with reducible transition matrix.
+otherwise the result is a map with reducible transition matrix. Maps that
+are train track maps already (see verify()) are left alone.
 @return true iff the resulting map is a train track map
 	 */
 	public boolean trainTrackMap() {
+		folds=0;
+		return compute(true);
+	}
+
+	/**
+Continues a computation from a checkpoint that has been loaded with
+readCheckpoint(). Since checkpoints are written only when the map is a
+topological representative, the initial cleanup is skipped, so the
+result is the same as if the original computation had not been interrupted.
+@return true iff the resulting map is a train track map
+	 */
+	public boolean resume() {
+		return compute(false);
+	}
+
+	private boolean compute(boolean clean) {
 		int il[]=new int[2];
-		int a,b;
-		boolean flag;
+		boolean flag,verified;
+		long t;
 
-		setChanged();
-		notifyObservers(new Integer(CHANGE));
+		startTime=lastCheckpoint=System.currentTimeMillis();
+		reason="";
+		status=0;
+		running=true;
+		try {
+			setChanged();
+			notifyObservers(new Integer(CHANGE));
 
-		cleanItUp();
-		updateTransitionMatrix();
-		setChanged();
-		notifyObservers(new Integer(CHANGE));
+			if (stats!=null) {
+				stats.strategy=(strategy==null) ? "depth" : strategy.getName();
+				stats.sample(size());
+			}
+			t=now();
+			verified=verify();
+			if (verified)
+				tighten();	// images are tight; this normalizes the fixed word
+			else if (clean)
+				cleanItUp();
+			updateTransitionMatrix();
+			lap(Statistics.CLEANUP,t);
+			if (stats!=null)
+				stats.sample(size());
+			setChanged();
+			notifyObservers(new Integer(CHANGE));
+			setChanged();
+			notifyObservers(new Integer(NEW_COMP));
+
+			flag=verified ? false : mainLoop(il);
+		} catch (Interruption ex) {
+			status=ex.status;
+			reason=ex.getMessage();
+			if (status==BUDGET_EXCEEDED) {
+				// stop() and exceptions have notified observers already
+				setChanged();
+				notifyObservers(new Integer(status));
+			}
+			return false;
+		} finally {
+			running=false;
+			stopRequested=false;
+		}
+
+		if (!isGoodMap()) {
+			status=0;
+			setChanged();
+			notifyObservers("graph in inconsistent state.\n"
+					+"please email your input to brinkman@math.utah.edu");
+			return false;
+		}
+
+		status=flag ? FAILURE : SUCCESS;
 		setChanged();
-		notifyObservers(new Integer(NEW_COMP));
+		notifyObservers(new Integer(status));
 
-		try {
-			while ((flag=findIllegalTurn(il)) && (m.isIrreducible())) {
-				/* If there is an illegal turn, a will be the index of the edge whose
-	   image contains the turn, b is the position of the illegal turn in
-	   the image of the edge a. */
-				a=il[0];
-				b=il[1];
-				splitEdge(a,b+1);	/* split at the illegal turn and */
+		return (!flag);
+	}
+
+	/* splits edge a at the illegal turn at position b and folds. */
+	private void foldTurn(int a,int b) {
+		splitEdge(a,b+1);	/* split at the illegal turn and */
 
-				reverseEdge(a);
-				/* turn edge a. Now the FIRST element in the image of a is one
+		reverseEdge(a);
+		/* turn edge a. Now the FIRST element in the image of a is one
 		   half of the illegal turn. This little trick makes the rest
 		   of the algorithm look symmetric. */
 
-				swapVertices(getStart(a),0);
-				/* The new vertex is labelled 0 now, so it won't be relabelled
+		swapVertices(getStart(a),0);
+		/* The new vertex is labelled 0 now, so it won't be relabelled
 		   in the folding process. Thus we can make sure that the
 		   valence of the new vertex is not increased by folding. */
 
-				splitAndFold(Word.indexToChar(a,false),
-						Word.indexToChar(getEdges()-1,false));
-				/* now split edges and fold them until tightening occurs. */
+		splitAndFold(Word.indexToChar(a,false),
+				Word.indexToChar(getEdges()-1,false));
+		/* now split edges and fold them until tightening occurs. */
+	}
+
+	/* performs one step of the algorithm at the illegal turn at position b in
+   the image of edge a; used by look-ahead strategies on copies. */
+	void lookAhead(int a,int b) {
+		foldTurn(a,b);
+		cleanItUp();
+		updateTransitionMatrix();
+	}
+
+	/* the main loop of the train track algorithm; returns true iff an illegal
+   turn is left at the end, i.e., iff the map turned out to be reducible. */
+	private boolean mainLoop(int il[]) {
+		int a,b;
+		boolean flag;
+		long t;
+
+		try {
+			t=now();
+			while ((flag=findIllegalTurn(il)) && (m.isIrreducible())) {
+				/* If there is an illegal turn, a will be the index of the edge whose
+	   image contains the turn, b is the position of the illegal turn in
+	   the image of the edge a. */
+				t=lap(Statistics.SEARCH,t);
+				checkBudget();
+				foldTurn(il[0],il[1]);
+				t=lap(Statistics.FOLD,t);
 
 				cleanItUp();	// turn the map into a top representative
 				updateTransitionMatrix();
+				lap(Statistics.CLEANUP,t);
+				if (stats!=null)
+					stats.sample(size());
 
 				setChanged();
 				notifyObservers(new Integer(PROGRESS));
+				if ((checkpointFile!=null) && (System.currentTimeMillis()
+						-lastCheckpoint>=checkpointInterval)) {
+					try {
+						writeCheckpoint(checkpointFile);
+					} catch (IOException ex) {	// not fatal
+						setChanged();
+						notifyObservers(ex.toString());
+					}
+					lastCheckpoint=System.currentTimeMillis();
+				}
 				System.gc();
+				t=now();
 			}
+			lap(Statistics.SEARCH,t);
+		} catch (Interruption ex) {
+			throw ex;
 		} catch (Throwable ex) {
 			setChanged();
 			notifyObservers(ex.toString());
-			return false;
+			throw new Interruption(0,ex.toString());
 		}
 
-		if (!isGoodMap()) {
-			setChanged();
-			notifyObservers("graph in inconsistent state.\n"
-					+"please email your input to brinkman@math.utah.edu");
-			return false;
-		}
-
-		setChanged();
-		if (!flag)
-			notifyObservers(new Integer(SUCCESS));
-		else
-			notifyObservers(new Integer(FAILURE));
-
-		return (!flag);
+		return flag;
 	}
 
 	/**
@@ -813,6 +1384,11 @@ update routine for interface "Observer", only called from the main routine.
 							+"train track.");
 					break;
 				}
+				case BUDGET_EXCEEDED: {
+					System.err.println("Budget exceeded: "
+							+((TrainTrack) ob).getInterruptionReason());
+					break;
+				}
 				}
 		}
 	}
@@ -825,13 +1401,161 @@ Method for interface Runnable.
 	}
 
 	/**
-Tells observers that the computation has been stopped.
+Tells observers that the computation has been stopped. A computation in
+progress will terminate at the next fold or cleanup step, leaving the
+train track in the state it had reached at that point.
 	 */
 	public void stop() {
+		if (running)
+			stopRequested=true;
 		setChanged();
 		notifyObservers(new Integer(STOPPED));
 	}
 
+	/**
+Sets resource limits for subsequent calls of trainTrackMap().
+@param Budget b: new budget (null for no limits)
+	 */
+	public void setBudget(Budget b) {
+		budget=b;
+	}
+
+	/**
+@return current budget, or null if there is none.
+	 */
+	public Budget getBudget() {
+		return budget;
+	}
+
+	/**
+@return outcome of the last call of trainTrackMap(), i.e., SUCCESS, FAILURE, STOPPED, BUDGET_EXCEEDED, or 0 if there was no computation or an error occurred.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+@return description of the reason why the last computation was interrupted, if any.
+	 */
+	public String getInterruptionReason() {
+		return reason;
+	}
+
+	/**
+@return number of elementary folds performed by the current (or last) computation.
+	 */
+	public int getFolds() {
+		return folds;
+	}
+
+	/**
+Attaches statistics to this train track; subsequent operations will update
+its counters and timers.
+@param Statistics st: statistics object (null disables statistics)
+	 */
+	public void setStatistics(Statistics st) {
+		stats=st;
+	}
+
+	/**
+@return statistics attached to this train track, or null if there are none.
+	 */
+	public Statistics getStatistics() {
+		return stats;
+	}
+
+	/**
+Sets the rule for choosing illegal turns.
+@param TurnStrategy st: new strategy (null for the default, i.e., minimal depth)
+	 */
+	public void setStrategy(TurnStrategy st) {
+		strategy=st;
+	}
+
+	/**
+@return current strategy for choosing illegal turns, or null for the default.
+	 */
+	public TurnStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+Splits an edge, see GraphMap.splitEdge(). Overridden for statistics.
+@param int ed: edge to be split
+@param int at: indicates where to split the image of ed
+	 */
+	public void splitEdge(int ed,int at) {
+		super.splitEdge(ed,at);
+		if (stats!=null)
+			stats.splits++;
+	}
+
+	/**
+Enables periodic checkpoints. Whenever the PF-eigenvalue decreases and at
+least the given time has passed since the last checkpoint, the current state
+of the computation is written to the given file.
+@param String fn: checkpoint file (null disables checkpoints)
+@param long interval: minimal time between checkpoints in milliseconds
+	 */
+	public void setCheckpoint(String fn,long interval) {
+		checkpointFile=fn;
+		checkpointInterval=interval;
+	}
+
+	/**
+Writes the state of the computation, i.e., the current map, its marking,
+the number of folds, and the current PF-eigenvalue, to a file. The file is
+in the usual input format, with the additional data in a comment, so it
+can also be read by readFromFile(). The file is replaced atomically, so
+an interruption while writing does not destroy the previous checkpoint.
+@param String fn: file name
+	 */
+	public void writeCheckpoint(String fn) throws IOException {
+		File f=new File(fn);
+		File tmp=new File(fn+".tmp");
+		Writer w=new BufferedWriter(new FileWriter(tmp));
+
+		try {
+			w.write(CHECKPOINTTAG+" folds "+folds+" PF "
+					+growthRate()+"\n");
+			w.write(toString());
+		} finally {
+			w.close();
+		}
+
+		if (!tmp.renameTo(f))
+			throw new IOException("can't write checkpoint: "+fn);
+	}
+
+	/**
+Reads a checkpoint written by writeCheckpoint(). Afterwards, resume()
+continues the computation.
+@param String fn: file name
+@return PF-eigenvalue at the time of the checkpoint
+	 */
+	public double readCheckpoint(String fn) throws IOException {
+		String s=FileIO.fileToString(fn);
+		StringTokenizer st;
+		double pf=0;
+		String tok;
+
+		if (!s.startsWith(CHECKPOINTTAG))
+			throw new IOException("not a checkpoint: "+fn);
+
+		st=new StringTokenizer(
+				s.substring(CHECKPOINTTAG.length(),s.indexOf('\n')));
+		while (st.hasMoreTokens()) {
+			tok=st.nextToken();
+			if (tok.equals("folds"))
+				folds=Integer.parseInt(st.nextToken());
+			else if (tok.equals("PF"))
+				pf=Double.parseDouble(st.nextToken());
+		}
+
+		readGraph(new StringReader(s));
+		return pf;
+	}
+
 	/**
 Sets the flag indicating whether intermediate results (steps) are desired.
 @param boolean s: new value of STEP flag
@@ -848,7 +1572,12 @@ to your .cshrc (assuming you're using csh).</p>
 
 <p>You can call the train track
 routine by typing
-<kbd>	jtrain [-m][-v][-q][-g] [filename] </kbd>
+<kbd>	jtrain [-m][-v][-q][-g][-t seconds][-f folds][-l length]
+[-c checkpoint][-i seconds][--stats[=file]][--strategy name]
+[--portfolio[=names]][--smallest[=ms]][--verify][--stratum]
+[filename] </kbd>
+or
+<kbd>	jtrain [options] --resume checkpoint </kbd></p>
 at the command line.</p>
 
 <p>The switch -m enables the marking feature.
@@ -859,6 +1588,27 @@ being printed to stderr.
 The switch -q runs the program in quiet mode, i.e. the current PF-eigenvalue
 is not being printed to stderr (note that -q disables -v).
 The switch -g prompts the program to print a list of the gates.
+The switches -t, -f, and -l limit the wall time (in seconds), the number
+of elementary folds, and the total length of the images of edges; if one of
+these limits is exceeded, the program prints the map it has reached so far.
+The switch -c makes the program write a checkpoint to the given file at most
+every -i seconds (default: 60) whenever the PF-eigenvalue decreases, and
+--resume continues the computation from such a checkpoint (further
+checkpoints go to the same file unless -c is given).
+The switch --stats[=file] collects statistics (also available via JMX) and
+writes them in JSON format to the given file, or to stderr.
+The switch --strategy selects the rule for choosing illegal turns (depth,
+pf[:width], size[:width], or random[:seed]; see TurnStrategy).
+The switch --portfolio runs the given comma separated strategies (default:
+one per processor) in parallel and keeps the first result; with --smallest,
+it waits up to the given number of milliseconds (default: until all are
+done) for the other strategies and keeps the result with the fewest edges.
+Checkpoints are not written in portfolio mode.
+The switch --verify only checks whether the input already is a train track
+map (see verify()) and prints its gates and growth rate if it is; the train
+track algorithm is not run.
+The switch --stratum prints the stratum of a pseudo-Anosov map, i.e., the
+number of prongs at each singularity and at the puncture (see Stratum).
 The input format is the same as the output format.</p>
 	 */
 	public static void main(String s[]) {
@@ -869,8 +1619,30 @@ The input format is the same as the output format.</p>
 		boolean quiet=false;
 		boolean gates=false;
 		boolean step=false;
-
-		Getopt opts=new Getopt("TrainTrack.class",s,"mqgv");
+		Budget budget=new Budget();
+		String checkpoint=null;
+		String resume=null;
+		double interval=60;
+		Statistics stats=null;
+		String statsFile=null;
+		TurnStrategy strategy=null;
+		String portfolio=null;
+		long grace=-1;
+		Portfolio pf=null;
+		boolean ok;
+		boolean verifyOnly=false;
+		boolean stratum=false;
+		LongOpt longopts[]=new LongOpt[] {
+				new LongOpt("resume",LongOpt.REQUIRED_ARGUMENT,null,'r'),
+				new LongOpt("stats",LongOpt.OPTIONAL_ARGUMENT,null,'s'),
+				new LongOpt("strategy",LongOpt.REQUIRED_ARGUMENT,null,'S'),
+				new LongOpt("portfolio",LongOpt.OPTIONAL_ARGUMENT,null,'P'),
+				new LongOpt("smallest",LongOpt.OPTIONAL_ARGUMENT,null,'K'),
+				new LongOpt("verify",LongOpt.NO_ARGUMENT,null,'V'),
+				new LongOpt("stratum",LongOpt.NO_ARGUMENT,null,'Z') };
+
+		Getopt opts=new Getopt("TrainTrack.class",s,"mqgvt:f:l:c:i:",
+				longopts);
 		int c;
 
 		while ((c = opts.getopt()) != -1) {
@@ -887,6 +1659,50 @@ The input format is the same as the output format.</p>
 			case 'v':
 				step=true;
 				break;
+			case 't':
+				budget.setMaxTime(
+						(long) (1000*Double.parseDouble(opts.getOptarg())));
+				break;
+			case 'f':
+				budget.setMaxFolds(Integer.parseInt(opts.getOptarg()));
+				break;
+			case 'l':
+				budget.setMaxSize(Integer.parseInt(opts.getOptarg()));
+				break;
+			case 'c':
+				checkpoint=opts.getOptarg();
+				break;
+			case 'i':
+				interval=Double.parseDouble(opts.getOptarg());
+				break;
+			case 'r':
+				resume=opts.getOptarg();
+				break;
+			case 's':
+				stats=new Statistics();
+				statsFile=opts.getOptarg();
+				break;
+			case 'S':
+				try {
+					strategy=TurnStrategy.forName(opts.getOptarg());
+				} catch (IllegalArgumentException e) {
+					System.err.println(e.getMessage());
+					System.exit(1);
+				}
+				break;
+			case 'P':
+				portfolio=(opts.getOptarg()==null) ? "" : opts.getOptarg();
+				break;
+			case 'V':
+				verifyOnly=true;
+				break;
+			case 'Z':
+				stratum=true;
+				break;
+			case 'K':
+				grace=(opts.getOptarg()==null) ? Long.MAX_VALUE
+						: Long.parseLong(opts.getOptarg());
+				break;
 			case '?':
 				System.exit(1);
 				break;
@@ -896,7 +1712,19 @@ The input format is the same as the output format.</p>
 		i=opts.getOptind();
 
 		try{
-			if (s.length>i) {
+			if (portfolio!=null)
+				pf=(portfolio.length()==0) ? Portfolio.defaultPortfolio()
+						: new Portfolio(portfolio.split(","));
+			if (resume!=null) {
+				if (s.length>i) {
+					System.err.println("Too many arguments.");
+					System.exit(1);
+				}
+				tt.readCheckpoint(resume);
+				if (checkpoint==null)
+					checkpoint=resume;
+			}
+			else if (s.length>i) {
 				if (s.length>i+1) {
 					System.err.println("Too many arguments.");
 					System.exit(1);
@@ -917,8 +1745,31 @@ The input format is the same as the output format.</p>
 			tt.addObserver(tt);
 
 		tt.setStep(step);
+		tt.setBudget(budget);
+		tt.setStrategy(strategy);
+		if (checkpoint!=null)
+			tt.setCheckpoint(checkpoint,(long) (1000*interval));
+		if ((stats!=null) && (pf==null)) {
+			stats.register(tt.getLabel());
+			tt.setStatistics(stats);
+		}
 
-		if (tt.trainTrackMap()) {
+		if (verifyOnly)
+			ok=tt.verify();
+		else if (pf!=null) {
+			pf.setBudget(budget);
+			pf.setGrace(grace);
+			pf.setStatistics(stats!=null);
+			tt=pf.run(tt);
+			stats=tt.getStatistics();
+			if (!quiet)
+				System.err.println("\nStrategy: "+pf.getWinnerStrategy());
+			ok=(tt.getStatus()==SUCCESS);
+		}
+		else
+			ok=(resume!=null) ? tt.resume() : tt.trainTrackMap();
+
+		if (ok) {
 			System.err.println("");
 			System.out.println(tt.toString());
 
@@ -927,6 +1778,8 @@ The input format is the same as the output format.</p>
 				System.out.println("// pseudo-Anosov growth rate: "
 						+IntMatrix.PFForm.format(tt.growthRate())
 						+"\n");
+				if (stratum)
+					System.out.println("// stratum: "+gg.getStratum()+"\n");
 			}
 			else
 				System.out.println("// non-pseudo-Anosov");
@@ -936,12 +1789,35 @@ The input format is the same as the output format.</p>
 				System.out.println(gg.toString());
 			}
 		}
+		else if (tt.getStatus()==BUDGET_EXCEEDED) {
+			System.out.println("\n"+tt.toString()
+					+"\n// budget exceeded: "+tt.getInterruptionReason());
+		}
+		else if (verifyOnly) {
+			System.out.println("\n"+tt.toString()
+					+"\n// not a train track map");
+		}
 		else {
 			System.out.println("\n"+tt.toString()
 					+"\n// map is not irreducible");
 		}
 		System.out.println(tt.showVertexMap());
 
+		if (stats!=null) {
+			if (statsFile==null)
+				System.err.print(stats.toJSON());
+			else
+				try {
+					Writer w=new FileWriter(statsFile);
+					w.write(stats.toJSON());
+					w.close();
+				} catch (IOException e) {
+					System.err.println(e.toString());
+					System.exit(1);
+				}
+		}
+		if (verifyOnly && !ok)
+			System.exit(1);
 	}
 
 }
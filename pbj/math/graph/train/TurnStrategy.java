@@ -0,0 +1,230 @@
+package pbj.math.graph.train;
+
+import java.util.List;
+import java.util.Random;
+
+import pbj.math.numerical.PFEnclosure;
+
+/**
+<p>A rule for choosing the illegal turn at which the train track algorithm
+splits and folds next. The choice doesn't affect the correctness of the
+algorithm, but it strongly affects the number of folds and the size of
+intermediate maps. Available strategies (see forName()):</p>
+<ul>
+<li><code>depth</code>: the turn with the fewest iterations to degeneration,
+first in edge order (the default).</li>
+<li><code>pf[:width]</code>: look ahead and take the turn whose fold yields
+the smallest PF-eigenvalue.</li>
+<li><code>size[:width]</code>: look ahead and take the turn whose fold yields
+the smallest map (fewest edges, then shortest images).</li>
+<li><code>random[:seed]</code>: a random turn.</li>
+</ul>
+<p>Look-ahead strategies only consider the width (default 8) turns of
+smallest depth. Strategies may have state, so each TrainTrack needs an
+instance of its own.</p>
+@author Peter Brinkmann
+@see TrainTrack
+ */
+public abstract class TurnStrategy {
+
+	/** names of available strategies */
+	public static final String names[]={"depth","pf","size","random"};
+
+	private static final int WIDTH=8;
+
+	/**
+Chooses an illegal turn.
+@param TrainTrack t: current map
+@param List turns: illegal turns {edge, position, depth} in edge order, as returned by TrainTrack.illegalTurns(); not empty
+@return index of the chosen turn in the list
+	 */
+	public abstract int select(TrainTrack t,List<int[]> turns);
+
+	/**
+@return name of this strategy, including parameters, suitable for forName()
+	 */
+	public abstract String getName();
+
+	public String toString() {
+		return getName();
+	}
+
+	/**
+Creates a strategy.
+@param String s: name of strategy, optionally followed by a colon and a parameter, e.g., random:42
+@return new strategy
+	 */
+	public static TurnStrategy forName(String s) {
+		int i=s.indexOf(':');
+		String name=(i<0) ? s : s.substring(0,i);
+		String arg=(i<0) ? null : s.substring(i+1);
+
+		try {
+			if (name.equals("depth") && (arg==null))
+				return new MinDepth();
+			else if (name.equals("pf"))
+				return new MinGrowth((arg==null) ? WIDTH : Integer.parseInt(arg));
+			else if (name.equals("size"))
+				return new MinSize((arg==null) ? WIDTH : Integer.parseInt(arg));
+			else if (name.equals("random"))
+				return new Randomized((arg==null) ?
+						System.currentTimeMillis() : Long.parseLong(arg));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad parameter: "+s);
+		}
+		throw new IllegalArgumentException("unknown strategy: "+s);
+	}
+
+	/* index of the first turn of minimal depth */
+	static int minDepth(List<int[]> turns) {
+		int i,k=0;
+
+		for(i=1;i<turns.size();i++)
+			if (turns.get(i)[2]<turns.get(k)[2])
+				k=i;
+		return k;
+	}
+
+	/** the original rule of the train track algorithm */
+	public static class MinDepth extends TurnStrategy {
+
+		public int select(TrainTrack t,List<int[]> turns) {
+			return minDepth(turns);
+		}
+
+		public String getName() {
+			return "depth";
+		}
+	}
+
+	/** chooses a random turn */
+	public static class Randomized extends TurnStrategy {
+		private final long seed;
+		private final Random rnd;
+
+		public Randomized(long seed) {
+			this.seed=seed;
+			rnd=new Random(seed);
+		}
+
+		public int select(TrainTrack t,List<int[]> turns) {
+			return rnd.nextInt(turns.size());
+		}
+
+		public String getName() {
+			return "random:"+seed;
+		}
+	}
+
+	/**
+Folds each candidate turn in a copy of the map and keeps the turn whose
+result has the lowest score. Ties go to the turn of smaller depth.
+@param S: type of scores
+	 */
+	public static abstract class LookAhead<S> extends TurnStrategy {
+		/** number of turns that are considered */
+		protected final int width;
+
+		protected LookAhead(int w) {
+			if (w<1)
+				throw new IllegalArgumentException("bad width: "+w);
+			width=w;
+		}
+
+		/**
+@param TrainTrack t: map after folding a turn and cleaning up
+@return score of t
+		 */
+		protected abstract S score(TrainTrack t);
+
+		/**
+Compares the scores of two candidates.
+@param S s,t: scores
+@return negative, zero, or positive, depending on whether s is better than, as good as, or worse than t
+		 */
+		protected abstract int compare(S s,S t);
+
+		public int select(TrainTrack t,List<int[]> turns) {
+			boolean used[]=new boolean[turns.size()];
+			int i,j,k,cmp,res;
+			TrainTrack c;
+			S sc,best=null;
+
+			res=minDepth(turns);
+			for(j=0;(j<width) && (j<turns.size());j++) {
+				k=-1;	// next unused turn of minimal depth
+				for(i=0;i<turns.size();i++)
+					if ((!used[i])
+							&& ((k<0) || (turns.get(i)[2]<turns.get(k)[2])))
+						k=i;
+				used[k]=true;
+
+				c=new TrainTrack(t);
+				try {
+					c.lookAhead(turns.get(k)[0],turns.get(k)[1]);
+					sc=score(c);
+				} catch (RuntimeException e) {
+					continue;	// the algorithm will find out for itself
+				}
+				if (t.getStatistics()!=null)
+					t.getStatistics().lookaheads++;
+				if (best==null)
+					cmp=-1;
+				else
+					try {
+						cmp=compare(sc,best);
+					} catch (PFEnclosure.Uncertified e) {	// best guess
+						cmp=e.getEstimate();
+						if (t.getStatistics()!=null)
+							t.getStatistics().uncertified++;
+					}
+				if (cmp<0) {
+					best=sc;
+					res=k;
+				}
+			}
+			return res;
+		}
+	}
+
+	/** maximal decrease of the PF-eigenvalue, compared with certified results where possible */
+	public static class MinGrowth extends LookAhead<PFEnclosure> {
+
+		public MinGrowth(int w) {
+			super(w);
+		}
+
+		protected PFEnclosure score(TrainTrack t) {
+			return t.growthRateEnclosure();
+		}
+
+		protected int compare(PFEnclosure s,PFEnclosure t) {
+			return s.compareTo(t);
+		}
+
+		public String getName() {
+			return "pf:"+width;
+		}
+	}
+
+	/** smallest resulting graph */
+	public static class MinSize extends LookAhead<Double> {
+
+		public MinSize(int w) {
+			super(w);
+		}
+
+		protected Double score(TrainTrack t) {
+			return ((double) t.getEdges())*(1<<24)+t.size();
+		}
+
+		protected int compare(Double s,Double t) {
+			return s.compareTo(t);
+		}
+
+		public String getName() {
+			return "size:"+width;
+		}
+	}
+
+}
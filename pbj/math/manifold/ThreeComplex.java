@@ -1,6 +1,7 @@
 package pbj.math.manifold;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.io.*;
 import pbj.io.*;
 
@@ -48,121 +49,55 @@ public class ThreeComplex {
 	/** just the String "S", for gluing */
 	public static final String GLUING="G";
 
-	Vector<Tetrahedron> tetrahedra;
-	Hashtable<Triangle, GluingData> gluings;
-	String name = null;
-
-	// a class for easy handling of triangles
-	class Triangle {
-		final String v[];	// the labels of the vertices
-		final int hc;		// hash code
-		final String norm;	// normed representative of the triangle,
-		// just the sum of the labels in alpha order
-
-		Triangle(String v1,String v2,String v3) {
-			v=new String[]{v1,v2,v3};
-
-			// sort the labels
-			if ((v1.compareTo(v2)<0) && (v2.compareTo(v3)<0))
-				norm=v1+v2+v3;
-			else if ((v1.compareTo(v3)<0) && (v3.compareTo(v2)<0))
-				norm=v1+v3+v2;
-			else if ((v2.compareTo(v1)<0) && (v1.compareTo(v3)<0))
-				norm=v2+v1+v3;
-			else if ((v2.compareTo(v3)<0) && (v3.compareTo(v1)<0))
-				norm=v2+v3+v1;
-			else if ((v3.compareTo(v1)<0) && (v1.compareTo(v2)<0))
-				norm=v3+v1+v2;
-			else if ((v3.compareTo(v2)<0) && (v2.compareTo(v1)<0))
-				norm=v3+v2+v1;
-			else
-				norm="";
-
-			hc=norm.hashCode(); // fix the hash code
-		}
-
-		public int hashCode() {
-			return hc;
-		}
-
-		public boolean equals(Object o) {
-			if (o instanceof Triangle)
-				return norm.equals(((Triangle) o).norm);
-			else
-				return false;
-		}
-
-		public String toString() {
-			String res="// triangle ";
-			int i;
-			for(i=0;i<3;i++)
-				res=res+v[i]+" ";
-			return res;
-
-		}
-	}
-
-	// a class for easy handling of gluings
-	class GluingData {
-		int tet1,face1;		// glue face face1 of tetrahedron tet1 to...
-		int tet2,face2;		// face face2 of tetrahedron tet2.
-		Triangle tr1;		// face1 of tet1
-		Triangle tr2;		// face2 of tet2
-
-		// construct GluingData, given one face of a tetrahedron involved
-		GluingData(int tet,int face) {
-			tet1=tet;
-			face1=face;
-			tet2=-1;
-			tr1=null;
-			tr2=null;
-		}
-
-		// construct GluingData, given two triangles involved
-		GluingData(Triangle t1,Triangle t2) {
-			tet1=-1;
-			tet2=-1;
-			tr1=t1;
-			tr2=t2;
-		}
+	// the final lines of each tetrahedron in SnapPea's format
+	private static final String TAIL="-1 -1 -1 -1\n"+
+	"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
+	"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
+	"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
+	"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
+	"0.0 0.0\n";
 
-		public String toString() {
-			return "// "+tet1+" "+face1+" "+tet2+" "+face2+" "+tr1+" "+tr2;
-		}
-	}
-
-	// a class that handles tetrahedra
-	class Tetrahedron {
-		String v[];		// labels of the vertices
-		Triangle faces[];	// the four faces
-
-		// constructs a tetrahedron, given the labels of its vertices
-		Tetrahedron(String v1,String v2,String v3,String v4) {
-			v=new String[]{v1,v2,v3,v4};
-			faces=new Triangle[4];
-
-			// init faces; note that faces[i] leaves out v_i
-			faces[0]=new Triangle(v2,v3,v4);
-			faces[1]=new Triangle(v1,v3,v4);
-			faces[2]=new Triangle(v1,v2,v4);
-			faces[3]=new Triangle(v1,v2,v3);
-		}
+	String name = null;
 
-		public String toString() {
-			String res="// tetrahedron ";
-			int i;
-			for(i=0;i<4;i++)
-				res=res+v[i]+" ";
-			return res;
-		}
-	}
+	// vertex labels are interned to ints
+	HashMap<String,Integer> vertexIds;
+	String vertices[];	// labels of the vertices
+	int nv;			// number of vertices
+
+	// tetrahedron t has the vertices tets[4*t],...,tets[4*t+3]; face i of
+	// a tetrahedron leaves out its vertex i
+	int tets[];
+	int nt;			// number of tetrahedra
+
+	// Faces live in an open addressing hash table, keyed by the sorted
+	// triples of their vertices. An occurrence of a face is recorded as
+	// 4*tetrahedron+face.
+	int keys[];		// 3 per slot, keys[3*h]<0 if slot h is empty
+	int occ1[],occ2[];	// first and second occurrence of the face, or -1
+	int glue[];		// explicit gluing of the face, or -1
+	int mask;		// number of slots minus 1
+	int nf;			// number of faces
+
+	// Explicit gluings: gluing g glues the triangle glued[6*g],
+	// glued[6*g+1], glued[6*g+2] to the triangle glued[6*g+3],
+	// glued[6*g+4], glued[6*g+5], vertex by vertex.
+	int glued[];
+	int ng;			// number of explicit gluings
 
 	/**
 Constructs an object of type ThreeComplex.
 	 */
 	public ThreeComplex() {
-		tetrahedra=new Vector<Tetrahedron>();
-		gluings=new Hashtable<Triangle, GluingData>(2000);
+		vertexIds=new HashMap<String,Integer>();
+		vertices=new String[64];
+		tets=new int[256];
+		keys=new int[3*1024];
+		Arrays.fill(keys,-1);
+		occ1=new int[1024];
+		occ2=new int[1024];
+		glue=new int[1024];
+		mask=1023;
+		glued=new int[60];
 		name="no_name";
 	}
 
@@ -182,6 +117,110 @@ Returns the current label
 		return name;
 	}
 
+	/**
+Returns the number of tetrahedra
+@return number of tetrahedra in this complex
+	 */
+	public int getTetrahedra() {
+		return nt;
+	}
+
+	// returns the id of the vertex with label s, creating it if necessary
+	private int vertex(String s) {
+		Integer id=vertexIds.get(s);
+
+		if (id!=null)
+			return id.intValue();
+		if (nv==vertices.length)
+			vertices=Arrays.copyOf(vertices,2*nv);
+		vertices[nv]=s;
+		vertexIds.put(s,nv);
+		return nv++;
+	}
+
+	// returns the slot of the face with vertices a,b,c; if the face is not
+	// in the table, it is added if add is true, otherwise -1 is returned
+	private int face(int a,int b,int c,boolean add) {
+		int h;
+
+		// sort the vertices
+		if (a>b) { h=a; a=b; b=h; }
+		if (b>c) { h=b; b=c; c=h; }
+		if (a>b) { h=a; a=b; b=h; }
+
+		h=(a*0x9E3779B1+b)*0x9E3779B1+c;
+		h^=h>>>15;
+		h*=0x85EBCA6B;
+		h^=h>>>13;
+		for(h&=mask;keys[3*h]>=0;h=(h+1) & mask)
+			if ((keys[3*h]==a) && (keys[3*h+1]==b) && (keys[3*h+2]==c))
+				return h;
+
+		if (!add)
+			return -1;
+
+		if (4*(nf+1)>3*(mask+1)) {	// table too full?
+			rehash();
+			return face(a,b,c,true);
+		}
+		keys[3*h]=a;
+		keys[3*h+1]=b;
+		keys[3*h+2]=c;
+		occ1[h]=-1;
+		occ2[h]=-1;
+		glue[h]=-1;
+		nf++;
+		return h;
+	}
+
+	// doubles the size of the hash table of faces
+	private void rehash() {
+		int k[]=keys,o1[]=occ1,o2[]=occ2,g[]=glue;
+		int i,h;
+
+		keys=new int[2*k.length];
+		Arrays.fill(keys,-1);
+		occ1=new int[2*o1.length];
+		occ2=new int[2*o1.length];
+		glue=new int[2*o1.length];
+		mask=2*mask+1;
+		nf=0;
+		for(i=0;i<o1.length;i++)
+			if (k[3*i]>=0) {
+				h=face(k[3*i],k[3*i+1],k[3*i+2],true);
+				occ1[h]=o1[i];
+				occ2[h]=o2[i];
+				glue[h]=g[i];
+			}
+	}
+
+	// returns the slot of face f of tetrahedron t
+	private int face(int t,int f,boolean add) {
+		switch(f) {
+		case 0: return face(tets[4*t+1],tets[4*t+2],tets[4*t+3],add);
+		case 1: return face(tets[4*t],tets[4*t+2],tets[4*t+3],add);
+		case 2: return face(tets[4*t],tets[4*t+1],tets[4*t+3],add);
+		default: return face(tets[4*t],tets[4*t+1],tets[4*t+2],add);
+		}
+	}
+
+	// returns the position of vertex v in tetrahedron t, or -1
+	private int position(int t,int v) {
+		int i;
+		for(i=0;i<4;i++)
+			if (tets[4*t+i]==v)
+				return i;
+		return -1;
+	}
+
+	private String tetrahedronToString(int t) {
+		StringBuilder res=new StringBuilder("// tetrahedron ");
+		int i;
+		for(i=0;i<4;i++)
+			res.append(vertices[tets[4*t+i]]).append(' ');
+		return res.toString();
+	}
+
 	/**
 Reads triangulation data from the file fn. If fn equals "", then the method
 reads from stdin.
@@ -196,66 +235,47 @@ reads from stdin.
 			readTriangulation(new InputStreamReader(System.in));
 	}
 
-	/* adds a new triangle to the list maintained in the HashTable "gluings"
-   parameters are a tetrahedron, its index in the list of tetrahedra, and
-   the face to be added to the list */
-	private void addTriangle(Tetrahedron tet,int i0,int face) {
-		GluingData gl;
-
-		// is tet.faces[face] already in the HashTable?
-		if (gluings.containsKey(tet.faces[face])) { // yes
-			gl=(GluingData) gluings.get(tet.faces[face]);
-
-			// record where this triangle can be found
-			if (gl.tet1<0) { // first occurence
-				gl.tet1=i0;
-				gl.face1=face;
-			}
-			else {		// second occurence
-				gl.tet2=i0;
-				gl.face2=face;
-			}
-		}
-		else	// add tet.faces[face] to the list of faces to be glued
-			gluings.put(tet.faces[face],new GluingData(i0,face));
-	}
-
 	/**
 Adds a tetrahedron to the triangulation. The four vertices have to be distinct.
 @param String s1,s2,s3,s4: vertices of the tetrahedron.
 	 */
 	public void addTetrahedron(String s1,String s2,String s3,String s4) {
-		Tetrahedron tet=new Tetrahedron(s1,s2,s3,s4);
-		int face,i0;
-
-		i0=tetrahedra.size();
-		tetrahedra.addElement(tet);
-
-		for(face=0;face<4;face++)
-			addTriangle(tet,i0,face);
+		int face,h;
+
+		if (4*nt+4>tets.length)
+			tets=Arrays.copyOf(tets,2*tets.length);
+		tets[4*nt]=vertex(s1);
+		tets[4*nt+1]=vertex(s2);
+		tets[4*nt+2]=vertex(s3);
+		tets[4*nt+3]=vertex(s4);
+
+		// record where the faces of the tetrahedron can be found
+		for(face=0;face<4;face++) {
+			h=face(nt,face,true);
+			if (occ1[h]<0)	// first occurrence
+				occ1[h]=4*nt+face;
+			else		// second occurrence
+				occ2[h]=4*nt+face;
+		}
+		nt++;
 	}
 
-	// adds a new gluing to the list maintained in the HashTable "gluings"
-	void addGluing(Triangle t1,Triangle t2) {
-		GluingData gl;
+	// records that the triangle a glued to the triangle b
+	private void addGluing(int a1,int a2,int a3,int b1,int b2,int b3) {
+		int h,g;
 
-		// is t1 already in the HashTable?
-		if (gluings.containsKey(t1)) { // yes
-			gl=gluings.get(t1);
-			gl.tr1=t1;	// t1 and t2 are glued
-			gl.tr2=t2;
+		h=face(a1,a2,a3,true);
+		if ((g=glue[h])<0) {
+			if (6*ng+6>glued.length)
+				glued=Arrays.copyOf(glued,2*glued.length);
+			g=glue[h]=ng++;
 		}
-		else // create a new gluing for t1 and t2
-			gluings.put(t1,new GluingData(t1,t2));
-
-		// symmetric thing for t2
-		if (gluings.containsKey(t2)) {
-			gl=gluings.get(t2);
-			gl.tr1=t2;
-			gl.tr2=t1;
-		}
-		else
-			gluings.put(t2,new GluingData(t2,t1));
+		glued[6*g]=a1;
+		glued[6*g+1]=a2;
+		glued[6*g+2]=a3;
+		glued[6*g+3]=b1;
+		glued[6*g+4]=b2;
+		glued[6*g+5]=b3;
 	}
 
 	/**
@@ -266,10 +286,17 @@ glued to b1, a2 to b2, etc.
 	 */
 	public void addGluing(String a1,String a2,String a3,
 			String b1,String b2,String b3) {
-		Triangle t1=new Triangle(a1,a2,a3);
-		Triangle t2=new Triangle(b1,b2,b3);
+		int u1,u2,u3,w1,w2,w3;
 
-		addGluing(t1,t2);
+		u1=vertex(a1);
+		u2=vertex(a2);
+		u3=vertex(a3);
+		w1=vertex(b1);
+		w2=vertex(b2);
+		w3=vertex(b3);
+
+		addGluing(u1,u2,u3,w1,w2,w3);	// symmetric
+		addGluing(w1,w2,w3,u1,u2,u3);
 	}
 
 	/**
@@ -285,12 +312,9 @@ Reads triangulation data.
 				if (s.equals(TETRAHEDRON))
 					addTetrahedron(st.nextString(),
 							st.nextString(),st.nextString(),st.nextString());
-				else if (s.equals(GLUING)) {
-					addGluing(new Triangle(
-							st.nextString(),st.nextString(),st.nextString()),
-							new Triangle(
-									st.nextString(),st.nextString(),st.nextString()));
-				}
+				else if (s.equals(GLUING))
+					addGluing(st.nextString(),st.nextString(),st.nextString(),
+							st.nextString(),st.nextString(),st.nextString());
 				else
 					throw new RuntimeException(s+": wrong key word");
 			}
@@ -303,57 +327,44 @@ perm[] is a permutation of {0,1,2,3} that indicates how the two neighbors
 are glued, following SnapPea's gluing convention.
 	 */
 	int findNeighbor(int tet,int face,int perm[]) {
-		Tetrahedron t1=(Tetrahedron) tetrahedra.elementAt(tet);
-		// retrieve tetrahedron tet
-		Tetrahedron t2;
-		GluingData gl=(GluingData) gluings.get(t1.faces[face]);
-		// retrieve gluing data for the face
-		GluingData gl2;
-		int i;
-		int r,s;
-		int nb,nf;
+		int h,g,i,r,s,nb,nf,other;
 
-		if (gl==null)		// no gluing data?
-			return -1;	// input is bad
+		if ((h=face(tet,face,false))<0)	// no gluing data?
+			return -1;		// input is bad
 
-		// does the gluing data already contain the right neighbor of tet?
-		if (gl.tet2>=0) { // yes
-			if ((gl.tet2==tet) && (gl.face2==face)) {
-				nb=gl.tet1;
-				nf=gl.face1;
-			}
-			else {
-				nb=gl.tet2;
-				nf=gl.face2;
-			}
-			t2=(Tetrahedron) tetrahedra.elementAt(nb);
-			// retrieve the neighbor
+		// do we already know the other occurrence of the face?
+		if (occ2[h]>=0) { // yes
+			other=(occ2[h]==4*tet+face) ? occ1[h] : occ2[h];
+			nb=other>>2;
+			nf=other&3;
 
 			perm[face]=nf;	 // now compute the permutation for SnapPea
 			for(r=0;r<4;r++) // such that the labels match up
 				if (r!=face)
 					for(s=0;s<4;s++)
-						if ((s!=nf) &&
-								(t1.v[r].equals(t2.v[s])))
+						if ((s!=nf) && (tets[4*tet+r]==tets[4*nb+s]))
 							perm[r]=s;
-
 		}
 		else { // neighboring tetrahedron is not yet known
-			if (gl.tr2==null) // no neighboring triangle?
-				throw new RuntimeException(t1+" has no neighbor");
-
-			gl2=(GluingData) gluings.get(gl.tr2);
-			// get gluing data for neighboring triangle
-
-			nb=gl2.tet1;
-			nf=gl2.face1;
-			t2=(Tetrahedron) tetrahedra.elementAt(nb);
-			// now we've found the neighboring tetrahedron
+			if ((g=glue[h])<0) // no neighboring triangle?
+				throw new RuntimeException(tetrahedronToString(tet)+
+						" has no neighbor");
+
+			// get the first occurrence of the neighboring triangle
+			h=face(glued[6*g+3],glued[6*g+4],glued[6*g+5],false);
+			if ((h<0) || (occ1[h]<0))
+				throw new RuntimeException(tetrahedronToString(tet)+
+						" is glued to a missing triangle");
+			nb=occ1[h]>>2;
+			nf=occ1[h]&3;
 
 			perm[face]=nf; // as above, make the labels match
 			for(i=0;i<3;i++) {
-				for(r=0;!t1.v[r].equals(gl.tr1.v[i]);r++);
-				for(s=0;!t2.v[s].equals(gl.tr2.v[i]);s++);
+				r=position(tet,glued[6*g+i]);
+				s=position(nb,glued[6*g+3+i]);
+				if ((r<0) || (s<0))
+					throw new RuntimeException(tetrahedronToString(tet)+
+							" has a bad gluing");
 				perm[r]=s;
 			}
 		}
@@ -375,38 +386,41 @@ GenericPrint.
 @see pbj.io.GenericPrint
 	 */
 	public void toSnapPea(Object o) {
-		int i,j;
+		int i,j,k;
 		int gl[]=new int[4];
+		int perm[]=new int[16];
 		int ti;
-		String tet,perm;
+		StringBuilder tet=new StringBuilder(256);
 		GenericPrint gp=new GenericPrint(o);
 
 		gp.println("% Triangulation\n");	// required first line
 		gp.println((name!=null && name.length()>0) ? name : "no_name");
 
 		gp.println("no_solution 0.0\nunknown_orientability\n"+
-				"CS_unknown\n\n0 0\n\n"+tetrahedra.size()+"\n");
+				"CS_unknown\n\n0 0\n\n"+nt+"\n");
 		// dummy entries, SnapPea will figure it out...
 
 		// now, print tetrahedra in SnapPea's format
-		for(i=0;i<tetrahedra.size();i++) {
-			tet="";
-			perm="";
+		for(i=0;i<nt;i++) {
+			tet.setLength(0);
 			for(j=0;j<4;j++) {
 				if ((ti=findNeighbor(i,j,gl))<0)
 					throw new RuntimeException("tetrahedron "+i+
 							", face "+j+" has no neighbor");
 
-				tet=tet+ti+" ";
-				perm=perm+gl[0]+gl[1]+gl[2]+gl[3]+" ";
+				tet.append(ti).append(' ');
+				for(k=0;k<4;k++)
+					perm[4*j+k]=gl[k];
+			}
+			tet.append('\n');
+			for(j=0;j<4;j++) {
+				for(k=0;k<4;k++)
+					tet.append(perm[4*j+k]);
+				tet.append(' ');
 			}
+			tet.append('\n').append(TAIL);
 
-			gp.println(tet+"\n"+perm+"\n"+"-1 -1 -1 -1\n"+
-					"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
-					"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
-					"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
-					"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n"+
-			"0.0 0.0\n");
+			gp.println(tet);
 		}
 	}
 
@@ -0,0 +1,281 @@
+package pbj.math.numerical;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+<p>Exact real algebraic numbers, given by their minimal polynomial and an
+isolating interval, i.e., a closed interval with decimal endpoints that
+contains exactly one root of the minimal polynomial. Typical instances are
+dilatations of pseudo-Anosov maps, which are PF-eigenvalues of integer
+matrices (see largestRoot()).</p>
+
+<p>Equality is exact: two numbers are equal iff they have the same minimal
+polynomial and their isolating intervals have a root in common. Hash codes
+only depend on the minimal polynomial. Comparisons look at the isolating
+intervals first; only if these overlap, they are refined, so that sorting
+large collections is cheap unless there are near-ties.</p>
+
+<p>Instances are immutable, except that refinements of the isolating
+interval are remembered. The interval is replaced atomically, so instances
+can be shared among threads.</p>
+@author Peter Brinkmann
+@see IntPolynomial
+ */
+public class AlgebraicNumber implements Comparable<AlgebraicNumber> {
+
+	/** number of decimal places of isolating intervals computed by largestRoot() */
+	public static final int DIGITS=20;
+
+	private final IntPolynomial f;		// minimal polynomial
+	private volatile BigDecimal iv[];	// {lo, hi}
+
+	/**
+Constructs an algebraic number.
+@param IntPolynomial p: irreducible polynomial; it is made primitive with positive leading coefficient
+@param BigDecimal lo: lower end of isolating interval
+@param BigDecimal hi: upper end of isolating interval
+@exception IllegalArgumentException if [lo, hi] can't be shown to contain exactly one root of p by Budan's theorem
+	 */
+	public AlgebraicNumber(IntPolynomial p,BigDecimal lo,BigDecimal hi) {
+		if (p.degree()<1)
+			throw new IllegalArgumentException("constant polynomial");
+		f=p.primitivePart();
+		if ((lo.compareTo(hi)>0) || !isIsolating(lo,hi))
+			throw new IllegalArgumentException("["+lo+", "+hi
+					+"] doesn't isolate a root of "+p);
+		iv=new BigDecimal[] {lo,hi};
+	}
+
+	/* by Budan's theorem, the number of roots in (lo, hi] is at most the
+	   difference of the numbers of sign changes after shifting by lo and hi,
+	   and has the same parity */
+	private boolean isIsolating(BigDecimal lo,BigDecimal hi) {
+		if (lo.compareTo(hi)==0)
+			return f.evaluate(lo).signum()==0;
+		return (f.evaluate(lo).signum()!=0)
+				&& (f.signVariationsAfterShift(lo)
+						-f.signVariationsAfterShift(hi)==1);
+	}
+
+	/**
+<p>Computes the largest real root of a monic polynomial as an algebraic
+number, starting from an approximation. The minimal polynomial is the
+irreducible factor of p that has the root.</p>
+
+<p>As in IntPolynomial.largestRoot(), the modulus of each root of p must be
+at most the largest real root, as is the case for the characteristic
+polynomial of a nonnegative irreducible matrix.</p>
+@param IntPolynomial p: monic polynomial
+@param double approx: approximation of the largest real root
+@return largest real root of p
+	 */
+	public static AlgebraicNumber largestRoot(IntPolynomial p,double approx) {
+		IntPolynomial fac[]=p.factor(),g=null;
+		AlgebraicNumber res;
+		BigDecimal b[];
+		int i,cnt,digits=4;	// Taylor shifts are cheap for short decimals
+
+		if (fac.length==0)
+			throw new ArithmeticException("constant polynomial");
+		while (true) {
+			b=p.largestRoot(approx,digits);
+
+			/* once b is narrow enough, the factor with the largest root is
+			   the only one that has a root above b[0], and Budan's theorem
+			   shows that b isolates it */
+			g=fac[0];
+			cnt=1;
+			if (fac.length>1)
+				for(i=cnt=0;i<fac.length;i++)
+					if (!fac[i].isPositiveAfterShift(b[0])) {
+						g=fac[i];
+						cnt++;
+					}
+			if ((cnt==1) && (g.degree()==1))
+				return new AlgebraicNumber(g,rational(g),rational(g));
+			if ((cnt==1) && (g.signVariationsAfterShift(b[0])==1)
+					&& (g.signVariationsAfterShift(b[1])==0)) {
+				res=new AlgebraicNumber(g,b[0],b[1]);
+				res.refine(DIGITS);
+				return res;
+			}
+			digits*=2;
+		}
+	}
+
+	/* root of a monic linear polynomial */
+	private static BigDecimal rational(IntPolynomial g) {
+		return new BigDecimal(g.getCoefficient(0).negate());
+	}
+
+	/**
+@return minimal polynomial, primitive with positive leading coefficient
+	 */
+	public IntPolynomial getMinimalPolynomial() {
+		return f;
+	}
+
+	/**
+@return degree of this over the rationals
+	 */
+	public int degree() {
+		return f.degree();
+	}
+
+	/**
+@return lower end of the current isolating interval
+	 */
+	public BigDecimal getLowerBound() {
+		return iv[0];
+	}
+
+	/**
+@return upper end of the current isolating interval
+	 */
+	public BigDecimal getUpperBound() {
+		return iv[1];
+	}
+
+	/**
+Refines the isolating interval, if necessary.
+@param int digits: number of decimal places
+@return isolating interval {lo, hi} with hi-lo &lt;= 10^-digits
+	 */
+	public BigDecimal[] bounds(int digits) {
+		return refine(digits).clone();
+	}
+
+	/**
+@return approximate value of this
+	 */
+	public double doubleValue() {
+		BigDecimal b[]=refine(17);
+
+		return b[0].add(b[1]).doubleValue()/2;
+	}
+
+	/* sign of f at t relative to the sign at the lower end; positive if the
+	   root is above t, negative if below, and 0 if t is the root */
+	private int side(BigDecimal t,int s) {
+		return f.evaluate(t).signum()*s;
+	}
+
+	/* number of correct decimal places of an interval */
+	private static int digits(BigDecimal b[]) {
+		BigDecimal w=b[1].subtract(b[0]);
+
+		return (w.signum()==0) ? Integer.MAX_VALUE
+				: w.scale()-w.precision()+1;
+	}
+
+	/* narrows the isolating interval by Newton's method with bisection as a
+	   fallback; each step is certified by exact sign computations */
+	private BigDecimal[] refine(int digits) {
+		BigDecimal b[]=iv,lo=b[0],hi=b[1],x,mid,d,dx,w;
+		BigDecimal eps=BigDecimal.ONE.scaleByPowerOfTen(-digits);
+		BigDecimal two=BigDecimal.valueOf(2);
+		MathContext mc=new MathContext(digits+20);
+		IntPolynomial dp;
+		int s,t,cnt,sc=digits+3;
+
+		if (hi.subtract(lo).compareTo(eps)<=0)
+			return b;
+		s=f.evaluate(lo).signum();	// not a root since lo<hi
+		dp=f.derivative();
+		x=lo.add(hi).divide(two);
+		for(cnt=0;hi.subtract(lo).compareTo(eps)>0;cnt++) {
+			d=dp.evaluate(x,mc);
+			if ((cnt<64) && (d.signum()!=0)) {
+				dx=f.evaluate(x,mc).divide(d,mc);
+				x=x.subtract(dx,mc);
+				w=dx.abs().max(eps.movePointLeft(2));
+
+				/* try a small bracket around the Newton iterate */
+				mid=x.subtract(w).setScale(sc,RoundingMode.FLOOR);
+				if ((mid.compareTo(lo)>0) && (mid.compareTo(hi)<0)) {
+					if (side(mid,s)>0) {
+						lo=mid;
+						mid=x.add(w).setScale(sc,RoundingMode.CEILING);
+						if ((mid.compareTo(hi)<0) && (side(mid,s)<0)) {
+							hi=mid;
+							continue;
+						}
+					}
+					else if (side(mid,s)<0)
+						hi=mid;
+					else {
+						lo=hi=mid;
+						break;
+					}
+				}
+			}
+			mid=lo.add(hi).divide(two)	// bisection
+					.setScale(sc,RoundingMode.HALF_EVEN);
+			t=side(mid,s);
+			if (t==0) {
+				lo=hi=mid;
+				break;
+			}
+			if (t>0)
+				lo=mid;
+			else
+				hi=mid;
+			x=mid;
+		}
+		b=new BigDecimal[] {lo,hi};
+		iv=b;
+		return b;
+	}
+
+	/**
+Compares this to another algebraic number, refining isolating intervals
+as needed.
+@param AlgebraicNumber a: algebraic number
+@return -1, 0, or 1, depending on whether this is less than, equal to, or greater than a
+	 */
+	public int compareTo(AlgebraicNumber a) {
+		BigDecimal u[],v[],lo,hi;
+		int d;
+
+		if (a==this)
+			return 0;
+		while (true) {
+			u=iv;
+			v=a.iv;
+			if (u[1].compareTo(v[0])<0)
+				return -1;
+			if (v[1].compareTo(u[0])<0)
+				return 1;
+			if (f.equals(a.f)) {
+				/* the roots are equal iff the intersection contains a root */
+				lo=u[0].max(v[0]);
+				hi=u[1].min(v[1]);
+				if (f.evaluate(lo).signum()*f.evaluate(hi).signum()<=0)
+					return 0;
+			}
+			d=2*Math.max(DIGITS,Math.min(digits(u),digits(v)));
+			refine(d);
+			a.refine(d);
+		}
+	}
+
+	public boolean equals(Object o) {
+		return (o instanceof AlgebraicNumber)
+				&& f.equals(((AlgebraicNumber) o).f)
+				&& (compareTo((AlgebraicNumber) o)==0);
+	}
+
+	public int hashCode() {
+		return f.hashCode();
+	}
+
+	/**
+@return approximate value and minimal polynomial, e.g., 1.618034 [x^2-x-1]
+	 */
+	public String toString() {
+		return IntMatrix.PFForm.format(doubleValue())+" ["+f+"]";
+	}
+
+}
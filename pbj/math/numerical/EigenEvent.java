@@ -0,0 +1,30 @@
+package pbj.math.numerical;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+Java Flight Recorder event for computations of PF-eigenvalues and
+eigenvectors.
+@author Peter Brinkmann
+@see IntMatrix
+ */
+@Name("pbj.EigenPair")
+@Label("PF Eigenpair")
+@Category({"XTrain", "Numerics"})
+class EigenEvent extends Event {
+
+	@Label("Dimension")
+	int dimension;
+
+	@Label("Nonzero Entries")
+	@Description("Number of nonzero entries of the matrix")
+	int entries;
+
+	@Label("PF-Eigenvalue")
+	double eigenvalue;
+
+}
@@ -1,71 +1,110 @@
 package pbj.math.numerical;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 /**
- * borrowed from http://www.cs.princeton.edu/introcs/97data/FFT.java.html
+ * Fast Fourier transforms and polynomial products. The transforms work in
+ * place on split arrays of real and imaginary parts, iteratively and with a
+ * shared table of twiddle factors, so that no objects are allocated per
+ * butterfly. The methods on arrays of Complex are thin wrappers.
+ *
+ * Originally borrowed from http://www.cs.princeton.edu/introcs/97data/FFT.java.html
  */
 public class FFT {
 
-    // compute the FFT of x[], assuming its length is a power of 2
-    public static Complex[] fft(Complex[] x) {
-        int N = x.length;
+    // below this degree, schoolbook multiplication beats the transforms
+    private static final int CUTOFF = 32;
 
-        // base case
-        if (N == 1) return new Complex[] { x[0] };
-
-        // radix 2 Cooley-Tukey FFT
-        if (N % 2 != 0) { throw new RuntimeException("N is not a power of 2"); }
-
-        // fft of even terms
-        Complex[] even = new Complex[N/2];
-        for (int k = 0; k < N/2; k++) {
-            even[k] = x[2*k];
-        }
-        Complex[] q = fft(even);
+    // twiddle factors exp(-2 pi i k/M) for k < M/2, for the largest size M
+    // requested so far; those of smaller sizes are subsampled
+    private static volatile double[][] twiddles = { { 1 }, { 0 } };
 
-        // fft of odd terms
-        Complex[] odd  = even;  // reuse the array
-        for (int k = 0; k < N/2; k++) {
-            odd[k] = x[2*k + 1];
-        }
-        Complex[] r = fft(odd);
+    // returns a twiddle table for transforms of size N
+    private static double[][] twiddles(int N) {
+        double[][] w = twiddles;
+        int M = 2*w[0].length;
+        if (M >= N) return w;
 
-        // combine
-        Complex[] y = new Complex[N];
+        double[] c = new double[N/2], s = new double[N/2];
         for (int k = 0; k < N/2; k++) {
             double kth = -2 * k * Math.PI / N;
-            Complex wk = new Complex(Math.cos(kth), Math.sin(kth));
-            y[k]       = q[k].plus(wk.times(r[k]));
-            y[k + N/2] = q[k].minus(wk.times(r[k]));
+            c[k] = Math.cos(kth);
+            s[k] = Math.sin(kth);
         }
-        return y;
+        w = new double[][] { c, s };
+        twiddles = w;
+        return w;
     }
 
+    // in-place iterative radix-2 FFT of (re[], im[]), assuming that the length
+    // is a power of 2; the inverse transform is not scaled
+    private static void transform(double[] re, double[] im, boolean inverse) {
+        int N = re.length;
+        if (im.length != N) { throw new RuntimeException("Dimensions don't agree"); }
+        if ((N & (N-1)) != 0) { throw new RuntimeException("N is not a power of 2"); }
+        if (N == 1) return;
 
-    // compute the inverse FFT of x[], assuming its length is a power of 2
-    public static Complex[] ifft(Complex[] x) {
-        int N = x.length;
-        Complex[] y = new Complex[N];
-
-        // take conjugate
-        for (int i = 0; i < N; i++) {
-            y[i] = x[i].conjugate();
+        // bit reversal permutation
+        for (int i = 1, j = 0; i < N; i++) {
+            int bit = N >> 1;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j |= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
         }
 
-        // compute forward FFT
-        y = fft(y);
-
-        // take conjugate again
-        for (int i = 0; i < N; i++) {
-            y[i] = y[i].conjugate();
+        // butterflies
+        double[][] w = twiddles(N);
+        double[] c = w[0], s = w[1];
+        int M = 2*c.length;
+        double sign = inverse ? -1 : 1;
+        for (int len = 2; len <= N; len <<= 1) {
+            int half = len/2, step = M/len;
+            for (int i = 0; i < N; i += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = c[k*step], wi = sign*s[k*step];
+                    int a = i+k, b = a+half;
+                    double tr = wr*re[b] - wi*im[b];
+                    double ti = wr*im[b] + wi*re[b];
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
         }
+    }
+
+    // compute the FFT of (re[], im[]) in place, assuming its length is a power of 2
+    public static void fft(double[] re, double[] im) {
+        transform(re, im, false);
+    }
 
-        // divide by N
+    // compute the inverse FFT of (re[], im[]) in place, assuming its length is a power of 2
+    public static void ifft(double[] re, double[] im) {
+        int N = re.length;
+        transform(re, im, true);
         for (int i = 0; i < N; i++) {
-            y[i] = y[i].times(1.0 / N);
+            re[i] /= N;
+            im[i] /= N;
         }
+    }
 
-        return y;
+    // compute the FFT of x[], assuming its length is a power of 2
+    public static Complex[] fft(Complex[] x) {
+        double[] re = re(x), im = im(x);
+        fft(re, im);
+        return complex(re, im);
+    }
 
+    // compute the inverse FFT of x[], assuming its length is a power of 2
+    public static Complex[] ifft(Complex[] x) {
+        double[] re = re(x), im = im(x);
+        ifft(re, im);
+        return complex(re, im);
     }
 
     // compute the circular convolution of x and y
@@ -76,22 +115,24 @@ public class FFT {
         if (x.length != y.length) { throw new RuntimeException("Dimensions don't agree"); }
 
         int N = x.length;
+        double[] ar = re(x), ai = im(x), br = re(y), bi = im(y);
 
         // compute FFT of each sequence
-        Complex[] a = fft(x);
-        Complex[] b = fft(y);
+        fft(ar, ai);
+        fft(br, bi);
 
         // point-wise multiply
-        Complex[] c = new Complex[N];
         for (int i = 0; i < N; i++) {
-            c[i] = a[i].times(b[i]);
+            double t = ar[i]*br[i] - ai[i]*bi[i];
+            ai[i] = ar[i]*bi[i] + ai[i]*br[i];
+            ar[i] = t;
         }
 
         // compute inverse FFT
-        return ifft(c);
+        ifft(ar, ai);
+        return complex(ar, ai);
     }
 
-
     // compute the linear convolution of x and y
     public static Complex[] convolve(Complex[] x, Complex[] y) {
         Complex ZERO = new Complex(0, 0);
@@ -106,4 +147,120 @@ public class FFT {
 
         return cconvolve(a, b);
     }
+
+    // compute the linear convolution of the real sequences x and y, i.e., the
+    // coefficients of the product of two polynomials, of length x.length+y.length-1
+    public static double[] convolve(double[] x, double[] y) {
+        int L = Math.max(x.length + y.length - 1, 0);
+        double[] c = new double[L];
+
+        if (Math.min(x.length, y.length) <= CUTOFF) {
+            for (int i = 0; i < x.length; i++)
+                for (int j = 0; j < y.length; j++)
+                    c[i+j] += x[i]*y[j];
+            return c;
+        }
+
+        // transform x + iy at once; since x and y are real, their transforms
+        // are X[k] = (Z[k] + conj(Z[N-k]))/2 and Y[k] = (Z[k] - conj(Z[N-k]))/2i
+        int N = Integer.highestOneBit(L-1) << 1;
+        double[] re = new double[N], im = new double[N];
+        System.arraycopy(x, 0, re, 0, x.length);
+        System.arraycopy(y, 0, im, 0, y.length);
+        fft(re, im);
+
+        double[] pr = new double[N], pi = new double[N];
+        for (int k = 0; k < N; k++) {
+            int l = (N-k) & (N-1);
+            double xr = (re[k] + re[l])/2, xi = (im[k] - im[l])/2;
+            double yr = (im[k] + im[l])/2, yi = (re[l] - re[k])/2;
+            pr[k] = xr*yr - xi*yi;
+            pi[k] = xr*yi + xi*yr;
+        }
+        ifft(pr, pi);
+        System.arraycopy(pr, 0, c, 0, L);
+        return c;
+    }
+
+    // compute the product of the polynomials f[0], ..., f[f.length-1], given by
+    // their coefficients from the constant term up, in a balanced product tree
+    public static double[] multiply(double[][] f) {
+        if (f.length == 0) return new double[] { 1 };
+
+        double[][] level = f;
+        while (level.length > 1) {
+            double[][] next = new double[(level.length+1)/2][];
+            for (int i = 0; i < level.length/2; i++) {
+                next[i] = convolve(level[2*i], level[2*i+1]);
+            }
+            if (level.length % 2 != 0) next[next.length-1] = level[level.length-1];
+            level = next;
+        }
+        return level[0];
+    }
+
+    // compute the monic real polynomial with roots re[i] + i im[i], from the
+    // constant term up; nonreal roots must come in adjacent conjugate pairs, as
+    // in Jama.EigenvalueDecomposition
+    public static double[] fromRoots(double[] re, double[] im) {
+        int N = re.length, cnt = 0;
+        double[][] f = new double[N][];
+
+        for (int i = 0; i < N; i++) {
+            if (im[i] == 0) {
+                f[cnt++] = new double[] { -re[i], 1 };
+            }
+            else if (i+1 < N && re[i+1] == re[i] && im[i+1] == -im[i]) {
+                f[cnt++] = new double[] { re[i]*re[i] + im[i]*im[i], -2*re[i], 1 };
+                i++;
+            }
+            else {
+                throw new IllegalArgumentException("root without conjugate: " + re[i] + " + " + im[i] + "i");
+            }
+        }
+
+        // sort the factors by the arguments of their roots and deal them out in
+        // bit reversed order, so that the roots of each subtree are spread
+        // around the circle; products of clustered roots have huge coefficients
+        // and lose all precision to cancellation
+        double[][] arg = new double[cnt][];
+        for (int i = 0; i < cnt; i++) {
+            double r = -f[i][f[i].length-2]/(f[i].length-1);
+            double y = (f[i].length == 2) ? 0 : Math.sqrt(Math.max(f[i][0] - r*r, 0));
+            arg[i] = new double[] { Math.atan2(y, r), i };
+        }
+        Arrays.sort(arg, new Comparator<double[]>() {
+            public int compare(double[] u, double[] v) {
+                return Double.compare(u[0], v[0]);
+            }
+        });
+
+        double[][] g = new double[cnt][];
+        int bits = Integer.numberOfTrailingZeros(Integer.highestOneBit(Math.max(cnt-1, 1)) << 1);
+        for (int i = 0, k = 0; k < cnt; i++) {
+            int j = Integer.reverse(i) >>> (32-bits);
+            if (j < cnt) g[k++] = f[(int) arg[j][1]];
+        }
+        double[] p = multiply(g);
+        p[p.length-1] = 1;
+        return p;
+    }
+
+    private static double[] re(Complex[] x) {
+        double[] re = new double[x.length];
+        for (int i = 0; i < x.length; i++) re[i] = x[i].re();
+        return re;
+    }
+
+    private static double[] im(Complex[] x) {
+        double[] im = new double[x.length];
+        for (int i = 0; i < x.length; i++) im[i] = x[i].im();
+        return im;
+    }
+
+    private static Complex[] complex(double[] re, double[] im) {
+        Complex[] y = new Complex[re.length];
+        for (int i = 0; i < re.length; i++) y[i] = new Complex(re[i], im[i]);
+        return y;
+    }
 }
@@ -0,0 +1,497 @@
+package pbj.math.numerical;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+<p>Factorization of monic squarefree integer polynomials by the algorithm of
+Zassenhaus: factorization modulo a small prime (distinct-degree factorization,
+followed by the equal-degree factorization of Cantor and Zassenhaus),
+quadratic Hensel lifting, and recombination of the lifted factors by trial
+division.</p>
+
+<p>The distinct-degree factorizations modulo several primes are computed
+first. Each of them restricts the possible degrees of factors over the
+integers; in the common case that no proper factor is possible, the
+polynomial is irreducible and no lifting is necessary.</p>
+
+<p>Polynomials modulo a prime q are arrays of type long[], lowest degree
+first, without leading zeros. Since q&lt;2^31, products of two coefficients
+fit into a long.</p>
+@author Peter Brinkmann
+@see IntPolynomial#factor
+ */
+class Factorization {
+
+	private static final int PRIMES=5;		// primes for the degree sieve
+	private static final int MAXTRIES=100;	// primes to try at most
+
+	/**
+Factors a monic squarefree polynomial.
+@param IntPolynomial f: monic squarefree polynomial of positive degree
+@return the monic irreducible factors of f, or null if f is not squarefree
+modulo any of the primes tried (e.g., because it isn't squarefree at all)
+	 */
+	static IntPolynomial[] factor(IntPolynomial f) {
+		int n=f.degree();
+		boolean deg[]=null,d2[];
+		long fq[],dd[][],best[][]=null;
+		long q,bq=0;
+		int i,j,k,l,cnt,good=0,fewest=n+1;
+
+		if (n<=1)
+			return new IntPolynomial[] {f};
+		for(q=3,i=0;(i<MAXTRIES) && (good<PRIMES);q=nextPrime(q),i++) {
+			fq=reduce(f,q);
+			if (gcd(fq,derivative(fq,q),q).length>1)
+				continue;	// not squarefree modulo q
+			good++;
+			dd=distinctDegree(fq,q);
+
+			/* degrees of products of factors modulo q */
+			d2=new boolean[n+1];
+			d2[0]=true;
+			cnt=0;
+			for(j=1;j<=n;j++)
+				if (dd[j]!=null)
+					for(k=(dd[j].length-1)/j;k>0;k--) {
+						cnt++;
+						for(l=n;l>=j;l--)
+							d2[l]|=d2[l-j];
+					}
+			if (deg==null)
+				deg=d2;
+			else
+				for(j=0;j<=n;j++)
+					deg[j]&=d2[j];
+			if (cnt<fewest) {
+				fewest=cnt;
+				best=dd;
+				bq=q;
+			}
+			for(j=1;(j<n) && !deg[j];j++)
+				;	// look for a possible proper factor
+			if (j==n)
+				return new IntPolynomial[] {f};
+		}
+		if (good==0)
+			return null;
+
+		return recombine(f,lift(f,split(best,bq),bq),bq);
+	}
+
+	/* the smallest odd prime larger than q */
+	private static long nextPrime(long q) {
+		return BigInteger.valueOf(q).nextProbablePrime().longValue();
+	}
+
+	/* reduces f modulo q */
+	private static long[] reduce(IntPolynomial f,long q) {
+		BigInteger m=BigInteger.valueOf(q);
+		long a[]=new long[f.degree()+1];
+		int i;
+
+		for(i=0;i<a.length;i++)
+			a[i]=f.getCoefficient(i).mod(m).longValue();
+		return trim(a);
+	}
+
+	private static long[] trim(long a[]) {
+		int d=a.length-1;
+
+		while ((d>=0) && (a[d]==0))
+			d--;
+		return (d==a.length-1) ? a : Arrays.copyOf(a,d+1);
+	}
+
+	private static long inverse(long a,long q) {
+		return BigInteger.valueOf(a).modInverse(BigInteger.valueOf(q))
+				.longValue();
+	}
+
+	private static long[] derivative(long a[],long q) {
+		long res[]=new long[Math.max(a.length-1,0)];
+		int i;
+
+		for(i=1;i<a.length;i++)
+			res[i-1]=a[i]*i%q;
+		return trim(res);
+	}
+
+	private static long[] sub(long a[],long b[],long q) {
+		long res[]=Arrays.copyOf(a,Math.max(a.length,b.length));
+		int i;
+
+		for(i=0;i<b.length;i++)
+			res[i]=(res[i]+q-b[i])%q;
+		return trim(res);
+	}
+
+	private static long[] mul(long a[],long b[],long q) {
+		long res[];
+		int i,j;
+
+		if ((a.length==0) || (b.length==0))
+			return a.length==0 ? a : b;
+		res=new long[a.length+b.length-1];
+		for(i=0;i<a.length;i++)
+			if (a[i]!=0)
+				for(j=0;j<b.length;j++)
+					res[i+j]=(res[i+j]+a[i]*b[j])%q;
+		return res;
+	}
+
+	private static long[] scale(long a[],long s,long q) {
+		long res[]=new long[a.length];
+		int i;
+
+		for(i=0;i<a.length;i++)
+			res[i]=a[i]*s%q;
+		return trim(res);
+	}
+
+	/* remainder of a modulo b; if quo isn't null, it receives the quotient
+	   and must have length at least a.length-b.length+1 */
+	private static long[] rem(long a[],long b[],long q,long quo[]) {
+		long r[]=a.clone();
+		long inv=inverse(b[b.length-1],q),t;
+		int i,j,db=b.length-1;
+
+		for(i=r.length-1;i>=db;i--) {
+			t=r[i]*inv%q;
+			if (quo!=null)
+				quo[i-db]=t;
+			if (t!=0)
+				for(j=0;j<=db;j++)
+					r[i-db+j]=(r[i-db+j]+(q-t)*b[j])%q;
+		}
+		return trim(Arrays.copyOf(r,Math.min(r.length,db)));
+	}
+
+	private static long[] div(long a[],long b[],long q) {
+		long quo[]=new long[a.length-b.length+1];
+
+		rem(a,b,q,quo);
+		return trim(quo);
+	}
+
+	/* monic gcd */
+	private static long[] gcd(long a[],long b[],long q) {
+		long t[];
+
+		while (b.length>0) {
+			t=rem(a,b,q,null);
+			a=b;
+			b=t;
+		}
+		return (a.length==0) ? a : scale(a,inverse(a[a.length-1],q),q);
+	}
+
+	/* returns {s,t} with s*a+t*b=1 modulo q, deg s<deg b, deg t<deg a, for
+	   coprime a and b */
+	private static long[][] bezout(long a[],long b[],long q) {
+		long r0[]=a,r1[]=b,s0[]={1},s1[]={},t0[]={},t1[]={1};
+		long quo[],h[];
+		long inv;
+
+		while (r1.length>0) {
+			quo=new long[Math.max(r0.length-r1.length+1,0)];
+			h=rem(r0,r1,q,quo);
+			r0=r1;
+			r1=h;
+			quo=trim(quo);
+			h=sub(s0,mul(quo,s1,q),q);
+			s0=s1;
+			s1=h;
+			h=sub(t0,mul(quo,t1,q),q);
+			t0=t1;
+			t1=h;
+		}
+		inv=inverse(r0[0],q);
+		return new long[][] {scale(s0,inv,q),scale(t0,inv,q)};
+	}
+
+	/* a^e modulo m */
+	private static long[] power(long a[],BigInteger e,long m[],long q) {
+		long res[]={1};
+		int i;
+
+		a=rem(a,m,q,null);
+		for(i=e.bitLength()-1;i>=0;i--) {
+			res=rem(mul(res,res,q),m,q,null);
+			if (e.testBit(i))
+				res=rem(mul(res,a,q),m,q,null);
+		}
+		return res;
+	}
+
+	/* distinct-degree factorization of a monic squarefree polynomial modulo
+	   q; res[d] is the product of its irreducible factors of degree d, or null
+	   if there are none */
+	private static long[][] distinctDegree(long f[],long q) {
+		long res[][]=new long[f.length][];
+		long x[]={0,1},h[]=x,g[];
+		BigInteger bq=BigInteger.valueOf(q);
+		int d;
+
+		for(d=1;2*d<=f.length-1;d++) {
+			h=power(h,bq,f,q);
+			g=gcd(f,sub(h,x,q),q);
+			if (g.length>1) {
+				res[d]=g;
+				f=div(f,g,q);
+				h=rem(h,f,q,null);
+			}
+		}
+		if (f.length>1)
+			res[f.length-1]=f;
+		return res;
+	}
+
+	/* splits the products of the distinct-degree factorization into
+	   irreducible factors */
+	private static List<long[]> split(long dd[][],long q) {
+		List<long[]> res=new ArrayList<long[]>();
+		Random rnd=new Random(q);	// reproducible results
+		int d;
+
+		for(d=1;d<dd.length;d++)
+			if (dd[d]!=null)
+				equalDegree(dd[d],d,q,rnd,res);
+		return res;
+	}
+
+	/* equal-degree factorization of Cantor and Zassenhaus */
+	private static void equalDegree(long g[],int d,long q,Random rnd,
+			List<long[]> res) {
+		BigInteger e;
+		long a[],b[];
+		int i;
+
+		if (g.length-1==d) {
+			res.add(g);
+			return;
+		}
+		e=BigInteger.valueOf(q).pow(d).shiftRight(1);	// (q^d-1)/2
+		while (true) {
+			a=new long[g.length-1];
+			for(i=0;i<a.length;i++)
+				a[i]=(rnd.nextLong()>>>1)%q;
+			a=trim(a);
+			if (a.length<2)
+				continue;
+			b=gcd(g,sub(power(a,e,g,q),new long[] {1},q),q);
+			if ((b.length>1) && (b.length<g.length)) {
+				equalDegree(b,d,q,rnd,res);
+				equalDegree(div(g,b,q),d,q,rnd,res);
+				return;
+			}
+		}
+	}
+
+	/* reduces a modulo m, without leading zeros */
+	private static BigInteger[] mod(BigInteger a[],BigInteger m) {
+		BigInteger res[]=new BigInteger[a.length];
+		int i,d;
+
+		for(i=0;i<a.length;i++)
+			res[i]=a[i].mod(m);
+		for(d=res.length-1;(d>=0) && (res[d].signum()==0);d--)
+			;	// strip leading zeros
+		return Arrays.copyOf(res,d+1);
+	}
+
+	private static BigInteger[] big(long a[]) {
+		BigInteger res[]=new BigInteger[a.length];
+		int i;
+
+		for(i=0;i<a.length;i++)
+			res[i]=BigInteger.valueOf(a[i]);
+		return res;
+	}
+
+	private static BigInteger[] add(BigInteger a[],BigInteger b[],
+			BigInteger m) {
+		BigInteger res[]=new BigInteger[Math.max(a.length,b.length)];
+		int i;
+
+		for(i=0;i<res.length;i++)
+			res[i]=(i<a.length) ? ((i<b.length) ? a[i].add(b[i]) : a[i])
+					: b[i];
+		return mod(res,m);
+	}
+
+	private static BigInteger[] sub(BigInteger a[],BigInteger b[],
+			BigInteger m) {
+		BigInteger res[]=new BigInteger[Math.max(a.length,b.length)];
+		int i;
+
+		for(i=0;i<res.length;i++)
+			res[i]=(i<a.length) ? ((i<b.length) ? a[i].subtract(b[i]) : a[i])
+					: b[i].negate();
+		return mod(res,m);
+	}
+
+	private static BigInteger[] mul(BigInteger a[],BigInteger b[],
+			BigInteger m) {
+		BigInteger res[];
+		int i,j;
+
+		if ((a.length==0) || (b.length==0))
+			return new BigInteger[0];
+		res=new BigInteger[a.length+b.length-1];
+		Arrays.fill(res,BigInteger.ZERO);
+		for(i=0;i<a.length;i++)
+			if (a[i].signum()!=0)
+				for(j=0;j<b.length;j++)
+					res[i+j]=res[i+j].add(a[i].multiply(b[j]));
+		return mod(res,m);
+	}
+
+	/* returns {quotient, remainder} of a divided by the monic polynomial b
+	   modulo m */
+	private static BigInteger[][] divide(BigInteger a[],BigInteger b[],
+			BigInteger m) {
+		BigInteger r[]=a.clone();
+		BigInteger quo[]=new BigInteger[Math.max(a.length-b.length+1,0)];
+		BigInteger t;
+		int i,j,db=b.length-1;
+
+		for(i=r.length-1;i>=db;i--) {
+			t=r[i].mod(m);
+			quo[i-db]=t;
+			if (t.signum()!=0)
+				for(j=0;j<=db;j++)
+					r[i-db+j]=r[i-db+j].subtract(t.multiply(b[j]));
+		}
+		return new BigInteger[][] {mod(quo,m),
+				mod(Arrays.copyOf(r,Math.min(r.length,db)),m)};
+	}
+
+	/* one step of quadratic Hensel lifting (von zur Gathen and Gerhard,
+	   Algorithm 15.10): given f=g*h and s*g+t*h=1 modulo m, with g and h
+	   monic, returns {g,h,s,t} with the same properties modulo mm=m^2 */
+	private static BigInteger[][] liftStep(BigInteger f[],BigInteger g[],
+			BigInteger h[],BigInteger s[],BigInteger t[],BigInteger mm) {
+		BigInteger e[],qr[][],b[];
+
+		e=sub(f,mul(g,h,mm),mm);
+		qr=divide(mul(s,e,mm),h,mm);
+		g=add(g,add(mul(t,e,mm),mul(qr[0],g,mm),mm),mm);
+		h=add(h,qr[1],mm);
+		b=sub(add(mul(s,g,mm),mul(t,h,mm),mm),new BigInteger[] {BigInteger.ONE},mm);
+		qr=divide(mul(s,b,mm),h,mm);
+		s=sub(s,qr[1],mm);
+		t=sub(sub(t,mul(t,b,mm),mm),mul(qr[0],g,mm),mm);
+		return new BigInteger[][] {g,h,s,t};
+	}
+
+	/* lifts the factorization of f modulo q to a modulus that is large enough
+	   for recombination, i.e., larger than twice the Mignotte bound for the
+	   coefficients of factors of f. The modulus is the last entry of the
+	   result. */
+	private static List<BigInteger[]> lift(IntPolynomial f,List<long[]> u,
+			long q) {
+		List<BigInteger[]> res=new ArrayList<BigInteger[]>();
+		BigInteger bound=BigInteger.ZERO,m,mm,cur[],l[][];
+		long h[],st[][];
+		int i,j,steps=0;
+
+		for(i=0;i<=f.degree();i++)
+			bound=bound.add(f.getCoefficient(i).pow(2));
+		bound=bound.sqrt().add(BigInteger.ONE).shiftLeft(f.degree()+1);
+		for(m=BigInteger.valueOf(q);m.compareTo(bound)<=0;m=m.multiply(m))
+			steps++;
+
+		cur=new BigInteger[f.degree()+1];
+		for(i=0;i<cur.length;i++)
+			cur[i]=f.getCoefficient(i).mod(m);
+		for(i=0;i<u.size()-1;i++) {
+			h=new long[] {1};
+			for(j=i+1;j<u.size();j++)
+				h=mul(h,u.get(j),q);
+			st=bezout(u.get(i),h,q);
+			l=new BigInteger[][] {big(u.get(i)),big(h),big(st[0]),big(st[1])};
+			mm=BigInteger.valueOf(q);
+			for(j=0;j<steps;j++) {
+				mm=mm.multiply(mm);
+				l=liftStep(mod(cur,mm),l[0],l[1],l[2],l[3],mm);
+			}
+			res.add(l[0]);
+			cur=l[1];
+		}
+		res.add(cur);
+		res.add(new BigInteger[] {m});
+		return res;
+	}
+
+	/* finds the factors over the integers among the products of the lifted
+	   factors, trying products of fewer factors first */
+	private static IntPolynomial[] recombine(IntPolynomial f,
+			List<BigInteger[]> v,long q) {
+		List<IntPolynomial> res=new ArrayList<IntPolynomial>();
+		BigInteger m=v.remove(v.size()-1)[0],half=m.shiftRight(1);
+		BigInteger c0,ct,p[];
+		IntPolynomial g,quo;
+		int idx[];
+		int i,k=1;
+		boolean found;
+
+		while (2*k<=v.size()) {
+			found=false;
+			idx=new int[k];
+			for(i=0;i<k;i++)
+				idx[i]=i;
+			c0=f.getCoefficient(0);
+			do {
+				/* cheap test: the constant term has to divide that of f */
+				ct=BigInteger.ONE;
+				for(i=0;i<k;i++)
+					ct=ct.multiply(v.get(idx[i])[0]).mod(m);
+				if (ct.compareTo(half)>0)
+					ct=ct.subtract(m);
+				if ((c0.signum()!=0) && ((ct.signum()==0)
+						|| (c0.mod(ct.abs()).signum()!=0)))
+					continue;
+
+				p=new BigInteger[] {BigInteger.ONE};
+				for(i=0;i<k;i++)
+					p=mul(p,v.get(idx[i]),m);
+				for(i=0;i<p.length;i++)
+					if (p[i].compareTo(half)>0)
+						p[i]=p[i].subtract(m);
+				g=new IntPolynomial(p);
+				if ((quo=f.divide(g))!=null) {
+					res.add(g);
+					f=quo;
+					for(i=k-1;i>=0;i--)
+						v.remove(idx[i]);
+					found=true;
+					break;
+				}
+			} while (nextSubset(idx,v.size()));
+			if (!found)
+				k++;
+		}
+		res.add(f);
+		return res.toArray(new IntPolynomial[res.size()]);
+	}
+
+	/* steps to the next k-subset of {0, ..., n-1} in lexicographic order */
+	private static boolean nextSubset(int idx[],int n) {
+		int i=idx.length-1,j;
+
+		while ((i>=0) && (idx[i]==n-idx.length+i))
+			i--;
+		if (i<0)
+			return false;
+		idx[i]++;
+		for(j=i+1;j<idx.length;j++)
+			idx[j]=idx[j-1]+1;
+		return true;
+	}
+
+}
@@ -1,8 +1,11 @@
 package pbj.math.numerical;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.DecimalFormat;
 
 import Jama.EigenvalueDecomposition;
+import Jama.LUDecomposition;
 import Jama.Matrix;
 
 /**
@@ -122,43 +125,43 @@ Constructs a matrix identical to b.
 	}
 
 	/**
-Multiplies a and b and returns the result.
+Multiplies a and b exactly (see LongMatrix) and returns the result.
 @param IntMatrix a,b: factors
 @return product of a and b
+@exception ArithmeticException if an entry of the product exceeds 2^53, so that it can't be stored exactly
 	 */
 	public static IntMatrix mult(IntMatrix a, IntMatrix b) {
-		IntMatrix target;
-		int i,j,k;
 		if (a.n!=b.n)
 			throw new RuntimeException("different dimensions");
 
-		target=new IntMatrix(a.n);
-
-		for(i=0;i<a.n;i++)
-			for(j=0;j<a.n;j++)
-				for(k=0;k<a.n;k++)
-					target.a[i][j]+=a.a[i][k]*b.a[k][j];
-
-		return target;
+		return new LongMatrix(a).multiply(new LongMatrix(b)).toIntMatrix();
 	}
 
 	/**
-Adds a and b and returns the result.
+Adds a and b exactly (see LongMatrix) and returns the result.
 @param IntMatrix a,b: summands
 @return sum of a and b
+@exception ArithmeticException if an entry of the sum exceeds 2^53, so that it can't be stored exactly
 	 */
 	public static IntMatrix add(IntMatrix a, IntMatrix b) {
-		IntMatrix target;
-		int i,j;
+		LongMatrix target;
+
 		if (a.n!=b.n)
 			throw new RuntimeException("different dimensions");
 
-		target=new IntMatrix(a.n);
+		target=new LongMatrix(a);
+		target.add(new LongMatrix(b));
+		return target.toIntMatrix();
+	}
 
-		for(i=0;i<a.n;i++)
-			for(j=0;j<a.n;j++)
-				target.a[i][j]=a.a[i][j]+b.a[i][j];
-		return target;
+	/**
+Computes a power of this exactly, by repeated squaring. The entries of the
+result may be arbitrarily large.
+@param int k: exponent, k&gt;=0
+@return k-th power of this
+	 */
+	public LongMatrix power(int k) {
+		return new LongMatrix(this).power(k);
 	}
 
 	/**
@@ -178,15 +181,56 @@ Adds a and b and returns the result.
 @return true iff 'this' is irreducible.
 	 */
 	public boolean isIrreducible() {
-		IntMatrix iter=new IntMatrix(this); // for powers of this
-		IntMatrix accu=new IntMatrix(this); // accumulates sum of powers of this
+		int i,j;
+
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++)
+				if (a[i][j]<0)	// entries might cancel
+					return isIrreducibleByPowers();
+
+		/* a nonnegative matrix is irreducible iff its graph is strongly
+		   connected, i.e., iff every index can be reached from 0 and 0 can
+		   be reached from every index. */
+		if (n==1)
+			return a[0][0]!=0;
+		return (n==0) || (reachable(false) && reachable(true));
+	}
+
+	/* returns true iff every index can be reached from 0 in the graph of
+	   this (or of its transpose) */
+	private boolean reachable(boolean transpose) {
+		boolean seen[]=new boolean[n];
+		int stack[]=new int[n];
+		int i,j,top,cnt;
+
+		seen[0]=true;
+		stack[0]=0;
+		top=cnt=1;
+		while (top>0) {
+			i=stack[--top];
+			for(j=0;j<n;j++)
+				if ((!seen[j]) && ((transpose ? a[j][i] : a[i][j])!=0)) {
+					seen[j]=true;
+					stack[top++]=j;
+					cnt++;
+				}
+		}
+		return cnt==n;
+	}
+
+	/* checks whether all entries of the sum of the powers of this are
+	   nonzero */
+	private boolean isIrreducibleByPowers() {
+		LongMatrix m=new LongMatrix(this);
+		LongMatrix iter=m; // for powers of this
+		LongMatrix accu=new LongMatrix(m); // accumulates sum of powers of this
 		int cnt,old; // counters of nonzero entries in accu
 		old=cnt=0;
-		while (old!=(cnt=accu.countMatrixEntries()))
+		while (old!=(cnt=accu.countNonzero()))
 			// has accu gained nonzero entries?
 		{	old=cnt;
-		iter=IntMatrix.mult(iter, this);
-		accu=IntMatrix.add(accu, iter);
+		iter=iter.multiply(m);
+		accu.add(iter);
 		}
 
 		return (cnt==n*n); // return true iff all entries of accu are nonzero
@@ -196,37 +240,95 @@ Adds a and b and returns the result.
 	/**
 Computes the PF-eigenvalue and the PF-eigenvector of an irreducible matrix.
 In order to keep the computation as simple as possible, exception handling
-for reducible maps has been omitted.
-@param double v[]: array of size n that contains a PF-eigenvector
+for reducible maps has been omitted. The eigenvalue comes from a
+decomposition without eigenvectors (see eigenValue()); the eigenvector is
+then found by inverse iteration, which only takes one LU decomposition.
+@param double v[]: array of size n that receives a PF-eigenvector, normalized so that its largest entry is 1
 @return PF-eigenvalue of this
 	 */
 	public double eigenPair(double v[]) {
+		EigenEvent event = new EigenEvent();
+		event.begin();
+
+		Matrix m = getMatrix();
+		double q = eigenValue(m);
+		eigenVector(m, q, v);
+
+		commit(event, q);
+		return q;
+	}
+
+	/**
+@return Perron-Frobenius eigenvalues of an irreducible matrix.
+	 */
+	public double eigenValue() {
+		EigenEvent event = new EigenEvent();
+		event.begin();
+
+		double q = eigenValue(getMatrix());
+
+		commit(event, q);
+		return q;
+	}
+
+	/* largest real eigenvalue, from a decomposition without eigenvectors */
+	private double eigenValue(Matrix m) {
 		if (!isIrreducible())
 			throw new RuntimeException("reducible matrix");
 
-		reducedCharPoly();
-		
-		Matrix m = getMatrix();
-		EigenvalueDecomposition e = m.eig();
-		Matrix ed = e.getD();
-		Matrix ev = e.getV();
-		
-		int i0 = 0;
+		EigenvalueDecomposition e = new EigenvalueDecomposition(m, false);
+		double re[] = e.getRealEigenvalues();
 		double q = 0;
-		double sig = 1;
-		
-		for(int i = 0; i<n; i++) {
-			if (ed.get(i, i)>q) {
-				q = ed.get(i, i);
-				i0 = i;
-				sig = ev.get(i, i)>0 ? 1 : -1;
+
+		for(int i = 0; i<n; i++)
+			if (re[i]>q)
+				q = re[i];
+		return q;
+	}
+
+	/* computes the eigenvector for the eigenvalue q by inverse iteration
+	   with a slightly perturbed shift, starting from a positive vector */
+	private void eigenVector(Matrix m, double q, double v[]) {
+		double shift = q+Math.max(Math.abs(q), 1)*1e-10;
+		LUDecomposition lu = m.minus(Matrix.identity(n, n).times(shift)).lu();
+		Matrix x = new Matrix(n, 1, 1.0);
+		double max = 0;
+		int i, k;
+
+		if (lu.isNonsingular())
+			for(k = 0; k<3; k++) {
+				x = lu.solve(x);
+				max = x.normInf();
+				x.timesEquals(1/max);
 			}
+		if (!lu.isNonsingular() || Double.isNaN(max) || Double.isInfinite(max)) {
+			/* the shift is an eigenvalue; use the full decomposition */
+			EigenvalueDecomposition e = m.eig();
+			double re[] = e.getRealEigenvalues();
+			for(i = k = 0; i<n; i++)
+				if (re[i]>re[k])
+					k = i;
+			x = e.getV().getMatrix(0, n-1, k, k);
+			x.timesEquals(1/x.normInf());
 		}
-		
-		for(int i = 0; i<n; i++) {
-			v[i] = ev.get(i, i0)*sig;
+
+		/* make the largest entry 1 */
+		for(i = k = 0; i<n; i++)
+			if (Math.abs(x.get(i, 0))>Math.abs(x.get(k, 0)))
+				k = i;
+		max = x.get(k, 0);
+		for(i = 0; i<n; i++)
+			v[i] = x.get(i, 0)/max;
+	}
+
+	private void commit(EigenEvent event, double q) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.dimension = n;
+			event.entries = countMatrixEntries();
+			event.eigenvalue = q;
+			event.commit();
 		}
-		return q;
 	}
 
 	private Matrix getMatrix() {
@@ -238,46 +340,216 @@ for reducible maps has been omitted.
 		Matrix m = new Matrix(b);
 		return m;
 	}
-	
+
 	/**
-@return Perron-Frobenius eigenvalues of an irreducible matrix.
+Computes the characteristic polynomial det(x-this) exactly, using
+Berkowitz's division free algorithm. The computation is carried out in
+long arithmetic and repeated with BigIntegers if it overflows.
+@return characteristic polynomial of this
 	 */
-	public double eigenValue() {
-		return eigenPair(new double[n]);
+	public IntPolynomial charPoly() {
+		long b[][]=new long[n][n];
+		int i,j;
+
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++) {
+				if (a[i][j]!=Math.rint(a[i][j])
+						|| (Math.abs(a[i][j])>=Long.MAX_VALUE))
+					throw new ArithmeticException("not an integer: "+a[i][j]);
+				b[i][j]=(long) a[i][j];
+			}
+		try {
+			return new IntPolynomial(berkowitz(b));
+		} catch (ArithmeticException e) {
+			return bigBerkowitz(b);
+		}
 	}
 
-	public long[] reducedCharPoly() {
-		final double eps = 1e-8;
-		EigenvalueDecomposition ed = new EigenvalueDecomposition(getMatrix());
-		double[] re = ed.getRealEigenvalues(), im = ed.getImagEigenvalues();
-		int m = 1;
-		while (m<n+1) m *= 2;
-		Complex[] p = new Complex[m];
-		Complex[] q = new Complex[m];
-		for(int i=0; i<m; i++) {
-			p[i] = q[i] = new Complex(0, 0);
+	/* Berkowitz's algorithm: if A=(a R; C M), then the characteristic
+	   polynomial of A is T times the characteristic polynomial of M, where T
+	   is the lower triangular Toeplitz matrix with first column
+	   1, -a, -RC, -RMC, -RM^2C, ...
+	   We start with the empty block in the lower right corner and work our
+	   way up. Coefficients are listed from the highest degree down. Since
+	   transition matrices are sparse, M is multiplied row by row, using the
+	   nonzero entries only. */
+	private static long[] berkowitz(long b[][]) {
+		int n=b.length;
+		int col[][]=nonzeroColumns(b);
+		long p[]={1},q[],t[],v[],w[];
+		long s;
+		int i,j,k,l,m;
+
+		for(k=n-1;k>=0;k--) {
+			m=n-1-k;	// size of M
+			t=new long[m+2];
+			t[0]=1;
+			t[1]=-b[k][k];
+			v=new long[n];	// indexed like the rows of b
+			w=new long[n];
+			for(i=k+1;i<n;i++)
+				v[i]=b[i][k];	// C
+			for(j=0;j<m;j++) {
+				s=0;		// R M^j C
+				for(l=0;(l<col[k].length) && (col[k][l]>k);l++)
+					s=Math.addExact(s,Math.multiplyExact(b[k][col[k][l]],
+							v[col[k][l]]));
+				t[j+2]=Math.negateExact(s);
+				if (j<m-1) {
+					for(i=k+1;i<n;i++) {
+						s=0;
+						for(l=0;(l<col[i].length) && (col[i][l]>k);l++)
+							s=Math.addExact(s,Math.multiplyExact(
+									b[i][col[i][l]],v[col[i][l]]));
+						w[i]=s;
+					}
+					q=v;
+					v=w;
+					w=q;
+				}
+			}
+			q=new long[m+2];
+			for(i=0;i<m+2;i++)
+				for(j=Math.max(0,i-m-1);(j<=i) && (j<=m);j++)
+					q[i]=Math.addExact(q[i],Math.multiplyExact(t[i-j],p[j]));
+			p=q;
 		}
-		p[0] = new Complex(1, 0);
-		q[1] = new Complex(1, 0);
-		int deg = 1;
-		for(int i=0; i<n; i++) {
-			if (Math.abs(im[i])<eps && Math.abs(Math.abs(re[i])-1)<eps) continue;
-			Complex e = new Complex(-re[i], -im[i]);
-			if (e.abs()<eps) continue;
-			q[0] = e;
-			Complex[] r = FFT.convolve(p, q);
-			for(int j=0; j<m; j++) {
-				p[j] = r[j];
+		return p;
+	}
+
+	/* same as berkowitz(), with BigIntegers */
+	private static IntPolynomial bigBerkowitz(long b[][]) {
+		int n=b.length;
+		int col[][]=nonzeroColumns(b);
+		BigInteger p[]={BigInteger.ONE},q[],t[],v[],w[];
+		BigInteger s;
+		int i,j,k,l,m;
+
+		for(k=n-1;k>=0;k--) {
+			m=n-1-k;
+			t=new BigInteger[m+2];
+			t[0]=BigInteger.ONE;
+			t[1]=BigInteger.valueOf(b[k][k]).negate();
+			v=new BigInteger[n];
+			w=new BigInteger[n];
+			for(i=k+1;i<n;i++)
+				v[i]=BigInteger.valueOf(b[i][k]);
+			for(j=0;j<m;j++) {
+				s=BigInteger.ZERO;
+				for(l=0;(l<col[k].length) && (col[k][l]>k);l++)
+					s=s.add(v[col[k][l]].multiply(
+							BigInteger.valueOf(b[k][col[k][l]])));
+				t[j+2]=s.negate();
+				if (j<m-1) {
+					for(i=k+1;i<n;i++) {
+						s=BigInteger.ZERO;
+						for(l=0;(l<col[i].length) && (col[i][l]>k);l++)
+							s=s.add(v[col[i][l]].multiply(
+									BigInteger.valueOf(b[i][col[i][l]])));
+						w[i]=s;
+					}
+					q=v;
+					v=w;
+					w=q;
+				}
 			}
-			deg++;
+			q=new BigInteger[m+2];
+			for(i=0;i<m+2;i++) {
+				q[i]=BigInteger.ZERO;
+				for(j=Math.max(0,i-m-1);(j<=i) && (j<=m);j++)
+					q[i]=q[i].add(t[i-j].multiply(p[j]));
+			}
+			p=q;
+		}
+		for(i=0;i<p.length/2;i++) {	// lowest degree first
+			s=p[i];
+			p[i]=p[p.length-1-i];
+			p[p.length-1-i]=s;
 		}
-		long[] res = new long[deg];
-		for(int k=0; k<deg; k++) {
-			res[deg-k-1] = Math.round(p[k].re());
+		return new IntPolynomial(p);
+	}
+
+	/* returns the indices of the nonzero entries of each row of b, in
+	   descending order */
+	private static int[][] nonzeroColumns(long b[][]) {
+		int res[][]=new int[b.length][];
+		int i,j,cnt;
+
+		for(i=0;i<b.length;i++) {
+			cnt=0;
+			for(j=0;j<b.length;j++)
+				if (b[i][j]!=0)
+					cnt++;
+			res[i]=new int[cnt];
+			cnt=0;
+			for(j=b.length-1;j>=0;j--)
+				if (b[i][j]!=0)
+					res[i][cnt++]=j;
 		}
 		return res;
 	}
-	
+
+	/**
+Computes the characteristic polynomial of this without factors x and without
+cyclotomic factors, i.e., without the eigenvalues zero and roots of unity.
+All computations are exact.
+@return coefficients of the reduced characteristic polynomial from the highest degree down
+@exception ArithmeticException if a coefficient doesn't fit into a long
+	 */
+	public long[] reducedCharPoly() {
+		return charPoly().withoutCyclotomicFactors().toLongArray();
+	}
+
+	/**
+Computes certified bounds for the PF-eigenvalue of an irreducible matrix. The
+floating point approximation from eigenValue() is refined by Newton's method
+on the reduced characteristic polynomial.
+@param int digits: desired number of correct decimal places
+@return array {lo, hi} such that lo &lt;= PF-eigenvalue &lt;= hi and hi-lo &lt;= 10^-digits
+	 */
+	public BigDecimal[] eigenValueBounds(int digits) {
+		IntPolynomial p=charPoly().withoutCyclotomicFactors();
+		double q=eigenValue();
+
+		if (p.degree()<1)	// all eigenvalues are zero or roots of unity
+			return new BigDecimal[] {BigDecimal.ONE,BigDecimal.ONE};
+		return p.largestRoot(q,digits);
+	}
+
+	/**
+Computes the traces of the powers of this exactly, from the characteristic
+polynomial by Newton's identities, rather than by multiplying matrices.
+@param int k: largest exponent
+@return array res of length k+1 such that res[m]=tr(this^m)
+	 */
+	public BigInteger[] traces(int k) {
+		return charPoly().powerSums(k);
+	}
+
+	/**
+Computes the traces of the powers of this modulo q, as in traces(k).
+@param int k: largest exponent
+@param long q: modulus, 1&lt;q&lt;=2^31
+@return array res of length k+1 such that res[m]=tr(this^m) mod q
+	 */
+	public long[] traces(int k,long q) {
+		return charPoly().powerSums(k,q);
+	}
+
+	/**
+Computes the PF-eigenvalue of an irreducible matrix exactly, i.e., its
+minimal polynomial and an isolating interval.
+@return PF-eigenvalue
+	 */
+	public AlgebraicNumber exactEigenValue() {
+		IntPolynomial p=charPoly().withoutCyclotomicFactors();
+
+		if (p.degree()<1)	// all eigenvalues are zero or roots of unity
+			return new AlgebraicNumber(new IntPolynomial(new long[] {1,-1}),
+					BigDecimal.ONE,BigDecimal.ONE);
+		return AlgebraicNumber.largestRoot(p,eigenValue());
+	}
+
 	public static String polyString(long[] p) {
 		String s = "";
 		for(int i=0; i<p.length; i++) {
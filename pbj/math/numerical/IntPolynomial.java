@@ -0,0 +1,655 @@
+package pbj.math.numerical;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+<p>Immutable polynomials with integer coefficients of arbitrary size. All
+operations are exact, except for the Newton steps in largestRoot(), whose
+results are certified by exact sign computations.</p>
+
+<p>Coefficients are indexed by degree, i.e., getCoefficient(i) is the
+coefficient of x^i. Note that arrays of type long[] as used by
+IntMatrix.polyString() list the coefficients from the highest degree
+down.</p>
+@author Peter Brinkmann
+@see IntMatrix
+ */
+public class IntPolynomial {
+
+	private final BigInteger c[];	// c[i] is the coefficient of x^i
+
+	/** the polynomial x */
+	public static final IntPolynomial X=new IntPolynomial(new long[] {1,0});
+
+	/* euler's constant, for a bound on the totient function */
+	private static final double GAMMA=0.5772156649015329;
+
+	/**
+Constructs a polynomial.
+@param BigInteger a[]: coefficients, a[i] is the coefficient of x^i
+	 */
+	public IntPolynomial(BigInteger a[]) {
+		int d=a.length-1;
+
+		while ((d>0) && (a[d].signum()==0))
+			d--;
+		c=new BigInteger[Math.max(d+1,1)];
+		if (a.length==0)
+			c[0]=BigInteger.ZERO;
+		else
+			System.arraycopy(a,0,c,0,c.length);
+	}
+
+	/**
+Constructs a polynomial.
+@param long a[]: coefficients from the highest degree down, as in IntMatrix.polyString()
+	 */
+	public IntPolynomial(long a[]) {
+		this(reverse(a));
+	}
+
+	private static BigInteger[] reverse(long a[]) {
+		BigInteger res[]=new BigInteger[a.length];
+		int i;
+
+		for(i=0;i<a.length;i++)
+			res[a.length-1-i]=BigInteger.valueOf(a[i]);
+		return res;
+	}
+
+	/**
+@return degree of this (0 for the zero polynomial)
+	 */
+	public int degree() {
+		return c.length-1;
+	}
+
+	/**
+@param int i: degree
+@return coefficient of x^i
+	 */
+	public BigInteger getCoefficient(int i) {
+		return (i<c.length) ? c[i] : BigInteger.ZERO;
+	}
+
+	/**
+@return true iff this is the zero polynomial
+	 */
+	public boolean isZero() {
+		return (c.length==1) && (c[0].signum()==0);
+	}
+
+	/**
+@return coefficients from the highest degree down, as in IntMatrix.polyString()
+@exception ArithmeticException if a coefficient doesn't fit into a long
+	 */
+	public long[] toLongArray() {
+		long res[]=new long[c.length];
+		int i;
+
+		for(i=0;i<c.length;i++) {
+			if (c[i].bitLength()>63)
+				throw new ArithmeticException("coefficient too large: "+c[i]);
+			res[c.length-1-i]=c[i].longValue();
+		}
+		return res;
+	}
+
+	/**
+@param IntPolynomial q: factor
+@return product of this and q
+	 */
+	public IntPolynomial multiply(IntPolynomial q) {
+		BigInteger res[]=new BigInteger[c.length+q.c.length-1];
+		int i,j;
+
+		Arrays.fill(res,BigInteger.ZERO);
+		for(i=0;i<c.length;i++)
+			if (c[i].signum()!=0)
+				for(j=0;j<q.c.length;j++)
+					res[i+j]=res[i+j].add(c[i].multiply(q.c[j]));
+		return new IntPolynomial(res);
+	}
+
+	/**
+Divides this by q, provided that the division is exact.
+@param IntPolynomial q: divisor
+@return quotient, or null if q doesn't divide this in Z[x]
+	 */
+	public IntPolynomial divide(IntPolynomial q) {
+		BigInteger r[]=c.clone();
+		BigInteger res[];
+		BigInteger qr[];
+		BigInteger lead=q.c[q.c.length-1];
+		int i,j,dq=q.degree();
+
+		if (q.isZero())
+			throw new ArithmeticException("division by zero");
+		if (dq>degree())
+			return isZero() ? this : null;
+		res=new BigInteger[c.length-dq];
+		for(i=c.length-1;i>=dq;i--) {
+			qr=r[i].divideAndRemainder(lead);
+			if (qr[1].signum()!=0)
+				return null;
+			res[i-dq]=qr[0];
+			if (qr[0].signum()!=0)
+				for(j=0;j<=dq;j++)
+					r[i-dq+j]=r[i-dq+j].subtract(qr[0].multiply(q.c[j]));
+		}
+		for(i=0;i<dq;i++)
+			if (r[i].signum()!=0)
+				return null;
+		return new IntPolynomial(res);
+	}
+
+	/**
+@return derivative of this
+	 */
+	public IntPolynomial derivative() {
+		BigInteger res[]=new BigInteger[Math.max(c.length-1,1)];
+		int i;
+
+		res[0]=BigInteger.ZERO;
+		for(i=1;i<c.length;i++)
+			res[i-1]=c[i].multiply(BigInteger.valueOf(i));
+		return new IntPolynomial(res);
+	}
+
+	/* divides this by the gcd of its coefficients and makes the leading
+	   coefficient positive */
+	IntPolynomial primitivePart() {
+		BigInteger g=BigInteger.ZERO;
+		BigInteger res[]=new BigInteger[c.length];
+		int i;
+
+		for(i=0;i<c.length;i++)
+			g=g.gcd(c[i]);
+		if (g.signum()==0)
+			return this;
+		if (c[c.length-1].signum()<0)
+			g=g.negate();
+		for(i=0;i<c.length;i++)
+			res[i]=c[i].divide(g);
+		return new IntPolynomial(res);
+	}
+
+	/* remainder of lc(q)^(deg(this)-deg(q)+1)*this modulo q */
+	private IntPolynomial pseudoRemainder(IntPolynomial q) {
+		BigInteger r[]=c.clone();
+		BigInteger lead=q.c[q.c.length-1],t;
+		int i,j,dq=q.degree();
+
+		for(i=r.length-1;i>=dq;i--) {
+			t=r[i];
+			for(j=0;j<i;j++)
+				r[j]=r[j].multiply(lead);
+			for(j=0;j<dq;j++)
+				r[i-dq+j]=r[i-dq+j].subtract(t.multiply(q.c[j]));
+		}
+		return new IntPolynomial(Arrays.copyOf(r,Math.max(dq,1)));
+	}
+
+	/**
+Computes a greatest common divisor in Z[x] by the primitive remainder
+sequence.
+@param IntPolynomial q: polynomial
+@return primitive gcd of this and q with positive leading coefficient
+	 */
+	public IntPolynomial gcd(IntPolynomial q) {
+		IntPolynomial a=this,b=q,r;
+
+		if (a.degree()<b.degree()) {
+			a=q;
+			b=this;
+		}
+		a=a.primitivePart();
+		b=b.primitivePart();
+		while (!b.isZero()) {
+			if (b.degree()==0)
+				return new IntPolynomial(new long[] {1});
+			r=a.pseudoRemainder(b);
+			a=b;
+			b=r.primitivePart();
+		}
+		return a;
+	}
+
+	/**
+@return the product of the distinct irreducible factors of this, i.e., this divided by gcd(this, this')
+	 */
+	public IntPolynomial squarefreePart() {
+		if (degree()<1)
+			return this;
+		return divide(gcd(derivative()));
+	}
+
+	/**
+Factors this into irreducible polynomials by the algorithm of Zassenhaus.
+Multiple factors are reported only once.
+@return the distinct irreducible factors of this, which have to be monic
+@exception IllegalArgumentException if this is not monic
+	 */
+	public IntPolynomial[] factor() {
+		IntPolynomial res[];
+
+		if (!c[c.length-1].equals(BigInteger.ONE))
+			throw new IllegalArgumentException("polynomial not monic: "+this);
+		if (degree()==0)
+			return new IntPolynomial[0];
+		res=Factorization.factor(this);
+		if (res==null)	// not squarefree
+			res=Factorization.factor(squarefreePart());
+		if (res==null)
+			throw new ArithmeticException("no suitable prime for "+this);
+		return res;
+	}
+
+	/**
+Computes the power sums of the roots of this by Newton's identities. If this
+is the characteristic polynomial of a matrix M, the power sums are the
+traces tr(M^m). Each power sum takes time proportional to the number of
+nonzero coefficients of this.
+@param int k: largest exponent
+@return array res of length k+1 such that res[m] is the sum of the m-th powers of the roots of this; in particular, res[0] is the degree
+@exception IllegalArgumentException if this is not monic
+	 */
+	public BigInteger[] powerSums(int k) {
+		BigInteger res[]=new BigInteger[k+1];
+		BigInteger s;
+		int nz[]=newtonIndices();
+		int d=degree(),i,j,m;
+
+		res[0]=BigInteger.valueOf(d);
+		for(m=1;m<=k;m++) {
+			s=BigInteger.ZERO;
+			for(i=0;(i<nz.length) && ((j=nz[i])<=m);i++)
+				s=s.add(c[d-j].multiply((j<m) ? res[m-j] : BigInteger.valueOf(m)));
+			res[m]=s.negate();
+		}
+		return res;
+	}
+
+	/**
+Computes the power sums of the roots of this modulo q, as in powerSums(k),
+without ever handling large numbers.
+@param int k: largest exponent
+@param long q: modulus, 1&lt;q&lt;=2^31
+@return array res of length k+1 such that res[m] is the sum of the m-th powers of the roots of this, modulo q, with 0&lt;=res[m]&lt;q
+@exception IllegalArgumentException if this is not monic or q is out of range
+	 */
+	public long[] powerSums(int k,long q) {
+		long res[]=new long[k+1];
+		long e[];
+		int nz[]=newtonIndices();
+		int d=degree(),i,j,m;
+		long s;
+
+		if ((q<2) || (q>(1L<<31)))
+			throw new IllegalArgumentException("bad modulus: "+q);
+		e=new long[d+1];
+		for(i=0;i<nz.length;i++)
+			e[nz[i]]=c[d-nz[i]].mod(BigInteger.valueOf(q)).longValue();
+		res[0]=d%q;
+		for(m=1;m<=k;m++) {
+			s=0;
+			for(i=0;(i<nz.length) && ((j=nz[i])<=m);i++)
+				s=(s+e[j]*((j<m) ? res[m-j] : m%q))%q;
+			res[m]=(q-s)%q;
+		}
+		return res;
+	}
+
+	/* the indices j>0 of the nonzero coefficients of x^(d-j), in ascending
+	   order, for Newton's identities */
+	private int[] newtonIndices() {
+		int d=degree(),i,cnt=0;
+		int res[];
+
+		if (!c[d].equals(BigInteger.ONE))
+			throw new IllegalArgumentException("polynomial not monic: "+this);
+		for(i=1;i<=d;i++)
+			if (c[d-i].signum()!=0)
+				cnt++;
+		res=new int[cnt];
+		for(i=1,cnt=0;i<=d;i++)
+			if (c[d-i].signum()!=0)
+				res[cnt++]=i;
+		return res;
+	}
+
+	/**
+Evaluates this exactly.
+@param BigDecimal x: argument
+@return value of this at x
+	 */
+	public BigDecimal evaluate(BigDecimal x) {
+		BigDecimal res=BigDecimal.ZERO;
+		int i;
+
+		for(i=c.length-1;i>=0;i--)
+			res=res.multiply(x).add(new BigDecimal(c[i]));
+		return res;
+	}
+
+	/**
+Evaluates this, rounding according to mc.
+@param BigDecimal x: argument
+@param MathContext mc: precision of the computation
+@return approximate value of this at x
+	 */
+	public BigDecimal evaluate(BigDecimal x,MathContext mc) {
+		BigDecimal res=BigDecimal.ZERO;
+		int i;
+
+		for(i=c.length-1;i>=0;i--)
+			res=res.multiply(x,mc).add(new BigDecimal(c[i]),mc);
+		return res;
+	}
+
+	/**
+@param double x: argument
+@return approximate value of this at x
+	 */
+	public double evaluate(double x) {
+		double res=0;
+		int i;
+
+		for(i=c.length-1;i>=0;i--)
+			res=res*x+c[i].doubleValue();
+		return res;
+	}
+
+	/**
+Checks whether all coefficients of p(x+t) are positive. If so, all real roots
+of this are smaller than t. Conversely, if all roots of this (real or complex)
+have real part smaller than t, then all coefficients of p(x+t) are positive.
+@param BigDecimal t: shift
+@return true iff all coefficients of p(x+t) are positive
+	 */
+	public boolean isPositiveAfterShift(BigDecimal t) {
+		BigDecimal s[]=taylorShift(t);
+		int i;
+
+		for(i=0;i<c.length;i++)
+			if (s[i].signum()<=0)
+				return false;
+		return true;
+	}
+
+	/**
+Counts the sign changes in the sequence of coefficients of p(x+t), ignoring
+zeros. By Descartes' rule of signs, this is an upper bound for the number
+of real roots of this larger than t, counted with multiplicity, and the
+difference is even.
+@param BigDecimal t: shift
+@return number of sign changes of the coefficients of p(x+t)
+	 */
+	public int signVariationsAfterShift(BigDecimal t) {
+		BigDecimal s[]=taylorShift(t);
+		int i,last=0,res=0;
+
+		for(i=0;i<c.length;i++)
+			if (s[i].signum()!=0) {
+				if (s[i].signum()==-last)
+					res++;
+				last=s[i].signum();
+			}
+		return res;
+	}
+
+	/* coefficients of p(x+t), computed by Horner's scheme */
+	private BigDecimal[] taylorShift(BigDecimal t) {
+		BigDecimal s[]=new BigDecimal[c.length];
+		int i,j;
+
+		for(i=0;i<c.length;i++)
+			s[i]=new BigDecimal(c[i]);
+		for(i=0;i<c.length-1;i++)
+			for(j=c.length-2;j>=i;j--)
+				s[j]=s[j].add(t.multiply(s[j+1]));
+		return s;
+	}
+
+	/**
+Computes the cyclotomic polynomial Phi_k, i.e., the minimal polynomial of a
+primitive k-th root of unity.
+@param int k: order of root of unity, k>0
+@return Phi_k
+	 */
+	public static IntPolynomial cyclotomic(int k) {
+		IntPolynomial num=new IntPolynomial(new long[] {1});
+		IntPolynomial den=new IntPolynomial(new long[] {1});
+		long p[];
+		int d,mu;
+
+		/* Phi_k is the product of (x^d-1)^mu(k/d) over the divisors d of k */
+		for(d=1;d<=k;d++)
+			if (k%d==0) {
+				mu=moebius(k/d);
+				if (mu==0)
+					continue;
+				p=new long[d+1];
+				p[0]=1;
+				p[d]=-1;
+				if (mu>0)
+					num=num.multiply(new IntPolynomial(p));
+				else
+					den=den.multiply(new IntPolynomial(p));
+			}
+		return num.divide(den);
+	}
+
+	private static int moebius(int n) {
+		int p,res=1;
+
+		for(p=2;p*p<=n;p++)
+			if (n%p==0) {
+				n/=p;
+				if (n%p==0)
+					return 0;
+				res=-res;
+			}
+		return (n>1) ? -res : res;
+	}
+
+	/**
+Removes all factors x and all cyclotomic factors from this, with
+multiplicities. The remaining polynomial has no roots on the unit circle
+that are roots of unity. Candidate factors are screened numerically, but
+removed by exact division only.
+@return this without factors x and Phi_k
+	 */
+	public IntPolynomial withoutCyclotomicFactors() {
+		IntPolynomial p=this,q,phi;
+		int tot[];
+		int i,k,d,lz;
+		double norm,re,im,x,y,h,z;
+
+		if (isZero())
+			return this;
+		for(lz=0;c[lz].signum()==0;lz++)
+			;	// count factors x
+		if (lz>0)
+			p=new IntPolynomial(Arrays.copyOfRange(c,lz,c.length));
+
+		/* Phi_k has degree phi(k); since k/phi(k) is less than
+		   e^GAMMA*loglog(k)+2.51/loglog(k) for k>2, we only need to look at
+		   finitely many k. */
+		d=p.degree();
+		for(k=16;(double) k/(Math.exp(GAMMA)*Math.log(Math.log(k))
+				+2.51/Math.log(Math.log(k)))<=d;k++)
+			;	// do nothing
+		tot=totients(k);
+
+		for(k=1;(k<tot.length) && (p.degree()>0);k++) {
+			if (tot[k]>p.degree())
+				continue;
+
+			/* skip k if p is clearly nonzero at exp(2 pi i/k) */
+			norm=0;
+			re=im=0;
+			x=Math.cos(2*Math.PI/k);
+			y=Math.sin(2*Math.PI/k);
+			for(i=p.c.length-1;i>=0;i--) {
+				z=p.c[i].doubleValue();
+				norm+=Math.abs(z);
+				h=re*x-im*y+z;
+				im=re*y+im*x;
+				re=h;
+			}
+			if ((!Double.isInfinite(norm))
+					&& (Math.hypot(re,im)>1e-6*norm))
+				continue;
+
+			phi=cyclotomic(k);
+			while ((p.degree()>=phi.degree()) && ((q=p.divide(phi))!=null))
+				p=q;
+		}
+		return p;
+	}
+
+	/* euler's totient function for 0<=k<n */
+	private static int[] totients(int n) {
+		int res[]=new int[n];
+		int i,j;
+
+		for(i=0;i<n;i++)
+			res[i]=i;
+		for(i=2;i<n;i++)
+			if (res[i]==i)	// i is prime
+				for(j=i;j<n;j+=i)
+					res[j]-=res[j]/i;
+		return res;
+	}
+
+	/* returns true if the largest real root of this is at least t; see
+	   largestRoot() */
+	private boolean isRootAtLeast(BigDecimal t) {
+		int s=evaluate(t).signum();
+
+		if (s==0)
+			return true;
+		if (s!=c[c.length-1].signum())	// there's a root above t
+			return true;
+		return !isPositiveAfterShift(t);
+	}
+
+	/**
+<p>Computes certified bounds for the largest real root of this, starting from
+an approximation, e.g., a PF-eigenvalue computed in floating point. The
+bounds are refined by Newton's method, with bisection as a fallback, and each
+bound is certified by exact computations.</p>
+
+<p>The method assumes that the modulus of each root of this is at most the
+largest real root, as is the case for the characteristic polynomial of a
+nonnegative irreducible matrix and for each of its factors that has the
+PF-eigenvalue as a root.</p>
+@param double approx: approximation of the largest real root
+@param int digits: desired number of correct decimal places
+@return array {lo, hi} such that lo &lt;= root &lt; hi and hi-lo &lt;= 10^-digits
+	 */
+	public BigDecimal[] largestRoot(double approx,int digits) {
+		BigDecimal eps=BigDecimal.ONE.scaleByPowerOfTen(-digits);
+		MathContext mc=new MathContext(digits+20);
+		IntPolynomial dp=derivative();
+		BigDecimal lo,hi,mid,x,dx,d,w,two=BigDecimal.valueOf(2);
+		int cnt,sc=digits+3;	// short endpoints keep exact arithmetic cheap
+
+		if (degree()<1)
+			throw new ArithmeticException("constant polynomial");
+		if (Double.isNaN(approx) || Double.isInfinite(approx))
+			approx=0;
+
+		/* find a bracket around approx */
+		x=BigDecimal.valueOf(approx);
+		w=BigDecimal.valueOf(Math.max(Math.abs(approx),1)*1e-9);
+		while (true) {
+			lo=x.subtract(w);
+			hi=x.add(w);
+			if (!isRootAtLeast(hi)) {
+				if (isRootAtLeast(lo))
+					break;
+				x=lo;	// root is below lo
+			}
+			else
+				x=hi;	// root is at least hi
+			w=w.multiply(BigDecimal.TEN);
+		}
+
+		/* refine by Newton's method, falling back to bisection */
+		x=lo.add(hi).divide(two);
+		for(cnt=0;hi.subtract(lo).compareTo(eps)>0;cnt++) {
+			d=dp.evaluate(x,mc);
+			if ((cnt<64) && (d.signum()!=0)) {
+				dx=evaluate(x,mc).divide(d,mc);
+				x=x.subtract(dx,mc);
+				w=dx.abs().max(eps.movePointLeft(2));
+
+				/* try a small bracket around the Newton iterate */
+				mid=x.subtract(w).setScale(sc,RoundingMode.FLOOR);
+				if ((mid.compareTo(lo)>0) && (mid.compareTo(hi)<0)) {
+					if (isRootAtLeast(mid)) {
+						lo=mid;
+						mid=x.add(w).setScale(sc,RoundingMode.CEILING);
+						if ((mid.compareTo(hi)<0) && !isRootAtLeast(mid)) {
+							hi=mid;
+							continue;
+						}
+					}
+					else
+						hi=mid;
+				}
+			}
+			mid=lo.add(hi).divide(two);	// bisection
+			if (isRootAtLeast(mid))
+				lo=mid;
+			else
+				hi=mid;
+			x=mid;
+		}
+		return new BigDecimal[] {lo,hi};
+	}
+
+	public boolean equals(Object o) {
+		return (o instanceof IntPolynomial)
+				&& Arrays.equals(c,((IntPolynomial) o).c);
+	}
+
+	public int hashCode() {
+		return Arrays.hashCode(c);
+	}
+
+	/**
+@return string representation as in IntMatrix.polyString(), e.g., x^2-3x+1
+	 */
+	public String toString() {
+		StringBuilder s=new StringBuilder();
+		BigInteger a;
+		int i;
+
+		for(i=c.length-1;i>=0;i--) {
+			a=c[i];
+			if ((a.signum()==0) && ((i>0) || (s.length()>0)))
+				continue;
+			if (a.signum()<0) {
+				s.append('-');
+				a=a.negate();
+			}
+			else if (s.length()>0)
+				s.append('+');
+			if ((i==0) || (!a.equals(BigInteger.ONE)))
+				s.append(a);
+			if (i>0)
+				s.append('x');
+			if (i>1)
+				s.append('^').append(i);
+		}
+		return s.toString();
+	}
+
+}
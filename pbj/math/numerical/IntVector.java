@@ -95,13 +95,15 @@ Writes 'this' to a String suitable for MATLAB.
 	}
 
 	/**
-Returns m\cdot v.
+Returns m\cdot v, computed exactly.
 @param IntMatrix m: first factor
 @param IntVector v: second vector
 @return product of m and v
+@exception ArithmeticException if an entry of the product doesn't fit into an int
 	 */
 	public static IntVector product(IntMatrix m, IntVector v) {
 		IntVector prod;
+		long s;
 		int i,j;
 
 		if (m.n!=v.n)
@@ -109,9 +111,13 @@ Returns m\cdot v.
 
 		prod=new IntVector(v.n);
 
-		for(i=0;i<m.n;i++)
+		for(i=0;i<m.n;i++) {
+			s=0;
 			for(j=0;j<m.n;j++)
-				prod.v[i]+=m.a[i][j]*v.v[j];
+				if ((m.a[i][j]!=0) && (v.v[j]!=0))
+					s=Math.addExact(s,Math.multiplyExact((long) m.a[i][j],v.v[j]));
+			prod.v[i]=Math.toIntExact(s);
+		}
 
 		return prod;
 	}
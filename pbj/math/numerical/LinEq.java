@@ -1,26 +1,58 @@
 package pbj.math.numerical;
 
 /**
-A class that solves systems of linear equations.
+<p>A class that solves systems of linear equations.</p>
+
+<p>An instance owns the workspace for systems of a fixed size, so that
+repeated solutions don't allocate memory. Instances are thread-safe, but
+solutions by the same instance are serialized; threads that solve systems
+in parallel should use an instance each.</p>
 @author Peter Brinkmann
  */
 public class LinEq {
 
 	private static final double TOL=0.0000000001;
 
-	// uses LR decomposition, straight from some textbook
-	private static double lrDecomp(int n,double a[][],int p[]) {
+	private final int n;
+	private final int p[];		// pivots
+	private final double c[];	// result of forward substitution
+	private final double scale[];	// row norms for scaled pivoting
+
+	/**
+Constructs a solver for systems of n equations in n variables.
+@param int n: number of equations (=number of unknown variables)
+	 */
+	public LinEq(int n) {
+		this.n=n;
+		p=new int[n];
+		c=new double[n];
+		scale=new double[n];
+	}
+
+	/**
+@return number of equations (=number of unknown variables)
+	 */
+	public int getDimension() {
+		return n;
+	}
+
+	// uses LR decomposition, straight from some textbook; the rows are
+	// scaled by their norms once, rather than at every pivot
+	private double lrDecomp(double a[][]) {
 		double det,max,s,q,h;
 		int i,j,k;
 		det=1;
+		for(i=0;i<n;i++) {
+			s=0;
+			for(j=0;j<n;j++) s+=Math.abs(a[i][j]);
+			if (s<TOL) return 0;
+			scale[i]=s;
+		}
 		for(k=0;k<n-1;k++) {
 			max=0;
-			p[k]=0;
+			p[k]=k;
 			for(i=k;i<n;i++) {
-				s=0;
-				for(j=k;j<n;j++) s+=Math.abs(a[i][j]);
-				if (s<TOL) return 0;
-				q=Math.abs(a[i][k])/s;
+				q=Math.abs(a[i][k])/scale[i];
 				if (q>max) {
 					max=q;
 					p[k]=i;
@@ -34,6 +66,9 @@ public class LinEq {
 					a[k][j]=a[p[k]][j];
 					a[p[k]][j]=h;
 				}
+				h=scale[k];
+				scale[k]=scale[p[k]];
+				scale[p[k]]=h;
 			}
 			det=det*a[k][k];
 			for(i=k+1;i<n;i++) {
@@ -45,9 +80,8 @@ public class LinEq {
 		return det;
 	}
 
-	private static void forwardSubst(int n,double a[][],double c[],double b[],
-			int p[]) {
-		double h;	
+	private void forwardSubst(double a[][],double b[]) {
+		double h;
 		int i,j,k;
 		for(k=0;k<n-1;k++)
 			if (p[k]!=k) {
@@ -62,7 +96,7 @@ public class LinEq {
 		}
 	}
 
-	private static void backwardSubst(int n,double a[][],double x[],double c[]) {
+	private void backwardSubst(double a[][],double x[]) {
 		int i,k;
 		double s;
 		for(i=n-1;i>=0;i--) {
@@ -74,21 +108,31 @@ public class LinEq {
 	}
 
 	/**
-Solves a system of linear equations (ax=b).
+Solves a system of linear equations (ax=-b). The entries of a[][] and b[] are
+overwritten.
+@param double a[][]: coefficient matrix
+@param double x[]: unknown vector for solution
+@param double b[]: inhomogeneity
+@return determinant of a[][], or 0 if a[][] is singular (then x[] is undefined)
+	 */
+	public synchronized double solve(double a[][],double x[],double b[]) {
+		double det;
+		if (Math.abs(det=lrDecomp(a))<TOL) return 0;
+		forwardSubst(a,b);
+		backwardSubst(a,x);
+		return det;
+	}
+
+	/**
+Solves a system of linear equations (ax=-b), using a new solver.
 @param int n: number of equations (=number of unknown variables)
 @param double a[][]: coefficient matrix
-@param int x[]: unknown vector for solution
-@param int b[]: inhomogeneity
+@param double x[]: unknown vector for solution
+@param double b[]: inhomogeneity
 @return determinant of a[][]
 	 */
 	public static double solve(int n,double a[][],double x[],double b[]) {
-		int p[]=new int[n];
-		double c[]=new double[n];
-		double det;
-		if (Math.abs(det=lrDecomp(n,a,p))<TOL) return 0;
-		forwardSubst(n,a,c,b,p);
-		backwardSubst(n,a,x,c);
-		return det;
+		return new LinEq(n).solve(a,x,b);
 	}
 
 }
@@ -0,0 +1,358 @@
+package pbj.math.numerical;
+
+import java.math.BigInteger;
+
+/**
+<p>Square integer matrices with exact arithmetic, stored as a flat array of
+longs in row-major order. Products are computed in blocks that fit into the
+cache, skipping zero entries, so that sparse transition matrices are cheap
+to multiply.</p>
+
+<p>If the entries of a product can't overflow (which is checked by a cheap
+bound beforehand), the kernel runs without overflow checks. Otherwise, it
+uses Math.multiplyExact and Math.addExact, and if an entry does overflow,
+the result switches to BigInteger entries for good. Powers are computed by
+repeated squaring.</p>
+@author Peter Brinkmann
+@see IntMatrix
+ */
+public class LongMatrix {
+
+	private static final int BLOCK=64;	// block size of products
+	private static final double SAFE=0x1p62;	// bound for unchecked products
+
+	private final int n;
+	private long a[];		// entries, or null after overflow
+	private BigInteger big[];	// entries after overflow, or null
+
+	/**
+Constructs a zero matrix.
+@param int sz: dimension of matrix
+	 */
+	public LongMatrix(int sz) {
+		n=sz;
+		a=new long[n*n];
+	}
+
+	/**
+Constructs a copy of m.
+@param LongMatrix m: original matrix
+	 */
+	public LongMatrix(LongMatrix m) {
+		n=m.n;
+		a=(m.a!=null) ? m.a.clone() : null;
+		big=(m.big!=null) ? m.big.clone() : null;
+	}
+
+	/**
+Converts an IntMatrix.
+@param IntMatrix m: matrix with integral entries
+@exception IllegalArgumentException if an entry of m isn't an integer
+	 */
+	public LongMatrix(IntMatrix m) {
+		int i,j;
+		double x;
+
+		n=m.n;
+		a=new long[n*n];
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++) {
+				x=m.a[i][j];
+				if ((x!=Math.rint(x)) || (Math.abs(x)>=0x1p63))
+					throw new IllegalArgumentException("not an integer: "+x);
+				a[i*n+j]=(long) x;
+			}
+	}
+
+	/**
+@param int sz: dimension
+@return identity matrix
+	 */
+	public static LongMatrix identity(int sz) {
+		LongMatrix res=new LongMatrix(sz);
+		int i;
+
+		for(i=0;i<sz;i++)
+			res.a[i*sz+i]=1;
+		return res;
+	}
+
+	/**
+@return dimension of this
+	 */
+	public int getDimension() {
+		return n;
+	}
+
+	/**
+@return true iff an entry has overflowed, so that entries are stored as BigIntegers
+	 */
+	public boolean isBig() {
+		return a==null;
+	}
+
+	/**
+@param int i: row
+@param int j: column
+@return entry (i, j)
+@exception ArithmeticException if the entry doesn't fit into a long
+	 */
+	public long get(int i,int j) {
+		if (a!=null)
+			return a[i*n+j];
+		if (big[i*n+j].bitLength()>63)
+			throw new ArithmeticException("entry too large: "+big[i*n+j]);
+		return big[i*n+j].longValue();
+	}
+
+	/**
+@param int i: row
+@param int j: column
+@return entry (i, j)
+	 */
+	public BigInteger getBig(int i,int j) {
+		return (a!=null) ? BigInteger.valueOf(a[i*n+j]) : big[i*n+j];
+	}
+
+	/**
+@param int i: row
+@param int j: column
+@param long x: new value of entry (i, j)
+	 */
+	public void set(int i,int j,long x) {
+		if (a!=null)
+			a[i*n+j]=x;
+		else
+			big[i*n+j]=BigInteger.valueOf(x);
+	}
+
+	/**
+@return number of nonzero entries of this
+	 */
+	public int countNonzero() {
+		int i,cnt=0;
+
+		for(i=0;i<n*n;i++)
+			if ((a!=null) ? (a[i]!=0) : (big[i].signum()!=0))
+				cnt++;
+		return cnt;
+	}
+
+	/**
+Converts this to an IntMatrix.
+@return copy of this
+@exception ArithmeticException if an entry can't be represented exactly by a double, i.e., exceeds 2^53 in absolute value
+	 */
+	public IntMatrix toIntMatrix() {
+		IntMatrix res=new IntMatrix(n);
+		BigInteger x;
+		int i,j;
+
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++) {
+				x=getBig(i,j);
+				if (x.abs().bitLength()>53)
+					throw new ArithmeticException("entry too large for IntMatrix: "
+							+x);
+				res.a[i][j]=x.doubleValue();
+			}
+		return res;
+	}
+
+	/* switches to BigInteger entries */
+	private void toBig() {
+		int i;
+
+		if (a==null)
+			return;
+		big=new BigInteger[n*n];
+		for(i=0;i<n*n;i++)
+			big[i]=BigInteger.valueOf(a[i]);
+		a=null;
+	}
+
+	/* largest absolute value of an entry, as a double */
+	private double maxAbs() {
+		double res=0;
+		int i;
+
+		if (a==null)
+			return Double.POSITIVE_INFINITY;
+		for(i=0;i<n*n;i++)
+			res=Math.max(res,Math.abs((double) a[i]));
+		return res;
+	}
+
+	/**
+Adds m to this.
+@param LongMatrix m: summand
+	 */
+	public void add(LongMatrix m) {
+		long c[];
+		int i;
+
+		if (m.n!=n)
+			throw new RuntimeException("different dimensions");
+		if ((a!=null) && (m.a!=null)) {
+			c=a.clone();
+			try {
+				for(i=0;i<n*n;i++)
+					c[i]=Math.addExact(c[i],m.a[i]);
+				a=c;
+				return;
+			} catch (ArithmeticException e) {
+				// fall through
+			}
+		}
+		toBig();
+		for(i=0;i<n*n;i++)
+			big[i]=big[i].add(m.getBig(i/n,i%n));
+	}
+
+	/**
+Computes this*m.
+@param LongMatrix m: second factor
+@return product of this and m
+	 */
+	public LongMatrix multiply(LongMatrix m) {
+		LongMatrix res=new LongMatrix(n);
+
+		res.multiplyAdd(this,m);
+		return res;
+	}
+
+	/**
+Adds x*y to this, in place.
+@param LongMatrix x,y: factors
+	 */
+	public void multiplyAdd(LongMatrix x,LongMatrix y) {
+		long c[];
+
+		if ((x.n!=n) || (y.n!=n))
+			throw new RuntimeException("different dimensions");
+		if (x==this)
+			x=new LongMatrix(x);
+		if (y==this)
+			y=new LongMatrix(y);
+		if ((a!=null) && (x.a!=null) && (y.a!=null)) {
+			if (maxAbs()+n*x.maxAbs()*y.maxAbs()<SAFE) {
+				kernel(a,x.a,y.a,n,false);
+				return;
+			}
+			c=a.clone();
+			try {
+				kernel(c,x.a,y.a,n,true);
+				a=c;
+				return;
+			} catch (ArithmeticException e) {
+				// fall through
+			}
+		}
+		toBig();
+		bigKernel(big,x,y,n);
+	}
+
+	/* c+=x*y, blocked; the rows of the current block of y stay in the cache
+	   while all rows of x go by */
+	private static void kernel(long c[],long x[],long y[],int n,
+			boolean exact) {
+		int kk,jj,i,k,j,ke,je,ci,yk;
+		long t;
+
+		for(kk=0;kk<n;kk+=BLOCK) {
+			ke=Math.min(kk+BLOCK,n);
+			for(jj=0;jj<n;jj+=BLOCK) {
+				je=Math.min(jj+BLOCK,n);
+				for(i=0;i<n;i++) {
+					ci=i*n;
+					for(k=kk;k<ke;k++) {
+						t=x[ci+k];
+						if (t==0)
+							continue;
+						yk=k*n;
+						if (exact)
+							for(j=jj;j<je;j++)
+								c[ci+j]=Math.addExact(c[ci+j],
+										Math.multiplyExact(t,y[yk+j]));
+						else
+							for(j=jj;j<je;j++)
+								c[ci+j]+=t*y[yk+j];
+					}
+				}
+			}
+		}
+	}
+
+	/* c+=x*y with BigIntegers */
+	private static void bigKernel(BigInteger c[],LongMatrix x,LongMatrix y,
+			int n) {
+		BigInteger t;
+		int i,k,j;
+
+		for(i=0;i<n;i++)
+			for(k=0;k<n;k++) {
+				t=x.getBig(i,k);
+				if (t.signum()!=0)
+					for(j=0;j<n;j++)
+						c[i*n+j]=c[i*n+j].add(t.multiply(y.getBig(k,j)));
+			}
+	}
+
+	/**
+Computes a power of this by repeated squaring.
+@param int k: exponent, k&gt;=0
+@return k-th power of this
+	 */
+	public LongMatrix power(int k) {
+		LongMatrix res=identity(n),sq=this;
+		int e;
+
+		if (k<0)
+			throw new IllegalArgumentException("negative exponent: "+k);
+		for(e=k;e>0;e>>=1) {
+			if ((e&1)!=0)
+				res=res.multiply(sq);
+			if (e>1)
+				sq=sq.multiply(sq);
+		}
+		return res;
+	}
+
+	public boolean equals(Object o) {
+		LongMatrix m;
+		int i;
+
+		if (!(o instanceof LongMatrix))
+			return false;
+		m=(LongMatrix) o;
+		if (m.n!=n)
+			return false;
+		for(i=0;i<n*n;i++)
+			if (!getBig(i/n,i%n).equals(m.getBig(i/n,i%n)))
+				return false;
+		return true;
+	}
+
+	public int hashCode() {
+		int i,res=n;
+
+		for(i=0;i<n*n;i++)
+			res=31*res+getBig(i/n,i%n).hashCode();
+		return res;
+	}
+
+	public String toString() {
+		StringBuilder res=new StringBuilder();
+		int i,j;
+
+		res.append(n+"\n");
+		for(i=0;i<n;i++) {
+			for(j=0;j<n;j++)
+				res.append(getBig(i,j)+" ");
+			res.append("\n");
+		}
+		res.append("\n");
+		return res.toString();
+	}
+
+}
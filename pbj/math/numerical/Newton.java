@@ -1,17 +1,59 @@
 package pbj.math.numerical;
 
 /**
-A class that implements Newton's method for solving nonlinear systems of
-equations.
+<p>A class that implements Newton's method for solving nonlinear systems of
+equations.</p>
+
+<p>An instance has its own tolerance and iteration limit, keeps the
+workspace of the last solution for the next one of the same size, and
+records convergence statistics. Instances are thread-safe, but solutions by
+the same instance are serialized; threads that solve systems in parallel
+should use an instance each (and vector functions that can be evaluated
+concurrently).</p>
 @author Peter Brinkmann
 @see VectorFunction
  */
 public class Newton {
 
-	private static double TOL=0.0000000000001; // tolerance for computations
-	private static int MAXITER=20000;
+	private static volatile double TOL=0.0000000000001; // default tolerance
+	private static volatile int MAXITER=20000;	// default iteration limit
+
+	private final double tol;	// tolerance for computations
+	private final int maxIter;
 	/* if we haven't reached a solution after
-   MAXITER steps, we assume that there is none.*/
+   maxIter steps, we assume that there is none.*/
+
+	private int n=-1;	// size of workspace
+	private double a[][];	// Jacobi matrix
+	private double dx[];	// increment
+	private double b[];	// b=c(x)-y (difference from the desired value)
+	private LinEq lin;
+
+	private int iterations;	// statistics of the last solution
+	private double residual=Double.NaN;
+	private long solutions,failures,totalIterations;	// cumulative
+
+	/**
+Constructs a solver with the default tolerance and iteration limit.
+@see #setTolerance(double)
+@see #setMaxIter(int)
+	 */
+	public Newton() {
+		this(TOL,MAXITER);
+	}
+
+	/**
+Constructs a solver.
+@param double tol: accuracy of the result (typically a small number, e.g., 10^-10)
+@param int maxIter: max number of iterations (typically a few thousand)
+	 */
+	public Newton(double tol,int maxIter) {
+		if (!(tol>0) || (maxIter<0))
+			throw new IllegalArgumentException("bad tolerance or iteration limit: "
+					+tol+", "+maxIter);
+		this.tol=tol;
+		this.maxIter=maxIter;
+	}
 
 	// computes the euclidean norm of the vector b
 	private static double norm(int n,double b[]) {
@@ -26,37 +68,116 @@ public class Newton {
 	/**
 Solves the equation c(x)=y using Newton's method.
 @param VectorFunction: c is a function from R^n to R^n.
-@param double x[]: unknown vector (for solution)
+@param int n: number of variables
+@param double x[]: unknown vector (initial guess on entry, solution on exit)
 @param double y[]: inhomogeneity
-@return true iff no solution was found (i.e., the derivative is singular)
+@return true iff no solution was found (i.e., the derivative is singular or the iteration limit was reached)
 	 */
-	public static boolean newton(VectorFunction c,int n,double x[],double y[]) {
-		double a[][]=new double[n][n];	// Jacobi matrix
-		double dx[]=new double[n];	// increment
-		double b[]=new double[n];	// b=c(x)-y (difference from 
-		//	     the desired value)
+	public synchronized boolean solve(VectorFunction c,int n,double x[],double y[]) {
 		int i,j,cnt;
+		boolean fail;
+
+		if (this.n!=n) {
+			a=new double[n][n];
+			dx=new double[n];
+			b=new double[n];
+			lin=new LinEq(n);
+			this.n=n;
+		}
 
 		for(i=0;i<n;i++) b[i]=c.f(n,x,i)-y[i];
 		cnt=0;
+		fail=false;
 
-		while ((norm(n,b)>=TOL) && (cnt<MAXITER)) {
+		while ((norm(n,b)>=tol) && (cnt<maxIter)) {
 			for(i=0;i<n;i++)	// init Jacobi matrix
 				for(j=0;j<n;j++) a[i][j]=c.df(n,x,i,j);
 
-			// solve a\cdot dx=b, return if result is good enough
-			if (Math.abs(LinEq.solve(n,a,dx,b))<TOL) return true;
+			// solve a\cdot dx=-b, give up if a is singular
+			if (Math.abs(lin.solve(a,dx,b))<tol) {
+				fail=true;
+				break;
+			}
 
 			for(i=0;i<n;i++) x[i]+=dx[i];		 // update x
 			for(i=0;i<n;i++) b[i]=c.f(n,x,i)-y[i];	 // update b
 			cnt++;
 		}
 
-		return (norm(n,b)>=TOL); // unsuccessful if b is still too large
+		residual=norm(n,b);
+		fail|=(residual>=tol); // unsuccessful if b is still too large
+		iterations=cnt;
+		solutions++;
+		totalIterations+=cnt;
+		if (fail)
+			failures++;
+		return fail;
+	}
+
+	/**
+@return tolerance of this solver
+	 */
+	public double getTolerance() {
+		return tol;
+	}
+
+	/**
+@return iteration limit of this solver
+	 */
+	public int getMaxIter() {
+		return maxIter;
+	}
+
+	/**
+@return number of iterations of the last solution
+	 */
+	public synchronized int getIterations() {
+		return iterations;
+	}
+
+	/**
+@return norm of c(x)-y after the last solution, or NaN if there was none
+	 */
+	public synchronized double getResidual() {
+		return residual;
+	}
+
+	/**
+@return number of solutions attempted by this solver
+	 */
+	public synchronized long getSolutions() {
+		return solutions;
+	}
+
+	/**
+@return number of solutions by this solver that failed
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+@return total number of iterations of this solver
+	 */
+	public synchronized long getTotalIterations() {
+		return totalIterations;
+	}
+
+	/**
+Solves the equation c(x)=y using Newton's method, with a new solver with the
+default tolerance and iteration limit.
+@param VectorFunction: c is a function from R^n to R^n.
+@param double x[]: unknown vector (for solution)
+@param double y[]: inhomogeneity
+@return true iff no solution was found (i.e., the derivative is singular)
+	 */
+	public static boolean newton(VectorFunction c,int n,double x[],double y[]) {
+		return new Newton().solve(c,n,x,y);
 	}
 
 	/**
-Sets the accuracy of the result (typically a small number, e.g., 10^-10).
+Sets the default accuracy of the result (typically a small number, e.g.,
+10^-10). It applies to newton() and to solvers constructed afterwards.
 @param double t: new numerical tolerance
 	 */
 	public static void setTolerance(double t) {
@@ -64,7 +185,8 @@ Sets the accuracy of the result (typically a small number, e.g., 10^-10).
 	}
 
 	/**
-Sets the max number of iterations (typically a few thousand).
+Sets the default max number of iterations (typically a few thousand). It
+applies to newton() and to solvers constructed afterwards.
 @param int m: new limit for number of iterations
 	 */
 	public static void setMaxIter(int m) {
@@ -0,0 +1,577 @@
+package pbj.math.numerical;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import Jama.Matrix;
+
+/**
+<p>Certified enclosures of the PF-eigenvalue and the PF-eigenvector of a
+nonnegative irreducible integer matrix, for comparisons that have to come
+out right even if the numbers involved are very close.</p>
+
+<p>The PF-eigenvalue is first enclosed by the Collatz-Wielandt bounds
+min (Ax)_i/x_i and max (Ax)_i/x_i of the eigenvector x computed by Jama; if
+these intervals are disjoint, they decide comparisons of eigenvalues, and
+identical matrices have equal eigenvalues. Otherwise, and for all comparisons of entries of the eigenvector, the
+eigenpair is verified with Krawczyk's operator in midpoint-radius
+arithmetic, using plain doubles and rigorous bounds for rounding errors.
+This happens at most once per enclosure. The eigenvector is normalized so
+that its largest entry is 1; since the enclosure of the eigenvector is
+positive, it is the PF-eigenvector. If a comparison is inconclusive at this
+precision, the eigenpair is refined in decimal arithmetic with 30, 60, and
+finally MAXDIGITS digits, and verified again. If the enclosures still
+overlap at MAXDIGITS digits, or if the verification fails altogether (which
+happens only for extremely ill-conditioned matrices), comparisons throw an
+Uncertified exception that carries a best guess, so that callers can tell
+it from a certified result.</p>
+
+<p>Entries of the eigenvector that are equal for combinatorial reasons are
+recognized exactly: if the indices can be partitioned into classes such
+that the sum of the entries of each row over each class depends only on the
+class of the row (an equitable partition), then the PF-eigenvector is
+constant on each class. The coarsest such partition is found by color
+refinement. More generally, since (e_i-e_j)^T A^m x = lambda^m (x_i-x_j),
+entries i and j are equal if some row vector (e_i-e_j)^T A^m sums to zero
+on each class; this is checked in exact integer arithmetic for m&lt;=n.</p>
+@author Peter Brinkmann
+@see IntMatrix
+ */
+public class PFEnclosure {
+
+	/** maximal precision in decimal digits; values that agree to this many digits are considered equal */
+	public static final int MAXDIGITS=120;
+
+	private static final double U=Math.ulp(1.0)/2;	// unit roundoff
+	private static final double TWO53=9007199254740992.0;	// integers below are exact
+
+	/**
+Thrown by comparisons whose result can't be certified, i.e., if the
+enclosures still overlap at MAXDIGITS digits, or if the eigenpair can't be
+verified. It carries a best guess: 0 in the first case, and the comparison
+of the floating point values in the second.
+	 */
+	public static class Uncertified extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private final int estimate;
+
+		Uncertified(String msg,int est) {
+			super(msg);
+			estimate=est;
+		}
+
+		/**
+@return 1, 0, or -1: best guess for the result of the comparison
+		 */
+		public int getEstimate() {
+			return estimate;
+		}
+	}
+
+	private final int n;
+	private final double a[][];
+	private final int col[][];	// nonzero rows of each column of a
+	private final double gamma;	// bound for relative error of sums
+	private int k;				// normalization x[k]=1; y[k] is the eigenvalue
+	private double y0[];		// floating point eigenpair
+	private double fm[],fe[];	// residual F(y0) and its error
+	private double lo,hi;		// Collatz-Wielandt bounds for the eigenvalue
+	private boolean certified=false;	// verified in double precision
+	private double r[][];		// approximate inverse of the Jacobian at y0
+	private double cabs[][];	// bound for |I-R*J(y0)|
+	private BigDecimal rr[][]=null;	// r in decimal, exactly
+	private BigDecimal y[]=null;	// current midpoint, null while it is y0
+	private double rad[];		// current radii
+	private int digits=0;		// 0 for double precision
+	private boolean verified=false;
+	private int cls[]=null;		// coarsest equitable partition
+
+	/**
+Computes the PF-eigenpair of m in double precision, together with
+Collatz-Wielandt bounds for the eigenvalue; the eigenpair is verified when
+a comparison needs it.
+@param IntMatrix m: nonnegative irreducible matrix with integer entries
+	 */
+	public PFEnclosure(IntMatrix m) {
+		double v[]=new double[m.n];
+		double s,t,p;
+		int i,j,cnt;
+
+		n=m.n;
+		a=new double[n][];
+		for(i=0;i<n;i++)
+			a[i]=m.a[i].clone();
+		col=new int[n][];
+		for(j=0;j<n;j++) {
+			for(i=cnt=0;i<n;i++)
+				if (a[i][j]!=0)
+					cnt++;
+			col[j]=new int[cnt];
+			for(i=cnt=0;i<n;i++)
+				if (a[i][j]!=0)
+					col[j][cnt++]=i;
+		}
+		gamma=2*(n+2)*U/(1-2*(n+2)*U);
+
+		s=m.eigenPair(v);
+		for(i=k=0;i<n;i++)
+			if (v[i]>v[k])
+				k=i;
+		y0=new double[n];
+		for(i=0;i<n;i++)
+			y0[i]=(i==k) ? s : v[i]/v[k];
+		rad=new double[n];
+
+		/* residual F(y0) and its error, and Collatz-Wielandt bounds
+		   (A*x)[i]/x[i] for the eigenvalue */
+		fm=new double[n];
+		fe=new double[n];
+		lo=Double.POSITIVE_INFINITY;
+		hi=0;
+		for(i=0;i<n;i++) {
+			s=-y0[k]*x0(i);
+			t=Math.abs(s);
+			p=0;
+			for(j=0;j<n;j++)
+				if (a[i][j]!=0) {
+					s+=a[i][j]*x0(j);
+					t+=Math.abs(a[i][j]*x0(j));
+					p+=a[i][j]*x0(j);
+				}
+			fm[i]=s;
+			fe[i]=up(gamma*t);
+			if (x0(i)>0) {
+				lo=Math.min(lo,(p-up(gamma*p))/x0(i)*(1-4*U));
+				hi=Math.max(hi,up(up(p*(1+gamma))/x0(i)));
+			}
+			else {
+				lo=0;
+				hi=Double.POSITIVE_INFINITY;
+			}
+		}
+	}
+
+	/* sets up R and |I-R*J(y0)| and verifies the floating point eigenpair */
+	private void certify() {
+		double j0[][],s,t;
+		int i,j,l;
+
+		if (certified)
+			return;
+		certified=true;
+
+		/* Jacobian of F(y)=A*x-lambda*x with respect to y, where x[k]=1 and
+		   y[k]=lambda: A-lambda*I with column k replaced by -x */
+		j0=new double[n][n];
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++)
+				if (j==k)
+					j0[i][j]=(i==k) ? -1 : -y0[i];
+				else
+					j0[i][j]=a[i][j]-((i==j) ? y0[k] : 0);
+		try {
+			r=new Matrix(j0).inverse().getArray();
+		} catch (RuntimeException e) {	// singular Jacobian
+			r=null;
+			return;
+		}
+
+		/* |I-R*J(y0)| */
+		cabs=new double[n][n];
+		for(i=0;i<n;i++)
+			for(j=0;j<n;j++) {
+				if (j==k) {
+					s=t=0;
+					for(l=0;l<n;l++) {
+						s+=r[i][l]*j0[l][k];
+						t+=Math.abs(r[i][l]*j0[l][k]);
+					}
+				}
+				else {
+					s=-r[i][j]*y0[k];
+					t=Math.abs(s);
+					for(l=0;l<col[j].length;l++) {
+						s+=r[i][col[j][l]]*a[col[j][l]][j];
+						t+=Math.abs(r[i][col[j][l]]*a[col[j][l]][j]);
+					}
+				}
+				cabs[i][j]=up(Math.abs(((i==j) ? 1 : 0)-s)+gamma*t/(1-gamma));
+			}
+
+		verify(residual(fm,fe),new double[n]);
+	}
+
+	/* entry i of the floating point eigenvector */
+	private double x0(int i) {
+		return (i==k) ? 1 : y0[i];
+	}
+
+	/* entry i of the current midpoint */
+	private BigDecimal y(int i) {
+		return (y==null) ? new BigDecimal(y0[i]) : y[i];
+	}
+
+	/* entry i of the current eigenvector */
+	private BigDecimal x(int i) {
+		return (i==k) ? BigDecimal.ONE : y(i);
+	}
+
+	/* rounds upwards, generously */
+	private static double up(double x) {
+		return (x+Double.MIN_VALUE)*(1+4*U);
+	}
+
+	/* computes a bound for |R*F|, given F=fm+-fe */
+	private double[] residual(double fm[],double fe[]) {
+		double z[]=new double[n];
+		double s,t,e;
+		int i,j;
+
+		for(i=0;i<n;i++) {
+			s=t=e=0;
+			for(j=0;j<n;j++) {
+				s+=r[i][j]*fm[j];
+				t+=Math.abs(r[i][j]*fm[j]);
+				e+=Math.abs(r[i][j])*fe[j];
+			}
+			z[i]=up(Math.abs(s)+gamma*t+up(e));
+		}
+		return z;
+	}
+
+	/* Krawczyk's test: if |z|+|I-R*J(Y)|*rho < rho for the box Y around y
+	   with radii rho, then Y contains a unique zero of F, which lies within
+	   the radii given by the left hand side. d bounds the distance between
+	   y and y0. */
+	private void verify(double z[],double d[]) {
+		double rho[]=new double[n];
+		double b[]=new double[n];
+		double w[]=new double[n];
+		double s,t,u;
+		int i,j,cnt;
+		boolean ok=false;
+
+		for(i=0;i<n;i++)
+			rho[i]=2*z[i]+Double.MIN_NORMAL;
+		for(cnt=0;(cnt<8) && (!ok);cnt++) {
+			for(i=0;i<n;i++)
+				w[i]=up(d[i]+rho[i]);
+			ok=true;
+			for(i=0;i<n;i++) {
+				/* |J(y')-J(y0)| is at most w[k] on the diagonal (except
+				   at k) and w[l] in row l of column k (except at k). */
+				s=t=u=0;
+				for(j=0;j<n;j++) {
+					s+=cabs[i][j]*rho[j];
+					if (j!=k) {
+						t+=Math.abs(r[i][j])*rho[j];
+						u+=Math.abs(r[i][j])*w[j];
+					}
+				}
+				b[i]=up(up(z[i]+s+w[k]*t+rho[k]*u)*(1+gamma));
+				if (!(b[i]<rho[i]))
+					ok=false;
+			}
+			if (!ok)
+				for(i=0;i<n;i++)
+					rho[i]=2*Math.max(b[i],rho[i]);
+		}
+
+		verified=ok;
+		if (!ok)
+			return;
+		for(i=0;i<n;i++)
+			if ((y==null) ? (y0[i]<=b[i])
+					: (y[i].compareTo(new BigDecimal(b[i]))<=0))
+				verified=false;		// not positive
+		if (verified)
+			rad=b;
+	}
+
+	/* refines the eigenpair to the given number of digits and verifies it */
+	private void refine(int dig) {
+		MathContext mc=new MathContext(dig+10);
+		BigDecimal f[];
+		BigDecimal s,eps=BigDecimal.ONE.scaleByPowerOfTen(-dig-5);
+		double z[],d[];
+		boolean done=false;
+		int i,j,cnt;
+
+		digits=dig;
+		if (r==null)
+			return;
+		if (y==null) {
+			y=new BigDecimal[n];
+			for(i=0;i<n;i++)
+				y[i]=new BigDecimal(y0[i]);
+		}
+		if (rr==null) {
+			rr=new BigDecimal[n][n];
+			for(i=0;i<n;i++)
+				for(j=0;j<n;j++)
+					rr[i][j]=new BigDecimal(r[i][j]);
+		}
+
+		/* simplified Newton iteration y:=y-R*F(y) */
+		for(cnt=0;(cnt<2*dig) && (!done);cnt++) {
+			f=residual();
+			done=true;
+			for(i=0;i<n;i++) {
+				s=BigDecimal.ZERO;
+				for(j=0;j<n;j++)
+					s=s.add(rr[i][j].multiply(f[j]));
+				s=s.round(mc);
+				if (s.abs().compareTo(eps.multiply(y[i].abs()))>0)
+					done=false;
+				y[i]=y[i].subtract(s,mc);
+			}
+		}
+
+		/* R*F(y), computed exactly */
+		f=residual();
+		z=new double[n];
+		d=new double[n];
+		for(i=0;i<n;i++) {
+			s=BigDecimal.ZERO;
+			for(j=0;j<n;j++)
+				s=s.add(rr[i][j].multiply(f[j]));
+			z[i]=Math.nextUp(s.abs().doubleValue());
+			d[i]=Math.nextUp(y[i].subtract(new BigDecimal(y0[i]))
+					.abs().doubleValue());
+		}
+		verify(z,d);
+	}
+
+	/* F(y), computed exactly */
+	private BigDecimal[] residual() {
+		BigDecimal f[]=new BigDecimal[n];
+		int i,j;
+
+		for(i=0;i<n;i++) {
+			f[i]=x(i).multiply(y(k)).negate();
+			for(j=0;j<n;j++)
+				if (a[i][j]!=0)
+					f[i]=f[i].add(x(j).multiply(new BigDecimal(a[i][j])));
+		}
+		return f;
+	}
+
+	/* computes the coarsest equitable partition by color refinement */
+	private int[] equitablePartition() {
+		int c[]=new int[n],d[];
+		Map<String,Integer> ids;
+		TreeMap<Integer,Double> sums;
+		StringBuilder sig;
+		Integer id;
+		int i,j,cnt=1,old=0;
+
+		while (cnt>old) {
+			old=cnt;
+			ids=new HashMap<String,Integer>();
+			d=new int[n];
+			for(i=0;i<n;i++) {
+				sums=new TreeMap<Integer,Double>();
+				for(j=0;j<n;j++)
+					if (a[i][j]!=0)
+						sums.put(c[j],((sums.containsKey(c[j]))
+								? sums.get(c[j]) : 0)+a[i][j]);
+				sig=new StringBuilder().append(c[i]).append(sums);
+				id=ids.get(sig.toString());
+				if (id==null) {
+					id=ids.size();
+					ids.put(sig.toString(),id);
+				}
+				d[i]=id;
+			}
+			c=d;
+			cnt=ids.size();
+		}
+		return c;
+	}
+
+	/* proves x[i]=x[j] by looking for a vector (e_i-e_j)^T A^m that sums to 0
+	   on each class of the equitable partition; gives up when the entries
+	   can no longer be represented exactly */
+	private boolean isTie(int i,int j) {
+		double w[]=new double[n],u[],c[];
+		double s,t;
+		int l,m,p;
+		boolean zero;
+
+		w[i]=1;
+		w[j]=-1;
+		for(m=0;m<=n;m++) {
+			c=new double[n];
+			for(l=0;l<n;l++)
+				c[cls[l]]+=w[l];
+			zero=true;
+			for(l=0;l<n;l++)
+				if (c[l]!=0)
+					zero=false;
+			if (zero)
+				return true;
+			u=new double[n];
+			t=0;
+			for(l=0;l<n;l++) {
+				s=0;
+				for(p=0;p<col[l].length;p++) {
+					u[l]+=a[col[l][p]][l]*w[col[l][p]];
+					s+=Math.abs(a[col[l][p]][l]*w[col[l][p]]);
+				}
+				t+=s;
+			}
+			if (!(t<TWO53))
+				return false;
+			w=u;
+		}
+		return false;
+	}
+
+	/* moves on to the next precision; returns false if there is none */
+	private boolean escalate() {
+		if (digits>=MAXDIGITS)
+			return false;
+		refine((digits==0) ? 30 : Math.min(2*digits,MAXDIGITS));
+		return true;
+	}
+
+	/* compares the intervals p+-rp and q+-rq */
+	private static int compare(BigDecimal p,double rp,BigDecimal q,double rq) {
+		BigDecimal e=new BigDecimal(rp).add(new BigDecimal(rq));
+		BigDecimal diff=p.subtract(q);
+
+		if (diff.compareTo(e)>0)
+			return 1;
+		if (diff.negate().compareTo(e)>0)
+			return -1;
+		return 0;
+	}
+
+	/* compares the intervals p+-rp and q+-rq in double precision */
+	private static int compare(double p,double rp,double q,double rq) {
+		double e=up(rp+rq);
+
+		if (p-q>e)
+			return 1;
+		if (q-p>e)
+			return -1;
+		return 0;
+	}
+
+	/* compares entries i and j of the current enclosure with radii ri, rj */
+	private int compareEntries(int i,double ri,int j,double rj) {
+		return (y==null) ? compare(x0(i),ri,x0(j),rj)
+				: compare(x(i),ri,x(j),rj);
+	}
+
+	/**
+Compares two entries of the PF-eigenvector.
+@param int i,j: indices of entries
+@return 1, 0, or -1, depending on whether entry i is bigger than, equal to, or smaller than entry j
+@throws Uncertified if the comparison can't be certified
+	 */
+	public int compareEntries(int i,int j) {
+		int res;
+
+		if (i==j)
+			return 0;
+		certify();
+		if (verified) {
+			res=compareEntries(i,(i==k) ? 0 : rad[i],j,(j==k) ? 0 : rad[j]);
+			if (res!=0)
+				return res;
+		}
+		if (cls==null)
+			cls=equitablePartition();
+		if (isTie(i,j))
+			return 0;
+		while (escalate()) {
+			if (!verified)
+				continue;
+			res=compareEntries(i,(i==k) ? 0 : rad[i],j,(j==k) ? 0 : rad[j]);
+			if (res!=0)
+				return res;
+		}
+		if (verified)
+			throw new Uncertified("entries agree to "+MAXDIGITS+" digits",0);
+		throw new Uncertified("eigenpair can't be verified",
+				x(i).compareTo(x(j)));
+	}
+
+	/**
+Compares the PF-eigenvalues of two matrices.
+@param PFEnclosure e: enclosure of the other eigenvalue
+@return 1, 0, or -1, depending on whether the PF-eigenvalue of this is bigger than, equal to, or smaller than that of e
+@throws Uncertified if the comparison can't be certified
+	 */
+	public int compareTo(PFEnclosure e) {
+		int res;
+
+		if (hi<e.lo)
+			return -1;
+		if (lo>e.hi)
+			return 1;
+		if (Arrays.deepEquals(a,e.a))
+			return 0;
+		certify();
+		e.certify();
+		while (true) {
+			if (verified && e.verified) {
+				res=compare(y(k),rad[k],e.y(e.k),e.rad[e.k]);
+				if (res!=0)
+					return res;
+			}
+			/* refine the coarser enclosure first */
+			if ((!e.verified) || ((verified) && (e.rad[e.k]>rad[e.k]))) {
+				if (!e.escalate() && !escalate())
+					break;
+			}
+			else if (!escalate() && !e.escalate())
+				break;
+		}
+		if (verified && e.verified)
+			throw new Uncertified("eigenvalues agree to "+MAXDIGITS+" digits",0);
+		throw new Uncertified("eigenpair can't be verified",
+				y(k).compareTo(e.y(e.k)));
+	}
+
+	/**
+@return midpoint of the current enclosure of the PF-eigenvalue
+	 */
+	public double getEigenvalue() {
+		return y(k).doubleValue();
+	}
+
+	/**
+@return array {lo, hi} containing the PF-eigenvalue, or null if the eigenpair couldn't be verified
+	 */
+	public BigDecimal[] getEigenvalueBounds() {
+		BigDecimal e;
+
+		certify();
+		e=new BigDecimal(rad[k]);
+
+		return verified ? new BigDecimal[] {y(k).subtract(e),y(k).add(e)}
+				: null;
+	}
+
+	/**
+@return precision of the current enclosure in decimal digits, or 0 if it is in double precision
+	 */
+	public int getDigits() {
+		return digits;
+	}
+
+	/**
+@return true iff the current enclosure is certified
+	 */
+	public boolean isVerified() {
+		certify();
+		return verified;
+	}
+
+}